@@ -2,6 +2,7 @@ package hu.bme.aut.api.controller;
 
 import hu.bme.aut.api.dto.ApiResponse;
 import hu.bme.aut.api.dto.BasketDTO;
+import hu.bme.aut.api.dto.BasketOperationDTO;
 import hu.bme.aut.api.service.BasketService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -9,6 +10,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
@@ -129,4 +131,33 @@ public class BasketController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
         }
     }
+
+    /**
+     * Applies several add, remove and set-quantity operations to the active basket of a user at once.
+     *
+     * @param userToken the user token from the request header.
+     * @param operations the operations to apply, in order.
+     * @return ResponseEntity containing ApiResponse with the updated BasketDTO.
+     */
+    @PostMapping("/bulk")
+    public ResponseEntity<ApiResponse<BasketDTO>> applyOperations(@RequestHeader("User-Token") String userToken,
+                                                                  @RequestBody List<BasketOperationDTO> operations) {
+        log.info("Applying {} operations to basket.", operations.size());
+        try {
+            CompletableFuture<ApiResponse<BasketDTO>> future = basketService.applyOperations(userToken, operations);
+            ApiResponse<BasketDTO> response = future.get();
+            log.debug("Operations applied successfully to basket.");
+            return ResponseEntity.ok(response);
+        } catch (InterruptedException | ExecutionException e) {
+            Thread.currentThread().interrupt();
+            log.error("Failed to apply operations to basket: {}", e.getMessage());
+            ApiResponse<BasketDTO> errorResponse = ApiResponse.<BasketDTO>builder()
+                    .success(false)
+                    .errorMessage("Failed to apply operations to basket")
+                    .errorCode("1500")
+                    .data(null)
+                    .build();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
 }
\ No newline at end of file
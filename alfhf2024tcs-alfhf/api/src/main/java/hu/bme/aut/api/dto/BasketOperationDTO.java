@@ -0,0 +1,19 @@
+package hu.bme.aut.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for one line change of a bulk basket request: ADD, REMOVE or SET a product quantity.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BasketOperationDTO {
+    private String type;
+    private Long productId;
+    private Integer quantity;
+}
\ No newline at end of file
@@ -7,6 +7,7 @@ import io.qt.widgets.*;
 import lombok.extern.slf4j.Slf4j;
 import org.json.JSONArray;
 import org.json.JSONObject;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
@@ -389,7 +390,7 @@ public class MyWindow extends QWidget {
             }
         }
         return BasketDTO.builder()
-                .basketId(basket.getLong("basketId"))
+                .basketId(basket.isNull("basketId") ? null : basket.getLong("basketId"))
                 .basketStatus(basket.getString("basketStatus"))
                 .subtotalAmount(basket.getDouble("subtotalAmount"))
                 .products(productsList)
@@ -409,7 +410,7 @@ public class MyWindow extends QWidget {
             }
         }
         return BasketDTO.builder()
-                .basketId(basket.getLong("basketId"))
+                .basketId(basket.isNull("basketId") ? null : basket.getLong("basketId"))
                 .basketStatus(basket.getString("basketStatus"))
                 .subtotalAmount(basket.getDouble("subtotalAmount"))
                 .products(productsList)
@@ -490,7 +491,22 @@ public class MyWindow extends QWidget {
     private void pushLocalBasket() {
         clearRemoteBasket();
         BasketDTO localCart = getLocalBasket();
-        localCart.getProducts().forEach(x -> changeRemoteBasket(x, x.getQuantity()));
+        if (localCart.getProducts().isEmpty()) {
+            return;
+        }
+        JSONArray operations = new JSONArray();
+        localCart.getProducts().forEach(x -> operations.put(new JSONObject()
+                .put("type", "SET")
+                .put("productId", x.getProductId())
+                .put("quantity", x.getQuantity())));
+        WebClient.create("http://localhost:8084").post()
+                .uri("/api/basket/bulk")
+                .header("User-Token", getUserToken(getUserName()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(operations.toString())
+                .retrieve()
+                .toEntity(String.class)
+                .block();
     }
 
     long getProductIdFromName(String name) {
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import hu.bme.aut.api.dto.ApiResponse;
 import hu.bme.aut.api.dto.BasketDTO;
+import hu.bme.aut.api.dto.BasketOperationDTO;
 import hu.bme.aut.api.dto.ErrorResponseDTO;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
@@ -17,6 +18,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
@@ -68,6 +70,16 @@ public class BasketService {
         return sendRequest(url, HttpMethod.DELETE, requestEntity, BasketDTO.class);
     }
 
+    @Async
+    public CompletableFuture<ApiResponse<BasketDTO>> applyOperations(String userToken, List<BasketOperationDTO> operations) {
+        String url = cartServiceBaseUrl + "/basket/bulk";
+        log.debug("Attempting to apply {} operations to basket for user token {}", operations.size(), userToken);
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("User-Token", userToken);
+        HttpEntity<List<BasketOperationDTO>> requestEntity = new HttpEntity<>(operations, headers);
+        return sendRequest(url, HttpMethod.POST, requestEntity, BasketDTO.class);
+    }
+
     private <T> CompletableFuture<ApiResponse<T>> sendRequest(String url, HttpMethod method, HttpEntity<?> requestEntity, Class<T> responseType) {
         try {
             ResponseEntity<String> response = restTemplate.exchange(url, method, requestEntity, String.class);
@@ -0,0 +1,24 @@
+package hu.bme.aut.cart.cache;
+
+/**
+ * Result of validating a user token with the CORE module, as kept in the token cache.
+ * A resolution either carries the ID of the user, or the error the CORE module rejected the token with.
+ *
+ * @param userId the ID of the user, or null if the token was rejected
+ * @param errorCode the error code of the rejection, or null if the token is valid
+ * @param errorMessage the error message of the rejection, or null if the token is valid
+ */
+public record TokenResolution(Long userId, String errorCode, String errorMessage) {
+
+    public static TokenResolution valid(Long userId) {
+        return new TokenResolution(userId, null, null);
+    }
+
+    public static TokenResolution rejected(String errorCode, String errorMessage) {
+        return new TokenResolution(null, errorCode, errorMessage);
+    }
+
+    public boolean isValid() {
+        return userId != null;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,168 @@
+package hu.bme.aut.cart.checkout;
+
+import hu.bme.aut.cart.dto.OrderStatusDTO;
+import hu.bme.aut.cart.exception.CardNotBelongToUserException;
+import hu.bme.aut.cart.exception.InsufficientFundsException;
+import hu.bme.aut.cart.exception.ServiceCommunicationException;
+import hu.bme.aut.cart.exception.UserTokenException;
+import hu.bme.aut.cart.model.entity.Order;
+import hu.bme.aut.cart.model.enums.OrderStatus;
+import hu.bme.aut.cart.service.OrderService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Drives accepted orders from PENDING to COMPLETED or CANCELLED on the checkout worker pool.
+ * The total of an order is reserved on its card first and captured before the order is marked as completed,
+ * so a completed order has always been charged. If the capture fails, the reservation is released and the order
+ * is cancelled; a reservation that could not be released expires in the CORE module and its amount is returned
+ * to the card. A captured reservation is never released: the capture is recorded on the order right away.
+ * Orders are handed over only after the accepting transaction has committed. Orders whose job was lost,
+ * e.g. because the application stopped, are settled by a periodic recovery once they are too old: an order whose
+ * capture was recorded, or whose reservation the CORE module reports as captured, is completed; any other order
+ * has its reservation released and is cancelled.
+ */
+@Component
+@Slf4j
+public class CheckoutProcessor {
+
+    private static final String EXPIRED_ERROR_CODE = "3410";
+
+    private final ThreadPoolTaskExecutor checkoutExecutor;
+    private final OrderService orderService;
+    private final OrderStatusNotifier orderStatusNotifier;
+    private final Duration pendingTimeout;
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    public CheckoutProcessor(@Qualifier("checkoutExecutor") ThreadPoolTaskExecutor checkoutExecutor,
+                             OrderService orderService,
+                             OrderStatusNotifier orderStatusNotifier,
+                             @Value("${cart.checkout.pending-timeout:5m}") Duration pendingTimeout,
+                             MeterRegistry meterRegistry) {
+        this.checkoutExecutor = checkoutExecutor;
+        this.orderService = orderService;
+        this.orderStatusNotifier = orderStatusNotifier;
+        this.pendingTimeout = pendingTimeout;
+        Gauge.builder("cart.checkout.queue.size", checkoutExecutor, executor -> executor.getThreadPoolExecutor().getQueue().size())
+                .description("Accepted orders waiting for a checkout worker")
+                .register(meterRegistry);
+        Gauge.builder("cart.checkout.in.flight", inFlight, Set::size)
+                .description("Accepted orders queued or being validated")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues the validation of an accepted order once the transaction that accepted it has committed.
+     *
+     * @param event the accepted order.
+     */
+    @TransactionalEventListener
+    public void onCheckoutRequested(CheckoutRequestedEvent event) {
+        log.debug("Queueing checkout of order {}", event.orderId());
+        inFlight.add(event.orderId());
+        checkoutExecutor.execute(() -> process(event));
+    }
+
+    /**
+     * Reserves and captures the total of an accepted order on its card, finalizes the order
+     * and notifies the subscribers of the order.
+     *
+     * @param event the accepted order.
+     */
+    void process(CheckoutRequestedEvent event) {
+        try {
+            boolean reserved = false;
+            try {
+                orderService.reserveFunds(event.orderId(), event.cardId(), event.totalMinor(), event.userToken());
+                reserved = true;
+                orderService.captureFunds(event.orderId(), event.userToken());
+            } catch (RuntimeException ex) {
+                log.warn("Checkout of order {} failed: {}", event.orderId(), ex.getMessage());
+                if (reserved) {
+                    releaseQuietly(event);
+                }
+                orderStatusNotifier.publish(orderService.failOrder(event.orderId(), errorCodeOf(ex), ex.getMessage()));
+                return;
+            }
+
+            OrderStatusDTO status;
+            try {
+                orderService.recordCapture(event.orderId());
+                status = orderService.completeOrder(event.orderId());
+            } catch (RuntimeException ex) {
+                log.error("Order {} has been charged but could not be completed, leaving it to the recovery: {}", event.orderId(), ex.getMessage());
+                return;
+            }
+            if (status.getOrderStatus() != OrderStatus.COMPLETED) {
+                log.error("Order {} has been charged but is {}, it needs reconciliation", event.orderId(), status.getOrderStatus());
+            }
+            orderStatusNotifier.publish(status);
+        } catch (RuntimeException ex) {
+            log.error("Could not finalize order {}, leaving it to the recovery: {}", event.orderId(), ex.getMessage());
+        } finally {
+            inFlight.remove(event.orderId());
+        }
+    }
+
+    /**
+     * Settles the orders that have been pending for longer than the configured timeout without a job in progress.
+     * Charged orders are completed; the others have their reservation released and are cancelled.
+     * An order that cannot be settled, e.g. because the CORE module is unavailable, is retried in the next run.
+     */
+    @Scheduled(fixedDelayString = "${cart.checkout.recovery-interval:PT1M}")
+    public void expireStalePendingOrders() {
+        Date cutoff = Date.from(Instant.now().minus(pendingTimeout));
+        for (Order order : orderService.findStalePendingOrders(cutoff)) {
+            Long orderId = order.getOrderId();
+            if (inFlight.contains(orderId)) {
+                continue;
+            }
+            try {
+                if (order.isFundsCaptured() || orderService.settleAbandonedReservation(orderId)) {
+                    log.warn("Order {} has been charged but is pending since before {}, completing it", orderId, cutoff);
+                    orderStatusNotifier.publish(orderService.completeOrder(orderId));
+                } else {
+                    log.warn("Order {} has been pending since before {}, cancelling it", orderId, cutoff);
+                    orderStatusNotifier.publish(orderService.failOrder(orderId, EXPIRED_ERROR_CODE, "Checkout expired before it could be processed"));
+                }
+            } catch (RuntimeException ex) {
+                log.error("Could not settle stale order {}, retrying later: {}", orderId, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Releases the reservation of a failed checkout; if that fails too, the reservation is left to expire,
+     * unless the failed capture did go through, which is logged for reconciliation.
+     */
+    private void releaseQuietly(CheckoutRequestedEvent event) {
+        try {
+            orderService.releaseFunds(event.orderId(), event.userToken());
+        } catch (RuntimeException ex) {
+            log.error("Could not release reservation of order {}, leaving it to expire or, if it was captured, to reconciliation: {}", event.orderId(), ex.getMessage());
+        }
+    }
+
+    private static String errorCodeOf(RuntimeException ex) {
+        return switch (ex) {
+            case CardNotBelongToUserException e -> e.getErrorCode();
+            case InsufficientFundsException e -> e.getErrorCode();
+            case UserTokenException e -> e.getErrorCode();
+            case ServiceCommunicationException e -> e.getErrorCode();
+            default -> "3500";
+        };
+    }
+}
\ No newline at end of file
@@ -0,0 +1,13 @@
+package hu.bme.aut.cart.checkout;
+
+/**
+ * Published when an order has been accepted in PENDING state and its card still has to be validated.
+ * It carries everything the validation needs, so a worker does not have to read the order back first.
+ *
+ * @param orderId the ID of the pending order.
+ * @param userToken the token of the user who placed the order; it is only held in memory.
+ * @param cardId the ID of the card to charge.
+ * @param totalMinor the total of the order in minor units.
+ */
+public record CheckoutRequestedEvent(Long orderId, String userToken, String cardId, long totalMinor) {
+}
\ No newline at end of file
@@ -0,0 +1,78 @@
+package hu.bme.aut.cart.checkout;
+
+import hu.bme.aut.cart.dto.OrderStatusDTO;
+import hu.bme.aut.cart.model.enums.OrderStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps the server-sent event subscriptions of clients waiting for a pending order to be finalized.
+ * Every subscription receives a single status event once the order leaves PENDING, then it is completed.
+ */
+@Component
+@Slf4j
+public class OrderStatusNotifier {
+
+    private final Map<Long, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final Duration timeout;
+
+    public OrderStatusNotifier(@Value("${cart.checkout.events-timeout:30s}") Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Registers a subscription for the status of an order.
+     *
+     * @param orderId the ID of the order.
+     * @return The emitter of the subscription.
+     */
+    public SseEmitter subscribe(Long orderId) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        subscribers.computeIfAbsent(orderId, id -> new CopyOnWriteArrayList<>()).add(emitter);
+        emitter.onCompletion(() -> unsubscribe(orderId, emitter));
+        emitter.onTimeout(() -> unsubscribe(orderId, emitter));
+        emitter.onError(ex -> unsubscribe(orderId, emitter));
+        return emitter;
+    }
+
+    /**
+     * Sends the status of an order to its subscribers, and completes the subscriptions if the order is final.
+     *
+     * @param status the current status of the order.
+     */
+    public void publish(OrderStatusDTO status) {
+        if (status.getOrderStatus() == OrderStatus.PENDING) {
+            return;
+        }
+        List<SseEmitter> emitters = subscribers.remove(status.getOrderId());
+        if (emitters == null) {
+            return;
+        }
+        log.debug("Notifying {} subscribers of order {} about status {}", emitters.size(), status.getOrderId(), status.getOrderStatus());
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event().name("status").data(status));
+                emitter.complete();
+            } catch (IOException | IllegalStateException ex) {
+                log.debug("Subscriber of order {} is gone: {}", status.getOrderId(), ex.getMessage());
+                emitter.completeWithError(ex);
+            }
+        }
+    }
+
+    private void unsubscribe(Long orderId, SseEmitter emitter) {
+        subscribers.computeIfPresent(orderId, (id, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+}
\ No newline at end of file
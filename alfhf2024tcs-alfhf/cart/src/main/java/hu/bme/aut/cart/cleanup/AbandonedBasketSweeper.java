@@ -0,0 +1,73 @@
+package hu.bme.aut.cart.cleanup;
+
+import hu.bme.aut.cart.service.BasketService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+
+/**
+ * Periodically deletes the active baskets that have been idle for longer than the configured timeout.
+ * Baskets are deleted in small chunks, each in its own transaction, so no run holds locks for long.
+ * A run stops after a bounded number of chunks; the rest is left to the next run.
+ */
+@Component
+@Slf4j
+public class AbandonedBasketSweeper {
+
+    private final BasketService basketService;
+    private final Duration idleTimeout;
+    private final int chunkSize;
+    private final int maxChunksPerRun;
+    private final Counter expiredBaskets;
+    private final Timer sweepTimer;
+
+    public AbandonedBasketSweeper(BasketService basketService,
+                                  @Value("${cart.basket.expiry.idle-timeout:30d}") Duration idleTimeout,
+                                  @Value("${cart.basket.expiry.chunk-size:500}") int chunkSize,
+                                  @Value("${cart.basket.expiry.max-chunks-per-run:100}") int maxChunksPerRun,
+                                  MeterRegistry meterRegistry) {
+        this.basketService = basketService;
+        this.idleTimeout = idleTimeout;
+        this.chunkSize = chunkSize;
+        this.maxChunksPerRun = maxChunksPerRun;
+        this.expiredBaskets = Counter.builder("cart.basket.expired")
+                .description("Idle active baskets deleted by the sweeper")
+                .register(meterRegistry);
+        this.sweepTimer = Timer.builder("cart.basket.expiry.duration")
+                .description("Duration of the idle basket sweeps")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Deletes the idle active baskets chunk by chunk, and records how many were deleted and how long it took.
+     */
+    @Scheduled(fixedDelayString = "${cart.basket.expiry.interval:PT10M}")
+    public void expireIdleBaskets() {
+        Date cutoff = Date.from(Instant.now().minus(idleTimeout));
+        long start = System.nanoTime();
+        int total = 0;
+        int chunks = 0;
+        try {
+            int deleted;
+            do {
+                deleted = basketService.deleteIdleBaskets(cutoff, chunkSize);
+                total += deleted;
+                chunks++;
+            } while (deleted == chunkSize && chunks < maxChunksPerRun);
+        } catch (RuntimeException ex) {
+            log.error("Sweeping idle baskets failed after {} chunks: {}", chunks, ex.getMessage());
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        sweepTimer.record(elapsed);
+        expiredBaskets.increment(total);
+        log.info("Deleted {} baskets idle since before {} in {} chunks, took {} ms", total, cutoff, chunks, elapsed.toMillis());
+    }
+}
\ No newline at end of file
@@ -2,10 +2,18 @@ package hu.bme.aut.cart.client;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import hu.bme.aut.cart.cache.TokenResolution;
 import hu.bme.aut.cart.dto.CoreValidationResponseDTO;
 import hu.bme.aut.cart.exception.ServiceCommunicationException;
 import hu.bme.aut.cart.exception.UserTokenException;
+import hu.bme.aut.cart.model.Money;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpEntity;
@@ -14,31 +22,42 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
-import java.util.Locale;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class CoreClient {
 
+    @Qualifier("coreRestTemplate")
     private final RestTemplate restTemplate;
+    private final Cache<String, TokenResolution> userTokenCache;
+    @Qualifier("coreCircuitBreaker")
+    private final CircuitBreaker circuitBreaker;
+    @Qualifier("coreBulkhead")
+    private final Bulkhead bulkhead;
 
     @Value("${core.service.url}")
     private String coreServiceUrl;
 
+    @Value("${core.service.internal-secret:}")
+    private String internalSecret;
+
     /**
      * Validates if a card belongs to the user and checks the balance.
      *
      * @param userToken The user's token.
      * @param cardId The ID of the card to validate.
-     * @param price The price to check against the card's balance.
+     * @param amountMinor The amount to check against the card's balance, in minor units.
      * @return CoreValidationResponseDTO containing the validation result.
      */
-    public CoreValidationResponseDTO validateCard(String userToken, String cardId, Double price) {
-        String formattedPrice = String.format(Locale.US, "%.2f", price);
+    public CoreValidationResponseDTO validateCard(String userToken, String cardId, long amountMinor) {
+        String formattedPrice = Money.toMajor(amountMinor).toPlainString();
         String url = String.format("%s/balance/%s/%s", coreServiceUrl, cardId, formattedPrice);
         log.info("URL: {}", url);
         HttpHeaders headers = new HttpHeaders();
@@ -46,29 +65,159 @@ public class CoreClient {
         HttpEntity<Void> requestEntity = new HttpEntity<>(headers);
 
         try {
-            ResponseEntity<CoreValidationResponseDTO> response = restTemplate.exchange(url, HttpMethod.GET, requestEntity, CoreValidationResponseDTO.class);
+            ResponseEntity<CoreValidationResponseDTO> response = callCore(() -> restTemplate.exchange(url, HttpMethod.GET, requestEntity, CoreValidationResponseDTO.class));
             return response.getBody();
         } catch (HttpClientErrorException ex) {
             log.error("Error during card validation: {}", ex.getResponseBodyAsString());
             throw new ServiceCommunicationException("Error during card validation", "3500");
+        } catch (CallNotPermittedException | BulkheadFullException ex) {
+            log.warn("Card validation rejected, core service unavailable: {}", ex.getMessage());
+            throw new ServiceCommunicationException("Core service is unavailable", "3500");
+        } catch (RestClientException ex) {
+            log.error("Error communicating with core service during card validation: {}", ex.getMessage(), ex);
+            throw new ServiceCommunicationException("Error during card validation", "3500");
+        }
+    }
+
+    /**
+     * Holds the amount on the card of the user, so concurrent checkouts cannot spend the same funds.
+     * Retrying with the same reservation ID holds the amount only once.
+     *
+     * @param userToken The user's token.
+     * @param reservationId The ID of the reservation.
+     * @param cardId The ID of the card to hold the amount on.
+     * @param amountMinor The amount to hold, in minor units.
+     * @return CoreValidationResponseDTO containing the result of the reservation.
+     */
+    public CoreValidationResponseDTO reserveFunds(String userToken, String reservationId, String cardId, long amountMinor) {
+        String url = String.format("%s/reservations/%s/%s", coreServiceUrl, cardId, Money.toMajor(amountMinor).toPlainString());
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("User-Token", userToken);
+        headers.set("Reservation-ID", reservationId);
+        return postReservation(url, headers, "reservation");
+    }
+
+    /**
+     * Charges the amount held by a reservation.
+     *
+     * @param userToken The user's token.
+     * @param reservationId The ID of the reservation.
+     * @return CoreValidationResponseDTO containing the result of the capture.
+     */
+    public CoreValidationResponseDTO captureReservation(String userToken, String reservationId) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("User-Token", userToken);
+        return postReservation(coreServiceUrl + "/reservations/" + reservationId + "/capture", headers, "reservation capture");
+    }
+
+    /**
+     * Returns the amount held by a reservation to its card.
+     *
+     * @param userToken The user's token.
+     * @param reservationId The ID of the reservation.
+     * @return CoreValidationResponseDTO containing the result of the release.
+     */
+    public CoreValidationResponseDTO releaseReservation(String userToken, String reservationId) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("User-Token", userToken);
+        return postReservation(coreServiceUrl + "/reservations/" + reservationId + "/release", headers, "reservation release");
+    }
+
+    /**
+     * Looks up the state of a reservation without a token of its user, for the checkout recovery.
+     *
+     * @param reservationId The ID of the reservation.
+     * @return The state of the reservation as named by the CORE module, or empty if the CORE module does not know it.
+     */
+    public Optional<String> getReservationStatus(String reservationId) {
+        String url = coreServiceUrl + "/internal/reservations/" + reservationId;
+        HttpEntity<Void> requestEntity = new HttpEntity<>(internalHeaders());
+
+        try {
+            ResponseEntity<CoreValidationResponseDTO> response = callCore(() -> restTemplate.exchange(url, HttpMethod.GET, requestEntity, CoreValidationResponseDTO.class));
+            return Optional.ofNullable(response.getHeaders().getFirst("Reservation-Status"));
+        } catch (HttpClientErrorException ex) {
+            CoreValidationResponseDTO errorResponse;
+            try {
+                errorResponse = new ObjectMapper().readValue(ex.getResponseBodyAsString(), CoreValidationResponseDTO.class);
+            } catch (JsonProcessingException e) {
+                log.error("Error during reservation lookup: {}", ex.getStatusCode());
+                throw new ServiceCommunicationException("Error during reservation lookup", "3500");
+            }
+            if ("10103".equals(errorResponse.getErrorCode())) {
+                return Optional.empty();
+            }
+            log.error("Error during reservation lookup: {}", ex.getResponseBodyAsString());
+            throw new ServiceCommunicationException(errorResponse.getErrorMessage(), errorResponse.getErrorCode());
+        } catch (CallNotPermittedException | BulkheadFullException ex) {
+            log.warn("Reservation lookup rejected, core service unavailable: {}", ex.getMessage());
+            throw new ServiceCommunicationException("Core service is unavailable", "3500");
+        } catch (RestClientException ex) {
+            log.error("Error communicating with core service during reservation lookup: {}", ex.getMessage(), ex);
+            throw new ServiceCommunicationException("Error during reservation lookup", "3500");
         }
     }
 
+    /**
+     * Returns the amount held by a reservation to its card without a token of its user, for the checkout recovery.
+     *
+     * @param reservationId The ID of the reservation.
+     * @return CoreValidationResponseDTO containing the result of the release.
+     */
+    public CoreValidationResponseDTO releaseReservation(String reservationId) {
+        return postReservation(coreServiceUrl + "/internal/reservations/" + reservationId + "/release", internalHeaders(), "reservation release");
+    }
+
     /**
      * Retrieves the user ID associated with the given token.
+     * Validated and rejected tokens are cached, so repeated calls with the same token skip the CORE module.
+     * Rejected tokens are cached for a shorter time than validated ones. The CORE module does not notify this module
+     * of revoked tokens, so a token revoked there is still accepted here until its entry expires, for at most
+     * {@code core.client.token-cache.ttl}, unless {@link #revokeToken(String)} is called.
      *
      * @param userToken The user's token.
      * @return The user ID.
      * @throws UserTokenException if the token is invalid or expired.
      */
     public Long getUserIdFromToken(String userToken) {
+        TokenResolution resolution = userTokenCache.getIfPresent(userToken);
+        if (resolution != null) {
+            if (!resolution.isValid()) {
+                throw new UserTokenException(resolution.errorMessage(), resolution.errorCode());
+            }
+            return resolution.userId();
+        }
+
+        try {
+            Long userId = fetchUserIdFromToken(userToken);
+            userTokenCache.put(userToken, TokenResolution.valid(userId));
+            return userId;
+        } catch (UserTokenException ex) {
+            userTokenCache.put(userToken, TokenResolution.rejected(ex.getErrorCode(), ex.getMessage()));
+            throw ex;
+        }
+    }
+
+    /**
+     * Drops the cached validation result of a token, e.g. after the token has been revoked.
+     * The next call with this token is validated by the CORE module again.
+     * Revoking a token in the CORE module does not call this; whoever revokes it there has to call it
+     * through the cache endpoint to close the staleness window of the token cache.
+     *
+     * @param userToken The user's token.
+     */
+    public void revokeToken(String userToken) {
+        userTokenCache.invalidate(userToken);
+    }
+
+    private Long fetchUserIdFromToken(String userToken) {
         String url = coreServiceUrl + "/auth";
         HttpHeaders headers = new HttpHeaders();
         headers.set("User-Token", userToken);
         HttpEntity<Void> requestEntity = new HttpEntity<>(headers);
 
         try {
-            ResponseEntity<CoreValidationResponseDTO> response = restTemplate.exchange(url, HttpMethod.GET, requestEntity, CoreValidationResponseDTO.class);
+            ResponseEntity<CoreValidationResponseDTO> response = callCore(() -> restTemplate.exchange(url, HttpMethod.GET, requestEntity, CoreValidationResponseDTO.class));
             if (Objects.requireNonNull(response.getBody()).isSuccess()) {
                 return Long.parseLong(Objects.requireNonNull(response.getHeaders().getFirst("User-ID")));
             } else {
@@ -83,6 +232,56 @@ public class CoreClient {
                 throw new ServiceCommunicationException("Error during token validation", "3500");
             }
             throw new UserTokenException(errorResponse.getErrorMessage(), errorResponse.getErrorCode());
+        } catch (CallNotPermittedException | BulkheadFullException ex) {
+            log.warn("Token validation rejected, core service unavailable: {}", ex.getMessage());
+            throw new ServiceCommunicationException("Core service is unavailable", "3500");
+        } catch (RestClientException ex) {
+            log.error("Error communicating with core service during token validation: {}", ex.getMessage(), ex);
+            throw new ServiceCommunicationException("Error during token validation", "3500");
+        }
+    }
+
+    /**
+     * Sends a reservation request to the CORE module. A rejection by the CORE module is returned
+     * as an unsuccessful response carrying its error code, like an unsuccessful card validation.
+     */
+    private CoreValidationResponseDTO postReservation(String url, HttpHeaders headers, String operation) {
+        HttpEntity<Void> requestEntity = new HttpEntity<>(headers);
+        try {
+            ResponseEntity<CoreValidationResponseDTO> response = callCore(() -> restTemplate.exchange(url, HttpMethod.POST, requestEntity, CoreValidationResponseDTO.class));
+            return response.getBody();
+        } catch (HttpClientErrorException ex) {
+            log.error("Error during {}: {}", operation, ex.getResponseBodyAsString());
+            try {
+                return new ObjectMapper().readValue(ex.getResponseBodyAsString(), CoreValidationResponseDTO.class);
+            } catch (JsonProcessingException e) {
+                throw new ServiceCommunicationException("Error during " + operation, "3500");
+            }
+        } catch (CallNotPermittedException | BulkheadFullException ex) {
+            log.warn("Request for {} rejected, core service unavailable: {}", operation, ex.getMessage());
+            throw new ServiceCommunicationException("Core service is unavailable", "3500");
+        } catch (RestClientException ex) {
+            log.error("Error communicating with core service during {}: {}", operation, ex.getMessage(), ex);
+            throw new ServiceCommunicationException("Error during " + operation, "3500");
         }
     }
+
+    /**
+     * Headers of the internal endpoints of the CORE module, which authenticate the CART module by the shared secret.
+     */
+    private HttpHeaders internalHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Internal-Secret", internalSecret);
+        return headers;
+    }
+
+    /**
+     * Runs a request to the CORE module through its bulkhead, guarded by its circuit breaker.
+     *
+     * @throws CallNotPermittedException if the circuit breaker is open
+     * @throws BulkheadFullException if too many requests are already in flight
+     */
+    private <T> T callCore(Supplier<T> request) {
+        return circuitBreaker.executeSupplier(Bulkhead.decorateSupplier(bulkhead, request));
+    }
 }
\ No newline at end of file
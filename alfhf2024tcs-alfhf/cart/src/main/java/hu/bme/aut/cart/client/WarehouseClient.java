@@ -1,34 +1,95 @@
 package hu.bme.aut.cart.client;
 
+import com.github.benmanes.caffeine.cache.Cache;
 import hu.bme.aut.cart.dto.ProductDTO;
 import hu.bme.aut.cart.exception.ProductNotFoundException;
 import hu.bme.aut.cart.exception.ServiceCommunicationException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 /**
  * Client to communicate with the WAREHOUSE module to fetch product details.
+ * Fetched products are kept in a bounded near-cache, so hot products are served without a round trip.
+ * The returned ProductDTOs may be shared with the cache and must not be modified by callers.
+ * Every request passes a circuit breaker and a bulkhead. While the WAREHOUSE module is unavailable, pricing fails fast,
+ * so baskets and orders are never priced with outdated details; only {@link #getProductDetailsBatchForDisplay(Collection)}
+ * falls back to the last known details of products, even if their time-to-live has passed.
  */
 @RequiredArgsConstructor
 @Component
 @Slf4j
 public class WarehouseClient {
 
+    @Qualifier("warehouseRestTemplate")
     private final RestTemplate restTemplate;
+    @Qualifier("productInfoCache")
+    private final Cache<Long, ProductDTO> productInfoCache;
+    @Qualifier("lastKnownProductInfoCache")
+    private final Cache<Long, ProductDTO> lastKnownProductInfoCache;
+    @Qualifier("warehouseCircuitBreaker")
+    private final CircuitBreaker circuitBreaker;
+    @Qualifier("warehouseBulkhead")
+    private final Bulkhead bulkhead;
 
     @Value("${warehouse.service.url}")
     private String warehouseServiceUrl;
 
+    @Value("${warehouse.client.fetch-mode:batch}")
+    private FetchMode fetchMode;
+
+    @Value("${warehouse.client.parallel.max-concurrency:8}")
+    private int parallelMaxConcurrency;
+
+    @Value("${warehouse.client.parallel.deadline:3s}")
+    private Duration parallelDeadline;
+
     /**
-     * Fetch product details from the WAREHOUSE service.
+     * Defines how the details of several products missing from the cache are fetched.
+     */
+    public enum FetchMode {
+        /**
+         * A single request to the batch endpoint of the WAREHOUSE service.
+         */
+        BATCH,
+        /**
+         * One request per product, issued concurrently on virtual threads.
+         */
+        PARALLEL
+    }
+
+    /**
+     * Fetch product details from the WAREHOUSE service, e.g. to price a basket change.
      *
      * @param productId the product ID to fetch
      * @return ProductDTO containing details about the product
@@ -36,6 +97,17 @@ public class WarehouseClient {
      * @throws ServiceCommunicationException if there is an issue communicating with the service
      */
     public ProductDTO getProductDetails(Long productId) {
+        ProductDTO cached = productInfoCache.getIfPresent(productId);
+        if (cached != null) {
+            log.debug("Product details served from cache for productId: {}", productId);
+            return cached;
+        }
+        ProductDTO product = fetchProductDetails(productId);
+        cacheProduct(productId, product);
+        return product;
+    }
+
+    private ProductDTO fetchProductDetails(Long productId) {
         URI uri = UriComponentsBuilder.fromHttpUrl(warehouseServiceUrl)
                 .pathSegment("products", productId.toString())
                 .build()
@@ -43,7 +115,7 @@ public class WarehouseClient {
         log.info("Fetching product details from URI: {}", uri);
 
         try {
-            ResponseEntity<ProductDTO> response = restTemplate.getForEntity(uri, ProductDTO.class);
+            ResponseEntity<ProductDTO> response = callWarehouse(() -> restTemplate.getForEntity(uri, ProductDTO.class));
             if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
                 log.info("Product details retrieved successfully for productId: {}", productId);
                 return response.getBody();
@@ -54,9 +126,182 @@ public class WarehouseClient {
         } catch (HttpClientErrorException.NotFound e) {
             log.error("Product not found exception for productId: {}, error: {}", productId, e.getMessage());
             throw new ProductNotFoundException("Product not found: " + productId, "3404");
-        } catch (Exception e) {
+        } catch (CallNotPermittedException | BulkheadFullException e) {
+            log.warn("Call to warehouse service rejected for productId: {}, reason: {}", productId, e.getMessage());
+            throw new ServiceCommunicationException("Warehouse service is unavailable", "3500");
+        } catch (RestClientException e) {
             log.error("Error communicating with warehouse service for productId: {}, error: {}", productId, e.getMessage(), e);
             throw new ServiceCommunicationException("Failed to communicate with warehouse service", "3500");
         }
     }
+
+    /**
+     * Fetch the details of several products from the WAREHOUSE service, e.g. to price basket changes or an order.
+     * Products found in the cache are not requested again; the rest are fetched in a single round trip,
+     * either by the batch endpoint or by concurrent single-product requests, depending on the fetch mode.
+     *
+     * @param productIds the product IDs to fetch
+     * @return the fetched products keyed by their ID, in the iteration order of {@code productIds}
+     * @throws ProductNotFoundException if any of the products is not found
+     * @throws ServiceCommunicationException if there is an issue communicating with the service
+     */
+    public Map<Long, ProductDTO> getProductDetailsBatch(Collection<Long> productIds) {
+        return getProductDetailsBatch(productIds, false);
+    }
+
+    /**
+     * Fetch the details of several products to display them, like {@link #getProductDetailsBatch(Collection)}.
+     * If the WAREHOUSE module cannot be reached, the last known details are returned when every missing product has them.
+     * The result must not be used to price anything.
+     *
+     * @param productIds the product IDs to fetch
+     * @return the fetched products keyed by their ID, in the iteration order of {@code productIds}
+     * @throws ProductNotFoundException if any of the products is not found
+     * @throws ServiceCommunicationException if there is an issue communicating with the service and a product has no last known details
+     */
+    public Map<Long, ProductDTO> getProductDetailsBatchForDisplay(Collection<Long> productIds) {
+        return getProductDetailsBatch(productIds, true);
+    }
+
+    private Map<Long, ProductDTO> getProductDetailsBatch(Collection<Long> productIds, boolean allowLastKnown) {
+        Map<Long, ProductDTO> result = new LinkedHashMap<>();
+        List<Long> missingIds = new ArrayList<>();
+        for (Long productId : productIds) {
+            ProductDTO cached = productInfoCache.getIfPresent(productId);
+            result.put(productId, cached);
+            if (cached == null) {
+                missingIds.add(productId);
+            }
+        }
+        if (missingIds.isEmpty()) {
+            log.debug("All {} product details served from cache", productIds.size());
+            return result;
+        }
+
+        Map<Long, ProductDTO> fetched;
+        try {
+            fetched = fetchMode == FetchMode.PARALLEL
+                    ? fetchProductDetailsParallel(missingIds)
+                    : fetchProductDetailsBatch(missingIds);
+        } catch (ServiceCommunicationException e) {
+            if (!allowLastKnown) {
+                throw e;
+            }
+            for (Long productId : missingIds) {
+                result.put(productId, Optional.ofNullable(lastKnownProductInfoCache.getIfPresent(productId)).orElseThrow(() -> e));
+            }
+            log.warn("Warehouse service unavailable, serving last known details for {} products", missingIds.size());
+            return result;
+        }
+        fetched.forEach(this::cacheProduct);
+        result.putAll(fetched);
+        return result;
+    }
+
+    /**
+     * Drops the cached details of a product, so the next lookup fetches it from the WAREHOUSE service again.
+     *
+     * @param productId the product ID to invalidate
+     */
+    public void invalidateProduct(Long productId) {
+        productInfoCache.invalidate(productId);
+        lastKnownProductInfoCache.invalidate(productId);
+    }
+
+    private void cacheProduct(Long productId, ProductDTO product) {
+        productInfoCache.put(productId, product);
+        lastKnownProductInfoCache.put(productId, product);
+    }
+
+    private Map<Long, ProductDTO> fetchProductDetailsBatch(Collection<Long> productIds) {
+        URI uri = UriComponentsBuilder.fromHttpUrl(warehouseServiceUrl)
+                .pathSegment("products", "batch")
+                .queryParam("ids", productIds.toArray())
+                .build()
+                .toUri();
+        log.info("Fetching {} product details from URI: {}", productIds.size(), uri);
+
+        List<ProductDTO> products;
+        try {
+            ResponseEntity<List<ProductDTO>> response = callWarehouse(() -> restTemplate.exchange(uri, HttpMethod.GET, null,
+                    new ParameterizedTypeReference<List<ProductDTO>>() {}));
+            products = response.getBody() != null ? response.getBody() : List.of();
+        } catch (CallNotPermittedException | BulkheadFullException e) {
+            log.warn("Call to warehouse service rejected for productIds: {}, reason: {}", productIds, e.getMessage());
+            throw new ServiceCommunicationException("Warehouse service is unavailable", "3500");
+        } catch (RestClientException e) {
+            log.error("Error communicating with warehouse service for productIds: {}, error: {}", productIds, e.getMessage(), e);
+            throw new ServiceCommunicationException("Failed to communicate with warehouse service", "3500");
+        }
+
+        Map<Long, ProductDTO> productsById = new LinkedHashMap<>();
+        products.forEach(product -> productsById.put(product.getId(), product));
+        Map<Long, ProductDTO> result = new LinkedHashMap<>();
+        for (Long productId : productIds) {
+            ProductDTO product = productsById.get(productId);
+            if (product == null) {
+                log.warn("Product not found in batch response for productId: {}", productId);
+                throw new ProductNotFoundException("Product not found: " + productId, "3404");
+            }
+            result.put(productId, product);
+        }
+        log.info("Product details retrieved successfully for {} products", result.size());
+        return result;
+    }
+
+    /**
+     * Fetches the products with one request each, all of them running concurrently on virtual threads.
+     * At most {@code parallelMaxConcurrency} requests are in flight at once, and the whole fan-out
+     * must complete within {@code parallelDeadline}, otherwise the outstanding requests are cancelled.
+     */
+    private Map<Long, ProductDTO> fetchProductDetailsParallel(Collection<Long> productIds) {
+        log.info("Fetching {} product details concurrently", productIds.size());
+        Semaphore permits = new Semaphore(parallelMaxConcurrency);
+        long deadline = System.nanoTime() + parallelDeadline.toNanos();
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        Map<Long, Future<ProductDTO>> futures = new LinkedHashMap<>();
+        try {
+            for (Long productId : productIds) {
+                futures.put(productId, executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return fetchProductDetails(productId);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+
+            Map<Long, ProductDTO> result = new LinkedHashMap<>();
+            for (Map.Entry<Long, Future<ProductDTO>> entry : futures.entrySet()) {
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                result.put(entry.getKey(), entry.getValue().get(remaining, TimeUnit.NANOSECONDS));
+            }
+            return result;
+        } catch (TimeoutException e) {
+            log.error("Fetching product details for productIds: {} did not finish within {}", productIds, parallelDeadline);
+            throw new ServiceCommunicationException("Failed to communicate with warehouse service", "3500");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new ServiceCommunicationException("Failed to communicate with warehouse service", "3500");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceCommunicationException("Failed to communicate with warehouse service", "3500");
+        } finally {
+            futures.values().forEach(future -> future.cancel(true));
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs a request to the WAREHOUSE module through its bulkhead, guarded by its circuit breaker.
+     *
+     * @throws CallNotPermittedException if the circuit breaker is open
+     * @throws BulkheadFullException if too many requests are already in flight
+     */
+    private <T> T callWarehouse(Supplier<T> request) {
+        return circuitBreaker.executeSupplier(Bulkhead.decorateSupplier(bulkhead, request));
+    }
 }
\ No newline at end of file
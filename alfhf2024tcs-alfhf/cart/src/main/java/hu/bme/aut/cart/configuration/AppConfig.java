@@ -1,13 +1,77 @@
 package hu.bme.aut.cart.configuration;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+
+/**
+ * Configuration of the HTTP clients used to reach the CORE and WAREHOUSE modules.
+ * Each module has its own connection pool with its own size limit, timeouts and idle eviction.
+ */
 @Configuration
 public class AppConfig {
+
+    @Bean
+    @ConfigurationProperties("core.client.http")
+    public HttpPoolSettings coreHttpPoolSettings() {
+        return new HttpPoolSettings();
+    }
+
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    @ConfigurationProperties("warehouse.client.http")
+    public HttpPoolSettings warehouseHttpPoolSettings() {
+        return new HttpPoolSettings();
+    }
+
+    @Bean
+    public RestTemplate coreRestTemplate(RestTemplateBuilder restTemplateBuilder, MeterRegistry meterRegistry) {
+        return pooledRestTemplate("core", coreHttpPoolSettings(), restTemplateBuilder, meterRegistry);
+    }
+
+    @Bean
+    public RestTemplate warehouseRestTemplate(RestTemplateBuilder restTemplateBuilder, MeterRegistry meterRegistry) {
+        return pooledRestTemplate("warehouse", warehouseHttpPoolSettings(), restTemplateBuilder, meterRegistry);
+    }
+
+    private RestTemplate pooledRestTemplate(String poolName, HttpPoolSettings settings,
+                                            RestTemplateBuilder restTemplateBuilder, MeterRegistry meterRegistry) {
+        InstrumentedConnectionManager connectionManager = new InstrumentedConnectionManager(poolName, meterRegistry);
+        connectionManager.setMaxTotal(settings.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(settings.getMaxConnections());
+        connectionManager.setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(toTimeout(settings.getConnectTimeout()))
+                .setSocketTimeout(toTimeout(settings.getReadTimeout()))
+                .setTimeToLive(TimeValue.ofMilliseconds(settings.getTimeToLive().toMillis()))
+                .build());
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(toTimeout(settings.getLeaseTimeout()))
+                        .setResponseTimeout(toTimeout(settings.getReadTimeout()))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(settings.getIdleEviction().toMillis()))
+                .build();
+
+        return restTemplateBuilder
+                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(httpClient))
+                .build();
+    }
+
+    private static Timeout toTimeout(Duration duration) {
+        return Timeout.ofMilliseconds(duration.toMillis());
     }
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+package hu.bme.aut.cart.configuration;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import hu.bme.aut.cart.cache.TokenResolution;
+import hu.bme.aut.cart.dto.ProductDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the in-process caches of the CART module.
+ * Every cache records its statistics and is bound to the meter registry, so its hit, miss and eviction counters
+ * are published as metrics.
+ * Product details are kept twice: for their time-to-live in the product cache, and for a longer retention in the
+ * last known product cache, which is only read as a fallback while the WAREHOUSE module is down.
+ */
+@Configuration
+public class CacheConfig {
+
+    @Bean
+    public Cache<Long, ProductDTO> productInfoCache(
+            @Value("${warehouse.client.cache.max-size:1000}") int maxSize,
+            @Value("${warehouse.client.cache.ttl:30s}") Duration ttl,
+            MeterRegistry meterRegistry) {
+        Cache<Long, ProductDTO> cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        return CaffeineCacheMetrics.monitor(meterRegistry, cache, "productInfo");
+    }
+
+    @Bean
+    public Cache<Long, ProductDTO> lastKnownProductInfoCache(
+            @Value("${warehouse.client.cache.max-size:1000}") int maxSize,
+            @Value("${warehouse.client.cache.stale-ttl:1h}") Duration staleTtl,
+            MeterRegistry meterRegistry) {
+        Cache<Long, ProductDTO> cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(staleTtl)
+                .recordStats()
+                .build();
+        return CaffeineCacheMetrics.monitor(meterRegistry, cache, "lastKnownProductInfo");
+    }
+
+    @Bean
+    public Cache<String, TokenResolution> userTokenCache(
+            @Value("${core.client.token-cache.max-size:10000}") int maxSize,
+            @Value("${core.client.token-cache.ttl:30s}") Duration ttl,
+            @Value("${core.client.token-cache.negative-ttl:10s}") Duration negativeTtl,
+            MeterRegistry meterRegistry) {
+        Cache<String, TokenResolution> cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, TokenResolution>() {
+                    @Override
+                    public long expireAfterCreate(String token, TokenResolution resolution, long currentTime) {
+                        return (resolution.isValid() ? ttl : negativeTtl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String token, TokenResolution resolution, long currentTime, long currentDuration) {
+                        return expireAfterCreate(token, resolution, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String token, TokenResolution resolution, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        return CaffeineCacheMetrics.monitor(meterRegistry, cache, "userToken");
+    }
+
+    @Bean
+    public Cache<String, ResponseEntity<?>> idempotentResponses(
+            @Value("${cart.idempotency.max-size:10000}") int maxSize,
+            @Value("${cart.idempotency.ttl:1h}") Duration ttl,
+            MeterRegistry meterRegistry) {
+        Cache<String, ResponseEntity<?>> cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        return CaffeineCacheMetrics.monitor(meterRegistry, cache, "idempotentResponses");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,34 @@
+package hu.bme.aut.cart.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Configuration of the asynchronous checkout pipeline.
+ * Accepted orders are validated by a fixed pool of workers fed from a bounded queue. When the queue is full,
+ * the accepting thread validates the order itself, which slows callers down instead of dropping orders.
+ */
+@Configuration
+@EnableScheduling
+public class CheckoutConfig {
+
+    @Bean
+    public ThreadPoolTaskExecutor checkoutExecutor(
+            @Value("${cart.checkout.workers:8}") int workers,
+            @Value("${cart.checkout.queue-capacity:10000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("checkout-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
\ No newline at end of file
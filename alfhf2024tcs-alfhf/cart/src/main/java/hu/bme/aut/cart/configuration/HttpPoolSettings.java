@@ -0,0 +1,43 @@
+package hu.bme.aut.cart.configuration;
+
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * Settings of a pooled HTTP client used to reach another module.
+ * Every downstream module gets its own pool, so a slow module cannot exhaust the connections of another.
+ */
+@Data
+public class HttpPoolSettings {
+
+    /**
+     * The maximum number of connections kept open to the module.
+     */
+    private int maxConnections = 50;
+
+    /**
+     * How long to wait for a TCP connection to be established.
+     */
+    private Duration connectTimeout = Duration.ofSeconds(2);
+
+    /**
+     * How long to wait for the response of a request.
+     */
+    private Duration readTimeout = Duration.ofSeconds(5);
+
+    /**
+     * How long a request may wait for a free connection from the pool.
+     */
+    private Duration leaseTimeout = Duration.ofSeconds(1);
+
+    /**
+     * How long a connection may stay idle in the pool before it is closed.
+     */
+    private Duration idleEviction = Duration.ofSeconds(30);
+
+    /**
+     * The maximum lifetime of a pooled connection, after which it is not reused.
+     */
+    private Duration timeToLive = Duration.ofMinutes(5);
+}
\ No newline at end of file
@@ -1,5 +1,7 @@
 package hu.bme.aut.cart.configuration;
 
+import hu.bme.aut.cart.dto.OrderDTO;
+import hu.bme.aut.cart.model.entity.Order;
 import org.modelmapper.ModelMapper;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -7,8 +9,15 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class ModelMapperConfig {
 
+    /**
+     * The basket of an OrderDTO is always built by the order service, from the order lines or,
+     * for older orders, from the basket; mapping it here would load the basket and its lines.
+     */
     @Bean
     public ModelMapper modelMapper() {
-        return new ModelMapper();
+        ModelMapper modelMapper = new ModelMapper();
+        modelMapper.typeMap(Order.class, OrderDTO.class)
+                .addMappings(mapper -> mapper.skip(OrderDTO::setBasket));
+        return modelMapper;
     }
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package hu.bme.aut.cart.configuration;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration of the circuit breakers and bulkheads guarding the calls to the CORE and WAREHOUSE modules.
+ * The instances are taken from the registries, so they are configured by the {@code resilience4j.*} properties
+ * and their state and call counters are published as metrics.
+ */
+@Configuration
+public class ResilienceConfig {
+
+    @Bean
+    public CircuitBreaker warehouseCircuitBreaker(CircuitBreakerRegistry registry) {
+        return registry.circuitBreaker("warehouse");
+    }
+
+    @Bean
+    public Bulkhead warehouseBulkhead(BulkheadRegistry registry) {
+        return registry.bulkhead("warehouse");
+    }
+
+    @Bean
+    public CircuitBreaker coreCircuitBreaker(CircuitBreakerRegistry registry) {
+        return registry.circuitBreaker("core");
+    }
+
+    @Bean
+    public Bulkhead coreBulkhead(BulkheadRegistry registry) {
+        return registry.bulkhead("core");
+    }
+}
\ No newline at end of file
@@ -1,17 +1,31 @@
 package hu.bme.aut.cart.controller;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import hu.bme.aut.cart.dto.BasketDTO;
+import hu.bme.aut.cart.dto.BasketHistoryDTO;
+import hu.bme.aut.cart.dto.BasketOperationDTO;
 import hu.bme.aut.cart.dto.ErrorResponseDTO;
+import hu.bme.aut.cart.idempotency.IdempotencyService;
+import hu.bme.aut.cart.service.BasketHistoryService;
 import hu.bme.aut.cart.service.BasketService;
+import hu.bme.aut.cart.service.InMemoryBasketService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
 /**
  * REST controller for managing baskets within the CART module.
+ * The active basket of the user is served from memory when the in-memory basket store is enabled.
+ * Mutations sent with an Idempotency-Key header are applied once; repeated requests get the stored response.
  */
 @RestController
 @RequestMapping("/cart/basket")
@@ -20,11 +34,18 @@ import org.springframework.web.bind.annotation.*;
 public class BasketController {
 
     private final BasketService basketService;
+    private final BasketHistoryService basketHistoryService;
+    private final ObjectProvider<InMemoryBasketService> inMemoryBasketService;
+    private final IdempotencyService idempotencyService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping
     public ResponseEntity<?> getBasketByUser(@RequestHeader("User-Token") String userToken ) {
         log.debug("Fetching basket for user");
-        BasketDTO basketDTO = basketService.getBasketByUser(userToken);
+        InMemoryBasketService inMemory = inMemoryBasketService.getIfAvailable();
+        BasketDTO basketDTO = inMemory != null
+                ? inMemory.getBasketByUser(userToken)
+                : basketService.getBasketByUser(userToken);
         log.info("Basket fetched successfully with ID {}", basketDTO.getBasketId());
         return ResponseEntity.ok(basketDTO);
     }
@@ -43,44 +64,119 @@ public class BasketController {
         return ResponseEntity.ok(basketDTO);
     }
 
+    /**
+     * Rebuilds the state of a basket from its recorded history, also for baskets that no longer exist.
+     *
+     * @param basketId the ID of the basket to rebuild.
+     * @return a ResponseEntity containing the BasketHistoryDTO or an error response.
+     */
+    @GetMapping("/{basketId}/history")
+    public ResponseEntity<?> getBasketHistory(@PathVariable Long basketId) {
+        log.debug("Rebuilding basket with ID {} from its history", basketId);
+        BasketHistoryDTO historyDTO = basketHistoryService.rebuildBasket(basketId);
+        log.info("Basket {} rebuilt at event {}", basketId, historyDTO.getSequenceNumber());
+        return ResponseEntity.ok(historyDTO);
+    }
+
     /**
      * Adds a product to the active basket for a given user.
      *
      * @param userToken the user token from the request header.
+     * @param idempotencyKey the optional idempotency key from the request header.
      * @param productId the product ID to add.
      * @param quantity the quantity of the product to add.
      * @return a ResponseEntity containing the updated BasketDTO or an error response.
      */
     @PutMapping("/{productId}/{quantity}")
     public ResponseEntity<?> addToBasket(@RequestHeader("User-Token") String userToken,
+                                         @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
                                          @PathVariable Long productId,
                                          @PathVariable Integer quantity) {
-        try {
-            log.debug("Adding product {} with quantity {} to basket", productId, quantity);
-            BasketDTO basketDTO = basketService.addToBasket(userToken, productId, quantity);
-            log.info("Products added to basket: {}", basketDTO.getProducts().toArray());
-            return ResponseEntity.ok(basketDTO);
-        } catch (IllegalArgumentException e) {
-            log.error("Error adding product to basket: {}", e.getMessage());
-            return new ResponseEntity<>(new ErrorResponseDTO(false, e.getMessage(), "3406"), HttpStatus.BAD_REQUEST);
-        }
+        String operation = "PUT /cart/basket/" + productId + "/" + quantity;
+        return idempotencyService.execute(idempotencyKey, userToken, operation, () -> {
+            try {
+                log.debug("Adding product {} with quantity {} to basket", productId, quantity);
+                InMemoryBasketService inMemory = inMemoryBasketService.getIfAvailable();
+                BasketDTO basketDTO = inMemory != null
+                        ? inMemory.addToBasket(userToken, productId, quantity)
+                        : basketService.addToBasket(userToken, productId, quantity);
+                log.info("Products added to basket: {}", basketDTO.getProducts().toArray());
+                return ResponseEntity.ok(basketDTO);
+            } catch (IllegalArgumentException e) {
+                log.error("Error adding product to basket: {}", e.getMessage());
+                return new ResponseEntity<>(new ErrorResponseDTO(false, e.getMessage(), "3406"), HttpStatus.BAD_REQUEST);
+            }
+        });
     }
 
     /**
      * Removes a product from the active basket for a given user.
      *
      * @param userToken the user token from the request header.
+     * @param idempotencyKey the optional idempotency key from the request header.
      * @param productId the product ID to remove.
      * @param quantity the quantity of the product to remove.
      * @return a ResponseEntity containing the updated BasketDTO or an error response.
      */
     @DeleteMapping("/{productId}/{quantity}")
     public ResponseEntity<?> removeFromBasket(@RequestHeader("User-Token") String userToken,
+                                              @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
                                               @PathVariable Long productId,
                                               @PathVariable Integer quantity) {
-        log.debug("Removing product {} with quantity {} from basket", productId, quantity);
-        BasketDTO basketDTO = basketService.removeFromBasket(userToken, productId, quantity);
-        log.info("Product {} with quantity {} removed from basket", productId, quantity);
-        return ResponseEntity.ok(basketDTO);
+        String operation = "DELETE /cart/basket/" + productId + "/" + quantity;
+        return idempotencyService.execute(idempotencyKey, userToken, operation, () -> {
+            log.debug("Removing product {} with quantity {} from basket", productId, quantity);
+            InMemoryBasketService inMemory = inMemoryBasketService.getIfAvailable();
+            BasketDTO basketDTO = inMemory != null
+                    ? inMemory.removeFromBasket(userToken, productId, quantity)
+                    : basketService.removeFromBasket(userToken, productId, quantity);
+            log.info("Product {} with quantity {} removed from basket", productId, quantity);
+            return ResponseEntity.ok(basketDTO);
+        });
+    }
+
+    /**
+     * Applies several add, remove and set-quantity operations to the active basket of a user at once.
+     *
+     * @param userToken the user token from the request header.
+     * @param idempotencyKey the optional idempotency key from the request header.
+     * @param operations the operations to apply, in order.
+     * @return a ResponseEntity containing the updated BasketDTO or an error response.
+     */
+    @PostMapping("/bulk")
+    public ResponseEntity<?> applyOperations(@RequestHeader("User-Token") String userToken,
+                                             @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                             @RequestBody List<BasketOperationDTO> operations) {
+        String operation = "POST /cart/basket/bulk#" + digest(operations);
+        return idempotencyService.execute(idempotencyKey, userToken, operation, () -> {
+            try {
+                log.debug("Applying {} operations to basket", operations.size());
+                InMemoryBasketService inMemory = inMemoryBasketService.getIfAvailable();
+                BasketDTO basketDTO = inMemory != null
+                        ? inMemory.applyOperations(userToken, operations)
+                        : basketService.applyOperations(userToken, operations);
+                log.info("{} operations applied to basket {}", operations.size(), basketDTO.getBasketId());
+                return ResponseEntity.ok(basketDTO);
+            } catch (IllegalArgumentException e) {
+                log.error("Error applying operations to basket: {}", e.getMessage());
+                return new ResponseEntity<>(new ErrorResponseDTO(false, e.getMessage(), "3406"), HttpStatus.BAD_REQUEST);
+            }
+        });
+    }
+
+    /**
+     * Computes the SHA-256 digest of the canonical JSON form of the operations, so that two different
+     * bulk requests sent with the same idempotency key are never mistaken for a repeat.
+     *
+     * @param operations the operations of the request.
+     * @return the hex encoded digest.
+     */
+    private String digest(List<BasketOperationDTO> operations) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(operations);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not digest the bulk operations", e);
+        }
     }
 }
\ No newline at end of file
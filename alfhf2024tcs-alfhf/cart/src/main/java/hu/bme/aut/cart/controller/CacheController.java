@@ -0,0 +1,77 @@
+package hu.bme.aut.cart.controller;
+
+import hu.bme.aut.cart.client.CoreClient;
+import hu.bme.aut.cart.client.WarehouseClient;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * REST controller that lets other modules invalidate data cached by the CART module.
+ * The endpoints are only for internal callers, which authenticate with the shared secret in the X-Internal-Secret header.
+ * Every CART instance has its own caches, so a caller has to invalidate the data on each instance.
+ */
+@RestController
+@RequestMapping("/cart/cache")
+@RequiredArgsConstructor
+@Slf4j
+public class CacheController {
+
+    private final WarehouseClient warehouseClient;
+    private final CoreClient coreClient;
+
+    @Value("${cart.cache.internal-secret:}")
+    private String internalSecret;
+
+    /**
+     * Drops the cached details of a product, e.g. after its price has changed in the WAREHOUSE module.
+     *
+     * @param productId the ID of the product to invalidate.
+     * @param secret the shared secret of internal callers.
+     * @return an empty response with status 204, or 403 if the secret does not match.
+     */
+    @DeleteMapping("/products/{productId}")
+    public ResponseEntity<Void> invalidateProduct(@PathVariable Long productId,
+                                                  @RequestHeader(value = "X-Internal-Secret", required = false) String secret) {
+        if (!isInternalCaller(secret)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        log.info("Invalidating cached details of product {}", productId);
+        warehouseClient.invalidateProduct(productId);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Drops the cached validation result of a user token, e.g. after the token has been revoked in the CORE module.
+     * The CORE module does not call this by itself; without it, a revoked token is accepted until its cache entry expires.
+     *
+     * @param userToken the user token from the request header.
+     * @param secret the shared secret of internal callers.
+     * @return an empty response with status 204, or 403 if the secret does not match.
+     */
+    @DeleteMapping("/tokens")
+    public ResponseEntity<Void> revokeToken(@RequestHeader("User-Token") String userToken,
+                                            @RequestHeader(value = "X-Internal-Secret", required = false) String secret) {
+        if (!isInternalCaller(secret)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        log.info("Revoking cached validation result of a user token");
+        coreClient.revokeToken(userToken);
+        return ResponseEntity.noContent().build();
+    }
+
+    private boolean isInternalCaller(String secret) {
+        if (internalSecret.isEmpty() || secret == null
+                || !MessageDigest.isEqual(internalSecret.getBytes(StandardCharsets.UTF_8), secret.getBytes(StandardCharsets.UTF_8))) {
+            log.warn("Rejected cache invalidation without a valid internal secret");
+            return false;
+        }
+        return true;
+    }
+}
\ No newline at end of file
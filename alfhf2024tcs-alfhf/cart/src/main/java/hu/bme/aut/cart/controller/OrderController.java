@@ -1,15 +1,22 @@
 package hu.bme.aut.cart.controller;
 
+import hu.bme.aut.cart.checkout.OrderStatusNotifier;
 import hu.bme.aut.cart.dto.OrderDTO;
+import hu.bme.aut.cart.dto.OrderPageDTO;
+import hu.bme.aut.cart.dto.OrderStatusDTO;
+import hu.bme.aut.cart.idempotency.IdempotencyService;
 import hu.bme.aut.cart.model.entity.Order;
 import hu.bme.aut.cart.service.OrderService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.net.URI;
 import java.util.List;
 
 /**
@@ -22,6 +29,8 @@ import java.util.List;
 public class OrderController {
 
     private final OrderService orderService;
+    private final OrderStatusNotifier orderStatusNotifier;
+    private final IdempotencyService idempotencyService;
 
     /**
      * Retrieves all orders associated with a specific user.
@@ -43,6 +52,30 @@ public class OrderController {
         }
     }
 
+    /**
+     * Retrieves one page of the user's order history, newest first.
+     *
+     * @param userToken The user token from the request header.
+     * @param size The number of orders on the page.
+     * @param before The next cursor of the previous page; omitted for the first page.
+     * @return An OrderPageDTO containing the orders of the page and the cursor of the next page.
+     */
+    @GetMapping("/history")
+    public ResponseEntity<OrderPageDTO> getOrderHistory(
+            @RequestHeader("User-Token") String userToken,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) Long before) {
+        log.debug("Received request to fetch order history page before {} with size {}", before, size);
+        try {
+            OrderPageDTO page = orderService.getOrderHistory(userToken, before, size);
+            log.info("Order history page fetched successfully with {} orders", page.getOrders().size());
+            return ResponseEntity.ok(page);
+        } catch (Exception ex) {
+            log.error("Error fetching order history: {}", ex.getMessage());
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error fetching order history", ex);
+        }
+    }
+
     /**
      * Retrieves a specific order by its ID.
      *
@@ -62,23 +95,71 @@ public class OrderController {
         }
     }
 
+    /**
+     * Retrieves the checkout status of an order of the user, for clients polling after placing it.
+     *
+     * @param userToken The user token from the request header.
+     * @param orderId The ID of the order.
+     * @return An OrderStatusDTO with the status and, for a cancelled order, the failure reason.
+     */
+    @GetMapping("/{orderId}/status")
+    public ResponseEntity<OrderStatusDTO> getOrderStatus(@RequestHeader("User-Token") String userToken,
+                                                         @PathVariable Long orderId) {
+        log.debug("Received request to fetch status of order {}", orderId);
+        return ResponseEntity.ok(orderService.getOrderStatus(orderId, userToken));
+    }
+
+    /**
+     * Subscribes to the checkout result of an order of the user as a server-sent event stream.
+     * A single "status" event is sent once the order is completed or cancelled, then the stream is closed.
+     *
+     * @param userToken The user token from the request header.
+     * @param orderId The ID of the order.
+     * @return The event stream of the order.
+     */
+    @GetMapping(path = "/{orderId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeToOrderStatus(@RequestHeader("User-Token") String userToken,
+                                             @PathVariable Long orderId) {
+        log.debug("Received subscription to status of order {}", orderId);
+        // Checked before subscribing, so no emitter is registered for another user's order
+        orderService.getOrderStatus(orderId, userToken);
+        SseEmitter emitter = orderStatusNotifier.subscribe(orderId);
+        orderStatusNotifier.publish(orderService.getOrderStatus(orderId, userToken));
+        return emitter;
+    }
+
+    /**
+     * Places an order from the active basket of the user.
+     * The order is accepted in PENDING state and the card is validated asynchronously;
+     * the response points to the status endpoint of the order.
+     * With an Idempotency-Key header a repeated request returns the first accepted order instead of placing another one.
+     *
+     * @param userToken The user token from the request header.
+     * @param idempotencyKey The optional idempotency key from the request header.
+     * @param cardId The ID of the card used for the order.
+     * @return 202 Accepted with the pending OrderDTO.
+     */
     @PostMapping("/{cardId}")
     public ResponseEntity<OrderDTO> createOrderForUser(
             @RequestHeader("User-Token") String userToken,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @PathVariable String cardId) {
         log.info("Received request to create order for user with card ID {}", cardId);
-        try {
-            OrderDTO orderDTO = orderService.createOrderForUser(userToken, cardId);
-            log.info("Order created successfully with ID {}", orderDTO.getOrderId());
-            return ResponseEntity.ok(orderDTO);
-        } catch (IllegalStateException ex) {
-            log.error("Failed to create order for user: {}", ex.getMessage());
-            return ResponseEntity.badRequest().body(null);
-        } catch (Exception ex) {
-            log.error("Error creating order for user: {}", ex.getMessage());
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error creating order", ex);
-        }
-
+        return idempotencyService.execute(idempotencyKey, userToken, "POST /cart/orders/" + cardId, () -> {
+            try {
+                OrderDTO orderDTO = orderService.createOrderForUser(userToken, cardId);
+                log.info("Order accepted with ID {}", orderDTO.getOrderId());
+                return ResponseEntity.accepted()
+                        .location(URI.create("/cart/orders/" + orderDTO.getOrderId() + "/status"))
+                        .body(orderDTO);
+            } catch (IllegalStateException ex) {
+                log.error("Failed to create order for user: {}", ex.getMessage());
+                return ResponseEntity.badRequest().body(null);
+            } catch (Exception ex) {
+                log.error("Error creating order for user: {}", ex.getMessage());
+                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error creating order", ex);
+            }
+        });
     }
 
     /**
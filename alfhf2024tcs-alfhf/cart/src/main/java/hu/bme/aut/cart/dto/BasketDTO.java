@@ -6,6 +6,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 @Data
@@ -16,6 +17,6 @@ public class BasketDTO {
     private boolean success;
     private Long basketId;
     private BasketStatus basketStatus;
-    private Double subtotalAmount;
+    private BigDecimal subtotalAmount;
     private List<ProductDTO> products;
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package hu.bme.aut.cart.dto;
+
+import hu.bme.aut.cart.model.enums.BasketStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BasketHistoryDTO {
+    private boolean success;
+    private Long basketId;
+    private long sequenceNumber;
+    private BasketStatus basketStatus;
+    private BigDecimal subtotalAmount;
+    private Map<Long, Integer> products;
+}
\ No newline at end of file
@@ -0,0 +1,17 @@
+package hu.bme.aut.cart.dto;
+
+import hu.bme.aut.cart.model.enums.BasketOperationType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BasketOperationDTO {
+    private BasketOperationType type;
+    private Long productId;
+    private Integer quantity;
+}
\ No newline at end of file
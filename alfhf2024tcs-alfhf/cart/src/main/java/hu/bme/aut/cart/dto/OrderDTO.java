@@ -6,6 +6,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.math.BigDecimal;
 import java.util.Date;
 
 @Data
@@ -16,7 +17,7 @@ public class OrderDTO {
     private Long orderId;
     private Date orderDate;
     private OrderStatus orderStatus;
-    private Double totalAmount;
+    private BigDecimal totalAmount;
     private BasketDTO basket;
     private boolean success;
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package hu.bme.aut.cart.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderPageDTO {
+    private List<OrderDTO> orders;
+    private Long nextCursor;
+    private boolean hasMore;
+    private boolean success;
+}
\ No newline at end of file
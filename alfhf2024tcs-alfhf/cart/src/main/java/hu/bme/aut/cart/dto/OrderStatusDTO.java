@@ -0,0 +1,19 @@
+package hu.bme.aut.cart.dto;
+
+import hu.bme.aut.cart.model.enums.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderStatusDTO {
+    private Long orderId;
+    private OrderStatus orderStatus;
+    private String failureCode;
+    private String failureMessage;
+    private boolean success;
+}
\ No newline at end of file
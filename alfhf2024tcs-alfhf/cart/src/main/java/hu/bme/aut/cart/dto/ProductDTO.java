@@ -1,18 +1,22 @@
 package hu.bme.aut.cart.dto;
 
+import com.fasterxml.jackson.annotation.JsonAlias;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.math.BigDecimal;
+
 @AllArgsConstructor
 @NoArgsConstructor
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class ProductDTO {
+    @JsonAlias("productId")
     private Long id;
     private String name;
     private String category;
-    private Double price;
+    private BigDecimal price;
     private Integer quantity;
 }
\ No newline at end of file
@@ -2,6 +2,8 @@ package hu.bme.aut.cart.exception;
 
 import hu.bme.aut.cart.dto.ErrorResponseDTO;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -79,4 +81,29 @@ public class CartExceptionHandler {
         log.error("User token error: {}", ex.getMessage());
         return new ResponseEntity<>(new ErrorResponseDTO(false, ex.getMessage(), ex.getErrorCode()), HttpStatus.UNAUTHORIZED);
     }
+
+    /**
+     * Handles write conflicts that were still failing after the last retry, for example
+     * a basket modified concurrently or a second active basket of the same user.
+     *
+     * @param ex the caught conflict exception
+     * @return a ResponseEntity containing an ErrorResponseDTO with error details
+     */
+    @ExceptionHandler({OptimisticLockingFailureException.class, DataIntegrityViolationException.class})
+    public ResponseEntity<ErrorResponseDTO> handleConflict(RuntimeException ex) {
+        log.error("Concurrent modification conflict: {}", ex.getMessage());
+        return new ResponseEntity<>(new ErrorResponseDTO(false, "The basket was modified concurrently, please retry", "3409"), HttpStatus.CONFLICT);
+    }
+
+    /**
+     * Handles repeated requests arriving while the first request with the same idempotency key is still running.
+     *
+     * @param ex the caught IdempotentRequestInProgressException
+     * @return a ResponseEntity containing an ErrorResponseDTO with error details
+     */
+    @ExceptionHandler(IdempotentRequestInProgressException.class)
+    public ResponseEntity<ErrorResponseDTO> handleIdempotentRequestInProgressException(IdempotentRequestInProgressException ex) {
+        log.warn("Idempotent request in progress: {}", ex.getMessage());
+        return new ResponseEntity<>(new ErrorResponseDTO(false, ex.getMessage(), ex.getErrorCode()), HttpStatus.CONFLICT);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package hu.bme.aut.cart.exception;
+
+import lombok.Getter;
+
+@Getter
+public class IdempotentRequestInProgressException extends RuntimeException {
+    private final String errorCode;
+
+    public IdempotentRequestInProgressException(String message, String errorCode) {
+        super(message);
+        this.errorCode = errorCode;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,90 @@
+package hu.bme.aut.cart.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import hu.bme.aut.cart.exception.IdempotentRequestInProgressException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Makes mutating requests safe to retry by remembering their responses under the Idempotency-Key sent by the client.
+ * A repeated request with the same key, user and operation gets the stored response without the work being done again.
+ * Responses are kept in a bounded, expiring cache; server errors and exceptions are not stored, so those requests can be retried.
+ * A repeat arriving while the first request is still running is rejected instead of being run twice.
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private final Cache<String, ResponseEntity<?>> idempotentResponses;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final Counter replays;
+
+    public IdempotencyService(@Qualifier("idempotentResponses") Cache<String, ResponseEntity<?>> idempotentResponses,
+                              MeterRegistry meterRegistry) {
+        this.idempotentResponses = idempotentResponses;
+        this.replays = Counter.builder("cart.idempotency.replays")
+                .description("Requests answered with the stored response of an earlier request with the same idempotency key")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs the action once per idempotency key, user and operation, and replays its response for repeated requests.
+     * Without an idempotency key the action is simply run.
+     *
+     * @param idempotencyKey the Idempotency-Key header of the request, may be null
+     * @param userToken the user token of the request
+     * @param operation the method, path and anything else identifying what the request does
+     * @param action the handler logic producing the response
+     * @return the response of the action, or the stored response of the first request with the same key
+     * @throws IdempotentRequestInProgressException if a request with the same key is still being processed
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ResponseEntity<T> execute(String idempotencyKey, String userToken, String operation,
+                                         Supplier<ResponseEntity<T>> action) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return action.get();
+        }
+        String key = userToken + '|' + operation + '|' + idempotencyKey;
+        ResponseEntity<?> stored = idempotentResponses.getIfPresent(key);
+        if (stored != null) {
+            return replay((ResponseEntity<T>) stored, idempotencyKey);
+        }
+        if (!inFlight.add(key)) {
+            throw new IdempotentRequestInProgressException(
+                    "A request with the same idempotency key is still being processed", "3411");
+        }
+        try {
+            // Check again, the first request may have finished between the lookup and the claim
+            stored = idempotentResponses.getIfPresent(key);
+            if (stored != null) {
+                return replay((ResponseEntity<T>) stored, idempotencyKey);
+            }
+            ResponseEntity<T> response = action.get();
+            if (!response.getStatusCode().is5xxServerError()) {
+                idempotentResponses.put(key, response);
+            }
+            return response;
+        } finally {
+            inFlight.remove(key);
+        }
+    }
+
+    private <T> ResponseEntity<T> replay(ResponseEntity<T> stored, String idempotencyKey) {
+        log.info("Replaying stored response for idempotency key {}", idempotencyKey);
+        replays.increment();
+        return ResponseEntity.status(stored.getStatusCode())
+                .headers(stored.getHeaders())
+                .header(REPLAYED_HEADER, "true")
+                .body(stored.getBody());
+    }
+}
\ No newline at end of file
@@ -11,7 +11,6 @@ import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
 
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Map;
 
 @Component
@@ -28,9 +27,10 @@ public class DataInitializer implements CommandLineRunner {
 
     @Override
     public void run(String... args) throws Exception {
-        log.info("Start from a clean slate");
-        basketRepository.deleteAll();
-        orderRepository.deleteAll();
+        if (basketRepository.count() > 0) {
+            log.info("Baskets already present, skipping data initialization");
+            return;
+        }
 
         log.info("Creating basket and order");
         //Basket basket = createBasket();
@@ -46,11 +46,10 @@ public class DataInitializer implements CommandLineRunner {
         Basket basket = Basket.builder()
                 .userId(1L)
                 .basketStatus(BasketStatus.ACTIVE)
-                .subTotalAmount(0.0)
-                .products(new HashMap<>())
+                .subTotalMinor(0L)
                 .build();
         log.info("Basket created: {}", basket);
-        basket.addProduct(1L, 20.2, 2);
+        basket.addProduct(1L, 2020L, 2);
         return basket;
     }
 
@@ -59,7 +58,7 @@ public class DataInitializer implements CommandLineRunner {
                 .basket(basket)
                 .orderDate(new Date())
                 .status(OrderStatus.PENDING)
-                .totalAmount(0.0)
+                .totalMinor(0L)
                 .build();
         log.info("Order created: {}", order);
         return order;
@@ -0,0 +1,40 @@
+package hu.bme.aut.cart.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Stores the product quantities of a basket as a single compact text column,
+ * e.g. {@code 12:1,40:3} for one piece of product 12 and three pieces of product 40.
+ */
+@Converter
+public class BasketLinesConverter implements AttributeConverter<Map<Long, Integer>, String> {
+
+    @Override
+    public String convertToDatabaseColumn(Map<Long, Integer> products) {
+        if (products == null || products.isEmpty()) {
+            return "";
+        }
+        return products.entrySet().stream()
+                .map(entry -> entry.getKey() + ":" + entry.getValue())
+                .collect(Collectors.joining(","));
+    }
+
+    @Override
+    public Map<Long, Integer> convertToEntityAttribute(String column) {
+        if (column == null || column.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Long, Integer> products = new LinkedHashMap<>();
+        for (String line : column.split(",")) {
+            int separator = line.indexOf(':');
+            products.put(Long.parseLong(line.substring(0, separator)), Integer.parseInt(line.substring(separator + 1)));
+        }
+        return products;
+    }
+}
\ No newline at end of file
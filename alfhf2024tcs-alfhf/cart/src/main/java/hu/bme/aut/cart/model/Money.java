@@ -0,0 +1,53 @@
+package hu.bme.aut.cart.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Helpers for money amounts of the CART module.
+ * Amounts are stored and summed as primitive long minor units (hundredths), which keeps every update exact
+ * and allocation-free; they are only turned into {@link BigDecimal} at the edges, in DTOs and outgoing requests.
+ */
+public final class Money {
+
+    /**
+     * The number of decimal digits of the minor unit.
+     */
+    public static final int SCALE = 2;
+
+    private Money() {
+    }
+
+    /**
+     * Converts a decimal amount to minor units, rounding half up to the minor unit.
+     *
+     * @param amount the decimal amount.
+     * @return The amount in minor units.
+     * @throws ArithmeticException if the amount does not fit into a long.
+     */
+    public static long toMinor(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Converts an amount in minor units to a decimal amount with the scale of the minor unit.
+     *
+     * @param minor the amount in minor units.
+     * @return The decimal amount.
+     */
+    public static BigDecimal toMajor(long minor) {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+
+    /**
+     * Multiplies a unit price by a quantity.
+     *
+     * @param unitMinor the unit price in minor units.
+     * @param quantity the quantity.
+     * @return The line amount in minor units.
+     * @throws ArithmeticException if the result overflows.
+     */
+    public static long times(long unitMinor, int quantity) {
+        return Math.multiplyExact(unitMinor, quantity);
+    }
+}
\ No newline at end of file
@@ -1,63 +1,157 @@
 package hu.bme.aut.cart.model.entity;
 
+import hu.bme.aut.cart.model.Money;
 import hu.bme.aut.cart.model.enums.BasketStatus;
 import jakarta.persistence.*;
 import lombok.*;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * Entity class for representing a shopping basket in the CART module.
- * Each basket is linked to a user and can contain multiple products.
+ * Each basket is linked to a user and can contain multiple products, each of them on its own {@link BasketLine}.
  * The basket can have different statuses indicating its current state.
+ * Baskets are versioned, and a unique key on the active owner allows at most one active basket per user.
+ * The time of the last write is kept, so abandoned active baskets can be found by the status and time index.
+ * Every change of the lines and the checkout is also appended to the history of the basket as {@link BasketEvent}s.
  */
 @Entity
-@Table(name = "basket")
+@Table(name = "basket",
+        uniqueConstraints = @UniqueConstraint(name = "uk_basket_active_user", columnNames = "active_user_id"),
+        indexes = {
+                @Index(name = "idx_basket_user_status", columnList = "user_id, basket_status"),
+                @Index(name = "idx_basket_status_last_modified", columnList = "basket_status, last_modified")
+        })
 @AllArgsConstructor
 @NoArgsConstructor
 @Data
 @Builder(toBuilder = true)
 @EqualsAndHashCode(of = "basketId")
+@ToString(exclude = {"lines", "order"})
 @Slf4j
 public class Basket {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long basketId;
 
-    @Column(nullable = false)
+    @Version
+    private Long version;
+
+    @Column(name = "user_id", nullable = false)
     private Long userId;
 
+    /**
+     * The owner of the basket while it is active, null otherwise.
+     * Only this column is unique, so any number of checked out baskets may belong to the same user.
+     */
+    @Column(name = "active_user_id")
+    private Long activeUserId;
+
     @Enumerated(EnumType.STRING)
-    @Column(nullable = false)
+    @Column(name = "basket_status", nullable = false)
     private BasketStatus basketStatus = BasketStatus.ACTIVE;
 
-    @Column(nullable = false)
-    private Double subTotalAmount;
+    @Column(name = "last_modified", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date lastModified;
 
-    @ElementCollection(fetch = FetchType.LAZY)
-    @CollectionTable(name = "basket_products", joinColumns = @JoinColumn(name = "basket_id"))
-    @MapKeyColumn(name = "product_id")
-    @Column(name = "quantity")
-    private Map<Long, Integer> products = new HashMap<>();
+    /**
+     * The subtotal of the basket in minor units, see {@link Money}.
+     */
+    @Column(name = "sub_total_minor", nullable = false)
+    private long subTotalMinor;
+
+    /**
+     * The sequence number of the last event recorded in the history of the basket, see {@link BasketEvent}.
+     */
+    @Column(name = "event_sequence", nullable = false)
+    private long eventSequence;
+
+    /**
+     * The lines of the basket keyed by product ID. New lines are persisted and removed lines are deleted
+     * when the basket is flushed; merging a detached basket does not cascade to its lines.
+     */
+    @OneToMany(mappedBy = "basket", cascade = {CascadeType.PERSIST, CascadeType.REMOVE}, orphanRemoval = true, fetch = FetchType.LAZY)
+    @MapKey(name = "productId")
+    @Builder.Default
+    private Map<Long, BasketLine> lines = new LinkedHashMap<>();
 
     @OneToOne(mappedBy = "basket", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     private Order order;
 
+    /**
+     * Keeps the active owner column in sync with the status and stamps the time of the write
+     * before every insert and update.
+     */
+    @PrePersist
+    @PreUpdate
+    void beforeWrite() {
+        activeUserId = basketStatus == BasketStatus.ACTIVE ? userId : null;
+        lastModified = new Date();
+    }
+
+    /**
+     * Returns the quantities of the products in the basket.
+     *
+     * @return a read-only snapshot of the quantities keyed by product ID
+     */
+    public Map<Long, Integer> getProducts() {
+        Map<Long, Integer> products = new LinkedHashMap<>();
+        lines.forEach((productId, line) -> products.put(productId, line.getQuantity()));
+        return Collections.unmodifiableMap(products);
+    }
+
+    /**
+     * Makes the lines and the subtotal of this basket equal to those of another basket.
+     * Only the lines that differ are touched, so a managed basket writes just the changed rows.
+     *
+     * @param source the basket to copy from
+     */
+    public void copyLinesFrom(Basket source) {
+        lines.keySet().removeIf(productId -> !source.getLines().containsKey(productId));
+        source.getLines().forEach((productId, line) -> {
+            if (quantityOf(productId) != line.getQuantity()) {
+                putLine(productId, line.getQuantity());
+            }
+        });
+        subTotalMinor = source.getSubTotalMinor();
+    }
+
+    /**
+     * Creates an unmanaged copy of the basket with its own lines, e.g. to hold the basket in memory.
+     *
+     * @return the copy of the basket
+     */
+    public Basket snapshot() {
+        Basket copy = Basket.builder()
+                .basketId(basketId)
+                .version(version)
+                .userId(userId)
+                .activeUserId(activeUserId)
+                .basketStatus(basketStatus)
+                .lastModified(lastModified)
+                .build();
+        copy.copyLinesFrom(this);
+        return copy;
+    }
+
     /**
      * Adds a product and its quantity to the basket.
      * If the product is already in the basket, it updates the quantity.
      *
      * @param productId the ID of the product to add or update
-     * @param price the price of a piece
+     * @param unitPriceMinor the price of a piece in minor units
      * @param quantity the quantity of the product
      */
-    public void addProduct(Long productId, Double price, Integer quantity) {
-        Integer currentQuantity = products.getOrDefault(productId, 0);
-        products.put(productId, currentQuantity + quantity);
-        subTotalAmount += quantity * price;
-        log.info("Updated product {} in basket {}, new quantity: {}, new subtotal: {}", productId, basketId, products.get(productId), subTotalAmount);
+    public void addProduct(Long productId, long unitPriceMinor, Integer quantity) {
+        int currentQuantity = quantityOf(productId);
+        putLine(productId, currentQuantity + quantity);
+        subTotalMinor = Math.addExact(subTotalMinor, Money.times(unitPriceMinor, quantity));
+        log.info("Updated product {} in basket {}, new quantity: {}, new subtotal: {}", productId, basketId, currentQuantity + quantity, Money.toMajor(subTotalMinor));
     }
 
     /**
@@ -65,24 +159,67 @@ public class Basket {
      * equals or exceeds the current quantity, the product is completely removed.
      *
      * @param productId the ID of the product to remove
-     * @param price the price per unit of the product
+     * @param unitPriceMinor the price per unit of the product in minor units
      * @param quantity the quantity to remove
      * @throws IllegalArgumentException if the product id does not exist or the quantity is invalid
      */
-    public void removeProduct(Long productId, Double price, Integer quantity) {
-        Integer currentQuantity = products.get(productId);
+    public void removeProduct(Long productId, long unitPriceMinor, Integer quantity) {
+        BasketLine line = lines.get(productId);
+        Integer currentQuantity = line != null ? line.getQuantity() : null;
         if (currentQuantity == null || currentQuantity < quantity) {
             log.error("Attempted to remove non-existing or insufficient quantity of product {}: requested {}, available {}", productId, quantity, currentQuantity);
             throw new IllegalArgumentException("Product not found or insufficient quantity.");
         }
 
         if (currentQuantity.equals(quantity)) {
-            products.remove(productId);
+            lines.remove(productId);
+        } else {
+            line.setQuantity(currentQuantity - quantity);
+        }
+
+        subTotalMinor = Math.subtractExact(subTotalMinor, Money.times(unitPriceMinor, quantity));
+        log.info("Removed product {} from basket {}, removed quantity: {}, new quantity: {}, new subtotal: {}", productId, basketId, quantity, currentQuantity - quantity, Money.toMajor(subTotalMinor));
+    }
+
+    /**
+     * Sets the quantity of a product in the basket, removing the product when the quantity is zero.
+     *
+     * @param productId the ID of the product to set
+     * @param unitPriceMinor the price per unit of the product in minor units
+     * @param quantity the new quantity of the product
+     * @throws IllegalArgumentException if the quantity is negative
+     */
+    public void setProductQuantity(Long productId, long unitPriceMinor, Integer quantity) {
+        if (quantity == null || quantity < 0) {
+            log.error("Attempted to set invalid quantity {} for product {}", quantity, productId);
+            throw new IllegalArgumentException("Invalid quantity.");
+        }
+
+        int currentQuantity = quantityOf(productId);
+        if (quantity == 0) {
+            lines.remove(productId);
         } else {
-            products.put(productId, currentQuantity - quantity);
+            putLine(productId, quantity);
         }
 
-        subTotalAmount -= quantity * price;
-        log.info("Removed product {} from basket {}, removed quantity: {}, new quantity: {}, new subtotal: {}", productId, basketId, quantity, products.get(productId), subTotalAmount);
+        subTotalMinor = Math.addExact(subTotalMinor, Money.times(unitPriceMinor, quantity - currentQuantity));
+        log.info("Set product {} in basket {} from quantity {} to {}, new subtotal: {}", productId, basketId, currentQuantity, quantity, Money.toMajor(subTotalMinor));
+    }
+
+    private int quantityOf(Long productId) {
+        BasketLine line = lines.get(productId);
+        return line != null ? line.getQuantity() : 0;
+    }
+
+    /**
+     * Sets the quantity on the existing line of the product, or adds a new line if there is none.
+     */
+    private void putLine(Long productId, int quantity) {
+        BasketLine line = lines.get(productId);
+        if (line != null) {
+            line.setQuantity(quantity);
+        } else {
+            lines.put(productId, new BasketLine(this, productId, quantity));
+        }
     }
 }
\ No newline at end of file
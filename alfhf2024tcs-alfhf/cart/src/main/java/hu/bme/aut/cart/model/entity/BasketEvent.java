@@ -0,0 +1,85 @@
+package hu.bme.aut.cart.model.entity;
+
+import hu.bme.aut.cart.model.enums.BasketEventType;
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Entity class for representing one entry of the append-only history of a basket.
+ * Events are numbered per basket from 1, and are never updated or deleted, not even with their basket.
+ * The key is assigned by the application, so the events of a write are inserted in a single JDBC batch.
+ */
+@Entity
+@Table(name = "basket_events")
+@IdClass(BasketEvent.EventId.class)
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+public class BasketEvent implements Persistable<BasketEvent.EventId> {
+
+    @Id
+    @Column(name = "basket_id", nullable = false)
+    private Long basketId;
+
+    @Id
+    @Column(name = "sequence_number", nullable = false)
+    private long sequenceNumber;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false)
+    private BasketEventType eventType;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    /**
+     * The product added or removed, null for a checkout.
+     */
+    @Column(name = "product_id")
+    private Long productId;
+
+    /**
+     * The number of pieces added or removed, null for a checkout.
+     */
+    @Column(name = "quantity")
+    private Integer quantity;
+
+    /**
+     * The subtotal of the basket in minor units once the event is applied, see {@link hu.bme.aut.cart.model.Money}.
+     */
+    @Column(name = "sub_total_minor", nullable = false)
+    private long subTotalMinor;
+
+    @Column(name = "occurred_at", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date occurredAt;
+
+    @Override
+    public EventId getId() {
+        return new EventId(basketId, sequenceNumber);
+    }
+
+    /**
+     * Events are only ever inserted, so saving one never looks it up first.
+     */
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+
+    /**
+     * Primary key of a basket event: the ID of its basket and its sequence number within the basket.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class EventId implements Serializable {
+        private Long basketId;
+        private long sequenceNumber;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,46 @@
+package hu.bme.aut.cart.model.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+
+/**
+ * Entity class for representing one product line of a basket.
+ * A line is identified by its basket and product, so a change of quantity updates only its own row,
+ * and lines of several products can be inserted in a single JDBC batch.
+ */
+@Entity
+@Table(name = "basket_products")
+@IdClass(BasketLine.LineId.class)
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@ToString(exclude = "basket")
+@EqualsAndHashCode(of = {"basket", "productId"})
+public class BasketLine {
+
+    @Id
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "basket_id", nullable = false)
+    private Basket basket;
+
+    @Id
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(name = "quantity")
+    private Integer quantity;
+
+    /**
+     * Primary key of a basket line: the ID of its basket and the ID of its product.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LineId implements Serializable {
+        private Long basket;
+        private Long productId;
+    }
+}
\ No newline at end of file
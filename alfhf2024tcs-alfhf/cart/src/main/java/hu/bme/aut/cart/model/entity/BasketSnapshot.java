@@ -0,0 +1,79 @@
+package hu.bme.aut.cart.model.entity;
+
+import hu.bme.aut.cart.model.BasketLinesConverter;
+import hu.bme.aut.cart.model.enums.BasketStatus;
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Entity class for representing the state of a basket after a given event of its history.
+ * The state of the basket is rebuilt from its latest snapshot and the events recorded after it,
+ * so a replay never reads more events than the snapshot interval.
+ */
+@Entity
+@Table(name = "basket_snapshots")
+@IdClass(BasketSnapshot.SnapshotId.class)
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+public class BasketSnapshot implements Persistable<BasketSnapshot.SnapshotId> {
+
+    @Id
+    @Column(name = "basket_id", nullable = false)
+    private Long basketId;
+
+    /**
+     * The sequence number of the last event included in the snapshot.
+     */
+    @Id
+    @Column(name = "sequence_number", nullable = false)
+    private long sequenceNumber;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "basket_status", nullable = false)
+    private BasketStatus basketStatus;
+
+    @Column(name = "sub_total_minor", nullable = false)
+    private long subTotalMinor;
+
+    /**
+     * The quantities of the products in the basket keyed by product ID, stored in a compact text form.
+     */
+    @Convert(converter = BasketLinesConverter.class)
+    @Column(name = "products", nullable = false, columnDefinition = "TEXT")
+    private Map<Long, Integer> products;
+
+    @Column(name = "created_at", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdAt;
+
+    @Override
+    public SnapshotId getId() {
+        return new SnapshotId(basketId, sequenceNumber);
+    }
+
+    /**
+     * Snapshots are only ever inserted, so saving one never looks it up first.
+     */
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+
+    /**
+     * Primary key of a basket snapshot: the ID of its basket and the sequence number it was taken at.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class SnapshotId implements Serializable {
+        private Long basketId;
+        private long sequenceNumber;
+    }
+}
\ No newline at end of file
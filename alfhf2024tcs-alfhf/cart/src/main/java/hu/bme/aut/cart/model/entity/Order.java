@@ -1,24 +1,29 @@
 package hu.bme.aut.cart.model.entity;
 
+import hu.bme.aut.cart.model.Money;
 import hu.bme.aut.cart.model.enums.BasketStatus;
 import hu.bme.aut.cart.model.enums.OrderStatus;
 import jakarta.persistence.*;
 import lombok.*;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Entity class for representing an order in the CART module.
  * Each order is directly linked to a basket which contains the selected products.
+ * The products are also copied onto the {@link OrderLine}s of the order at checkout, with their names and prices.
  */
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = @Index(name = "idx_orders_status_order_date", columnList = "status, order_date"))
 @AllArgsConstructor
 @NoArgsConstructor
 @Data
 @Builder
 @EqualsAndHashCode(of = "orderId")
+@ToString(exclude = "lines")
 @Slf4j
 public class Order {
 
@@ -30,15 +35,62 @@ public class Order {
     @JoinColumn(name = "basket_id", nullable = false)
     private Basket basket;
 
-    @Column(nullable = false)
+    @Column(name = "order_date", nullable = false)
     @Temporal(TemporalType.TIMESTAMP)
     private Date orderDate = new Date();
 
     @Enumerated(EnumType.STRING)
+    @Column(name = "status")
     private OrderStatus status = OrderStatus.PENDING;
 
-    @Column(nullable = false)
-    private Double totalAmount;
+    /**
+     * The total of the order in minor units, see {@link hu.bme.aut.cart.model.Money}.
+     */
+    @Column(name = "total_minor", nullable = false)
+    private long totalMinor;
+
+    /**
+     * The card the order is paid with; it is validated asynchronously after the order is accepted.
+     */
+    private String cardId;
+
+    /**
+     * Whether the total has been charged to the card; recorded right after the capture, so an order that was charged
+     * but could not be completed is completed by the checkout recovery instead of being cancelled.
+     */
+    @Column(name = "funds_captured", nullable = false)
+    private boolean fundsCaptured;
+
+    /**
+     * The error code of the step that cancelled the order, null unless the checkout failed.
+     */
+    private String failureCode;
+
+    /**
+     * The reason the order was cancelled, null unless the checkout failed.
+     */
+    private String failureMessage;
+
+    /**
+     * The lines of the order as they were at checkout; empty for orders placed before lines were recorded.
+     */
+    @OneToMany(mappedBy = "order", cascade = CascadeType.PERSIST, fetch = FetchType.LAZY)
+    @Builder.Default
+    private List<OrderLine> lines = new ArrayList<>();
+
+    /**
+     * Adds a line to the order with the name and price of the product at checkout,
+     * and adds the line to the total, so the total always matches the recorded lines.
+     *
+     * @param productId the ID of the product
+     * @param productName the name of the product
+     * @param unitPriceMinor the price of a piece in minor units
+     * @param quantity the quantity of the product
+     */
+    public void addLine(Long productId, String productName, long unitPriceMinor, int quantity) {
+        lines.add(new OrderLine(this, productId, productName, unitPriceMinor, quantity));
+        totalMinor = Math.addExact(totalMinor, Money.times(unitPriceMinor, quantity));
+    }
 
     public void setBasket(Basket basket) {
         if (basket == null) {
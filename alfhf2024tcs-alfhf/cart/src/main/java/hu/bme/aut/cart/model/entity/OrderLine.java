@@ -0,0 +1,57 @@
+package hu.bme.aut.cart.model.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+
+import java.io.Serializable;
+
+/**
+ * Entity class for representing one product line of an order, as it was at checkout.
+ * The name and unit price of the product are copied from the WAREHOUSE module when the order is placed,
+ * so the order can be shown without asking the WAREHOUSE module again, with the price the customer saw.
+ * Lines are never changed after they are written.
+ */
+@Entity
+@Immutable
+@Table(name = "order_lines")
+@IdClass(OrderLine.LineId.class)
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Getter
+@ToString(exclude = "order")
+@EqualsAndHashCode(of = {"order", "productId"})
+public class OrderLine {
+
+    @Id
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "order_id", nullable = false)
+    private Order order;
+
+    @Id
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(name = "product_name")
+    private String productName;
+
+    /**
+     * The price of a piece at checkout in minor units, see {@link hu.bme.aut.cart.model.Money}.
+     */
+    @Column(name = "unit_price_minor", nullable = false)
+    private long unitPriceMinor;
+
+    @Column(name = "quantity", nullable = false)
+    private int quantity;
+
+    /**
+     * Primary key of an order line: the ID of its order and the ID of its product.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LineId implements Serializable {
+        private Long order;
+        private Long productId;
+    }
+}
\ No newline at end of file
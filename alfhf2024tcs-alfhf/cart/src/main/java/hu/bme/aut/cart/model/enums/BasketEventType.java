@@ -0,0 +1,10 @@
+package hu.bme.aut.cart.model.enums;
+
+/**
+ * Enum to define the kinds of events recorded in the history of a Basket.
+ */
+public enum BasketEventType {
+    ITEM_ADDED,
+    ITEM_REMOVED,
+    CHECKED_OUT
+}
\ No newline at end of file
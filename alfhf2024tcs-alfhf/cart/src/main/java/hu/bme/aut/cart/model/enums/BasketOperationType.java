@@ -0,0 +1,10 @@
+package hu.bme.aut.cart.model.enums;
+
+/**
+ * Enum to define the kinds of change a bulk basket request can apply to a basket line.
+ */
+public enum BasketOperationType {
+    ADD,
+    REMOVE,
+    SET
+}
\ No newline at end of file
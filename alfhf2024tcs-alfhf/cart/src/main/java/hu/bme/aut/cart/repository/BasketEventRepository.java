@@ -0,0 +1,24 @@
+package hu.bme.aut.cart.repository;
+
+import hu.bme.aut.cart.model.entity.BasketEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository interface for {@link BasketEvent} entities.
+ * Events are only ever inserted and read; they are never updated or deleted.
+ */
+@Repository
+public interface BasketEventRepository extends JpaRepository<BasketEvent, BasketEvent.EventId> {
+
+    /**
+     * Reads the events of a basket recorded after a given event, walking the primary key.
+     *
+     * @param basketId the ID of the basket.
+     * @param sequenceNumber the sequence number of the last event already known.
+     * @return The later events of the basket in the order they were recorded.
+     */
+    List<BasketEvent> findByBasketIdAndSequenceNumberGreaterThanOrderBySequenceNumber(Long basketId, long sequenceNumber);
+}
\ No newline at end of file
@@ -3,8 +3,14 @@ package hu.bme.aut.cart.repository;
 import hu.bme.aut.cart.model.entity.Basket;
 import hu.bme.aut.cart.model.enums.BasketStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -14,4 +20,33 @@ import java.util.Optional;
 @Repository
 public interface BasketRepository extends JpaRepository<Basket, Long> {
     Optional<Basket> findByUserIdAndBasketStatus(Long userId, BasketStatus basketStatus);
+
+    /**
+     * Loads the given baskets together with their lines in a single query.
+     *
+     * @param basketIds the IDs of the baskets to load.
+     * @return The found baskets.
+     */
+    @Query("SELECT DISTINCT b FROM Basket b LEFT JOIN FETCH b.lines WHERE b.basketId IN :basketIds")
+    List<Basket> findAllWithLinesByBasketIdIn(@Param("basketIds") Collection<Long> basketIds);
+
+    /**
+     * Locks the oldest active baskets not modified since the cutoff, walking the status and time index.
+     * Rows locked by other transactions are skipped, so the sweep never waits for baskets in use.
+     *
+     * @param cutoff baskets modified before this time are idle.
+     * @param limit the maximum number of baskets to lock.
+     * @return The IDs of the locked baskets, oldest first.
+     */
+    @Query(value = "SELECT basket_id FROM basket WHERE basket_status = 'ACTIVE' AND last_modified < :cutoff " +
+            "ORDER BY last_modified, basket_id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockIdleActiveBasketIds(@Param("cutoff") Date cutoff, @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "DELETE FROM basket_products WHERE basket_id IN (:basketIds)", nativeQuery = true)
+    int deleteProductsByBasketIdIn(@Param("basketIds") Collection<Long> basketIds);
+
+    @Modifying
+    @Query("DELETE FROM Basket b WHERE b.basketId IN :basketIds")
+    int deleteByBasketIdIn(@Param("basketIds") Collection<Long> basketIds);
 }
\ No newline at end of file
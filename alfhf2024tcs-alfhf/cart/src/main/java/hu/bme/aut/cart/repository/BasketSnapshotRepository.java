@@ -0,0 +1,22 @@
+package hu.bme.aut.cart.repository;
+
+import hu.bme.aut.cart.model.entity.BasketSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * Repository interface for {@link BasketSnapshot} entities.
+ */
+@Repository
+public interface BasketSnapshotRepository extends JpaRepository<BasketSnapshot, BasketSnapshot.SnapshotId> {
+
+    /**
+     * Finds the most recent snapshot of a basket.
+     *
+     * @param basketId the ID of the basket.
+     * @return The snapshot with the highest sequence number, if the basket has any.
+     */
+    Optional<BasketSnapshot> findFirstByBasketIdOrderBySequenceNumberDesc(Long basketId);
+}
\ No newline at end of file
@@ -1,12 +1,17 @@
 package hu.bme.aut.cart.repository;
 
 import hu.bme.aut.cart.model.entity.Order;
+import hu.bme.aut.cart.model.enums.OrderStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository interface for {@link Order} entities.
@@ -15,6 +20,57 @@ import java.util.List;
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
 
-    @Query("SELECT o FROM Order o JOIN o.basket b WHERE b.userId = :userId")
+    /**
+     * Loads the orders of a user together with their lines in a single query.
+     *
+     * @param userId the ID of the user.
+     * @return The orders of the user.
+     */
+    @Query("SELECT DISTINCT o FROM Order o JOIN o.basket b LEFT JOIN FETCH o.lines WHERE b.userId = :userId")
     List<Order> findByUserId(@Param("userId") Long userId);
+
+    /**
+     * Loads an order together with its lines in a single query.
+     *
+     * @param orderId the ID of the order.
+     * @return The order, if it exists.
+     */
+    @Query("SELECT o FROM Order o LEFT JOIN FETCH o.lines WHERE o.orderId = :orderId")
+    Optional<Order> findWithLinesByOrderId(@Param("orderId") Long orderId);
+
+    /**
+     * Finds an order only if it belongs to the given user.
+     *
+     * @param orderId the ID of the order.
+     * @param userId the ID of the user.
+     * @return The order, if it exists and belongs to the user.
+     */
+    @Query("SELECT o FROM Order o JOIN o.basket b WHERE o.orderId = :orderId AND b.userId = :userId")
+    Optional<Order> findByOrderIdAndUserId(@Param("orderId") Long orderId, @Param("userId") Long userId);
+
+    List<Order> findByStatusAndOrderDateBefore(OrderStatus status, Date orderDate);
+
+    /**
+     * Returns the IDs of a user's orders older than the cursor, newest first.
+     * Only IDs are paged here, so the limit is applied by the database and not in memory
+     * as it would be for a query fetching collections.
+     *
+     * @param userId the ID of the user.
+     * @param before the order ID to continue from, or null for the newest orders.
+     * @param pageable the page limit; the offset is always expected to be zero.
+     * @return The order IDs of the page.
+     */
+    @Query("SELECT o.orderId FROM Order o JOIN o.basket b WHERE b.userId = :userId " +
+            "AND (:before IS NULL OR o.orderId < :before) ORDER BY o.orderId DESC")
+    List<Long> findOrderIdsByUserId(@Param("userId") Long userId, @Param("before") Long before, Pageable pageable);
+
+    /**
+     * Loads the given orders together with their lines in a single query.
+     *
+     * @param orderIds the IDs of the orders to load.
+     * @return The orders, newest first.
+     */
+    @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.lines " +
+            "WHERE o.orderId IN :orderIds ORDER BY o.orderId DESC")
+    List<Order> findAllWithLinesByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
 }
\ No newline at end of file
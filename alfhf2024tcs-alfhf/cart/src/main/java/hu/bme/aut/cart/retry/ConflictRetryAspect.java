@@ -0,0 +1,71 @@
+package hu.bme.aut.cart.retry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retries methods annotated with {@link RetryOnConflict} a bounded number of times.
+ * The aspect is ordered before the transaction interceptor, so each attempt runs in a fresh transaction.
+ * When the method joins a transaction that is already running, nothing is retried here: the conflict
+ * belongs to the outer transaction, which must be rolled back as a whole.
+ */
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+@Slf4j
+public class ConflictRetryAspect {
+
+    private final Counter retryCounter;
+    private final Counter exhaustedCounter;
+
+    public ConflictRetryAspect(MeterRegistry meterRegistry) {
+        this.retryCounter = Counter.builder("cart.conflict.retries")
+                .description("Transactions retried after a write conflict")
+                .register(meterRegistry);
+        this.exhaustedCounter = Counter.builder("cart.conflict.exhausted")
+                .description("Transactions that still conflicted after the last attempt")
+                .register(meterRegistry);
+    }
+
+    @Around("@annotation(retryOnConflict)")
+    public Object retry(ProceedingJoinPoint joinPoint, RetryOnConflict retryOnConflict) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+
+        int attempt = 1;
+        while (true) {
+            try {
+                return joinPoint.proceed();
+            } catch (OptimisticLockingFailureException | DataIntegrityViolationException ex) {
+                if (attempt >= retryOnConflict.maxAttempts()) {
+                    exhaustedCounter.increment();
+                    log.error("{} still conflicting after {} attempts: {}", joinPoint.getSignature().toShortString(), attempt, ex.getMessage());
+                    throw ex;
+                }
+                retryCounter.increment();
+                log.warn("{} conflicted on attempt {}, retrying: {}", joinPoint.getSignature().toShortString(), attempt, ex.getMessage());
+                backOff(retryOnConflict.backoffMillis() * attempt);
+                attempt++;
+            }
+        }
+    }
+
+    private void backOff(long delayMillis) throws InterruptedException {
+        if (delayMillis > 0) {
+            Thread.sleep(delayMillis + ThreadLocalRandom.current().nextLong(delayMillis));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,30 @@
+package hu.bme.aut.cart.retry;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a service method that is retried as a whole when it loses a write conflict:
+ * an optimistic locking failure on a versioned row or a unique constraint violation.
+ * The method is called outside any transaction and opens its own short transactions through
+ * {@link hu.bme.aut.cart.transaction.TransactionRunner}; the retry wraps those transactions,
+ * so every attempt re-reads the current state of the database.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RetryOnConflict {
+
+    /**
+     * @return the maximum number of attempts, including the first one.
+     */
+    int maxAttempts() default 3;
+
+    /**
+     * @return the base delay before a retry in milliseconds; it grows linearly with the attempt and is jittered.
+     */
+    long backoffMillis() default 20;
+}
\ No newline at end of file
@@ -0,0 +1,195 @@
+package hu.bme.aut.cart.service;
+
+import hu.bme.aut.cart.dto.BasketHistoryDTO;
+import hu.bme.aut.cart.exception.BasketNotFoundException;
+import hu.bme.aut.cart.model.Money;
+import hu.bme.aut.cart.model.entity.Basket;
+import hu.bme.aut.cart.model.entity.BasketEvent;
+import hu.bme.aut.cart.model.entity.BasketSnapshot;
+import hu.bme.aut.cart.model.enums.BasketEventType;
+import hu.bme.aut.cart.model.enums.BasketStatus;
+import hu.bme.aut.cart.repository.BasketEventRepository;
+import hu.bme.aut.cart.repository.BasketSnapshotRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Service class for the append-only history of the baskets within the CART module.
+ * Every write of a basket appends item-added, item-removed and checked-out events in the same transaction,
+ * and every few events a snapshot of the whole basket is taken, so its state at the latest event can be rebuilt
+ * from the latest snapshot and the events after it. The history is kept when the basket itself is deleted.
+ */
+@Service
+@Slf4j
+public class BasketHistoryService {
+
+    private final BasketEventRepository basketEventRepository;
+    private final BasketSnapshotRepository basketSnapshotRepository;
+    private final int snapshotInterval;
+
+    public BasketHistoryService(BasketEventRepository basketEventRepository,
+                                BasketSnapshotRepository basketSnapshotRepository,
+                                @Value("${cart.basket.history.snapshot-interval:50}") int snapshotInterval) {
+        if (snapshotInterval <= 0) {
+            throw new IllegalArgumentException("Snapshot interval must be positive");
+        }
+        this.basketEventRepository = basketEventRepository;
+        this.basketSnapshotRepository = basketSnapshotRepository;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Records the difference between the earlier quantities and the current lines of a saved basket,
+     * as one item-added or item-removed event per changed product. Nothing is recorded if nothing changed.
+     * Must be called in the transaction writing the basket, after the basket got its ID.
+     *
+     * @param basket the saved basket.
+     * @param before the quantities of the products in the basket before the write, keyed by product ID.
+     */
+    public void recordLineChanges(Basket basket, Map<Long, Integer> before) {
+        Map<Long, Integer> after = basket.getProducts();
+        Date now = new Date();
+        List<BasketEvent> events = new ArrayList<>();
+        before.forEach((productId, quantity) -> {
+            int removed = quantity - after.getOrDefault(productId, 0);
+            if (removed > 0) {
+                events.add(newEvent(basket, BasketEventType.ITEM_REMOVED, productId, removed, now));
+            }
+        });
+        after.forEach((productId, quantity) -> {
+            int added = quantity - before.getOrDefault(productId, 0);
+            if (added > 0) {
+                events.add(newEvent(basket, BasketEventType.ITEM_ADDED, productId, added, now));
+            }
+        });
+        append(basket, events);
+    }
+
+    /**
+     * Starts the history of a basket reopened from a checked out one with a snapshot of the quantities it was
+     * checked out with, so the carried over lines are not recorded as added again, then records any difference.
+     * Must be called in the transaction saving the reopened basket, after the basket got its ID.
+     *
+     * @param basket the saved reopened basket.
+     * @param before the quantities of the products in the checked out basket, keyed by product ID.
+     */
+    public void recordReopen(Basket basket, Map<Long, Integer> before) {
+        basketSnapshotRepository.save(BasketSnapshot.builder()
+                .basketId(basket.getBasketId())
+                .sequenceNumber(basket.getEventSequence())
+                .basketStatus(BasketStatus.ACTIVE)
+                .subTotalMinor(basket.getSubTotalMinor())
+                .products(before)
+                .createdAt(new Date())
+                .build());
+        recordLineChanges(basket, before);
+    }
+
+    /**
+     * Records the checkout of a basket.
+     * Must be called in the transaction checking out the basket.
+     *
+     * @param basket the checked out basket.
+     */
+    public void recordCheckout(Basket basket) {
+        append(basket, List.of(newEvent(basket, BasketEventType.CHECKED_OUT, null, null, new Date())));
+    }
+
+    /**
+     * Rebuilds the state of a basket at its latest event from its latest snapshot and the events after it.
+     * The basket itself is not read, so the state of deleted baskets can be rebuilt as well.
+     *
+     * @param basketId the ID of the basket.
+     * @return BasketHistoryDTO with the rebuilt state and the sequence number of the latest event.
+     * @throws BasketNotFoundException if no history was recorded for the basket.
+     */
+    @Transactional(readOnly = true)
+    public BasketHistoryDTO rebuildBasket(Long basketId) {
+        Optional<BasketSnapshot> snapshot = basketSnapshotRepository.findFirstByBasketIdOrderBySequenceNumberDesc(basketId);
+        long sequenceNumber = snapshot.map(BasketSnapshot::getSequenceNumber).orElse(0L);
+        List<BasketEvent> tail = basketEventRepository.findByBasketIdAndSequenceNumberGreaterThanOrderBySequenceNumber(basketId, sequenceNumber);
+        if (snapshot.isEmpty() && tail.isEmpty()) {
+            throw new BasketNotFoundException("Basket history not found", "3405");
+        }
+
+        BasketStatus basketStatus = snapshot.map(BasketSnapshot::getBasketStatus).orElse(BasketStatus.ACTIVE);
+        long subTotalMinor = snapshot.map(BasketSnapshot::getSubTotalMinor).orElse(0L);
+        Map<Long, Integer> products = new LinkedHashMap<>(snapshot.map(BasketSnapshot::getProducts).orElse(Map.of()));
+        for (BasketEvent event : tail) {
+            switch (event.getEventType()) {
+                case ITEM_ADDED -> products.merge(event.getProductId(), event.getQuantity(), Integer::sum);
+                case ITEM_REMOVED -> products.computeIfPresent(event.getProductId(),
+                        (productId, quantity) -> quantity > event.getQuantity() ? quantity - event.getQuantity() : null);
+                case CHECKED_OUT -> basketStatus = BasketStatus.CHECKED_OUT;
+            }
+            subTotalMinor = event.getSubTotalMinor();
+            sequenceNumber = event.getSequenceNumber();
+        }
+        log.debug("Rebuilt basket {} at event {} from {} events after its snapshot", basketId, sequenceNumber, tail.size());
+
+        return BasketHistoryDTO.builder()
+                .success(true)
+                .basketId(basketId)
+                .sequenceNumber(sequenceNumber)
+                .basketStatus(basketStatus)
+                .subtotalAmount(Money.toMajor(subTotalMinor))
+                .products(products)
+                .build();
+    }
+
+    /**
+     * Numbers the events after the latest event of the basket and appends them in one batch,
+     * then takes a snapshot of the basket if the events crossed a multiple of the snapshot interval.
+     *
+     * @param basket The basket the events belong to.
+     * @param events The new events of the basket, in order.
+     */
+    private void append(Basket basket, List<BasketEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        long previous = basket.getEventSequence();
+        long sequenceNumber = previous;
+        for (BasketEvent event : events) {
+            event.setSequenceNumber(++sequenceNumber);
+        }
+        basketEventRepository.saveAll(events);
+        basket.setEventSequence(sequenceNumber);
+
+        if (sequenceNumber / snapshotInterval > previous / snapshotInterval) {
+            basketSnapshotRepository.save(BasketSnapshot.builder()
+                    .basketId(basket.getBasketId())
+                    .sequenceNumber(sequenceNumber)
+                    .basketStatus(basket.getBasketStatus())
+                    .subTotalMinor(basket.getSubTotalMinor())
+                    .products(basket.getProducts())
+                    .createdAt(new Date())
+                    .build());
+            log.debug("Took snapshot of basket {} at event {}", basket.getBasketId(), sequenceNumber);
+        }
+    }
+
+    /**
+     * Creates an event of the basket carrying its current subtotal; the sequence number is assigned on append.
+     */
+    private BasketEvent newEvent(Basket basket, BasketEventType eventType, Long productId, Integer quantity, Date occurredAt) {
+        return BasketEvent.builder()
+                .basketId(basket.getBasketId())
+                .eventType(eventType)
+                .userId(basket.getUserId())
+                .productId(productId)
+                .quantity(quantity)
+                .subTotalMinor(basket.getSubTotalMinor())
+                .occurredAt(occurredAt)
+                .build();
+    }
+}
\ No newline at end of file
@@ -2,25 +2,42 @@ package hu.bme.aut.cart.service;
 
 import hu.bme.aut.cart.client.CoreClient;
 import hu.bme.aut.cart.dto.BasketDTO;
+import hu.bme.aut.cart.dto.BasketOperationDTO;
 import hu.bme.aut.cart.dto.ProductDTO;
 import hu.bme.aut.cart.exception.BasketNotFoundException;
+import hu.bme.aut.cart.model.Money;
+import hu.bme.aut.cart.model.enums.BasketOperationType;
 import hu.bme.aut.cart.model.enums.BasketStatus;
 import hu.bme.aut.cart.repository.BasketRepository;
 import hu.bme.aut.cart.client.WarehouseClient;
 import hu.bme.aut.cart.model.entity.Basket;
-import jakarta.transaction.Transactional;
+import hu.bme.aut.cart.retry.RetryOnConflict;
+import hu.bme.aut.cart.transaction.TransactionRunner;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
  * Service class for managing baskets within the CART module.
+ * Every change of the lines of a basket is also recorded in its history, see {@link BasketHistoryService}.
+ * The user token is resolved and products are priced before the short database transaction of a flow,
+ * and the basket is enriched with product details after it, so no connection is held during remote calls.
  */
 @Service
 @RequiredArgsConstructor
@@ -31,13 +48,23 @@ public class BasketService {
     private final WarehouseClient warehouseClient;
     private final ModelMapper modelMapper;
     private final CoreClient coreClient;
+    private final BasketHistoryService basketHistoryService;
+    private final TransactionRunner transactionRunner;
 
-    @Transactional
+    /**
+     * Retrieves the active basket of a user without modifying anything.
+     * If the user has no active basket yet, an empty basket view is returned and nothing is persisted.
+     *
+     * @param userToken the user's token for validation.
+     * @return BasketDTO representing the active basket of the user.
+     */
     public BasketDTO getBasketByUser(String userToken) {
         log.debug("Retrieving details for basket by user");
         Long userId = coreClient.getUserIdFromToken(userToken);
-        Basket basket = getOrCreateActiveBasket(userId);
-        return saveAndConvertBasket(basket);
+        Optional<Basket> basket = transactionRunner.inReadOnlyTransaction("basket.get", () ->
+                basketRepository.findByUserIdAndBasketStatus(userId, BasketStatus.ACTIVE).map(Basket::snapshot));
+        return basket.map(this::convertToBasketDTO)
+                .orElseGet(this::emptyBasketView);
     }
 
     /**
@@ -49,14 +76,14 @@ public class BasketService {
      * @param quantity the quantity of the product to add.
      * @return BasketDTO representing the updated state of the basket.
      */
-    @Transactional
+    @RetryOnConflict
     public BasketDTO addToBasket(String userToken, Long productId, Integer quantity) {
         log.debug("Attempting to add product {} to basket with quantity {}", productId, quantity);
         Long userId = coreClient.getUserIdFromToken(userToken);
-        Basket basket = getOrCreateActiveBasket(userId);
-        ProductDTO productInfo = fetchProductInfo(productId);
-        basket.addProduct(productId, productInfo.getPrice(), quantity);
-        return saveAndConvertBasket(basket);
+        long priceMinor = Money.toMinor(fetchProductInfo(productId).getPrice());
+        Basket basket = changeActiveBasket("basket.add", userId,
+                active -> active.addProduct(productId, priceMinor, quantity));
+        return convertToBasketDTO(basket);
     }
 
     /**
@@ -67,14 +94,43 @@ public class BasketService {
      * @param quantity the quantity to remove.
      * @return BasketDTO representing the updated state of the basket.
      */
-    @Transactional
+    @RetryOnConflict
     public BasketDTO removeFromBasket(String userToken, Long productId, Integer quantity) {
         log.debug("Attempting to remove product {} from basket with quantity {}", productId, quantity);
         Long userId = coreClient.getUserIdFromToken(userToken);
-        Basket basket = getOrCreateActiveBasket(userId);
-        ProductDTO productInfo = fetchProductInfo(productId);
-        basket.removeProduct(productId, productInfo.getPrice(), quantity);
-        return saveAndConvertBasket(basket);
+        long priceMinor = Money.toMinor(fetchProductInfo(productId).getPrice());
+        Basket basket = changeActiveBasket("basket.remove", userId,
+                active -> active.removeProduct(productId, priceMinor, quantity));
+        return convertToBasketDTO(basket);
+    }
+
+    /**
+     * Applies a list of add, remove and set-quantity operations to a user's active basket in one transaction.
+     * The token is validated once and the products of the operations are priced with a single warehouse lookup;
+     * only the details of other products already in the basket are fetched afterwards.
+     * If any operation is invalid, none of them is applied.
+     * If no active basket exists, a new basket is created.
+     *
+     * @param userToken the user's token for validation.
+     * @param operations the operations to apply, in order.
+     * @return BasketDTO representing the updated state of the basket.
+     * @throws IllegalArgumentException if an operation is malformed or removes more than the basket holds.
+     */
+    @RetryOnConflict
+    public BasketDTO applyOperations(String userToken, List<BasketOperationDTO> operations) {
+        log.debug("Attempting to apply {} operations to basket", operations.size());
+        Map<Long, ProductDTO> productInfo = new HashMap<>(priceOperations(operations));
+        Long userId = coreClient.getUserIdFromToken(userToken);
+        Basket basket = changeActiveBasket("basket.bulk", userId,
+                active -> applyPricedOperations(active, operations, productInfo));
+        log.info("Applied {} operations to basket {}. Subtotal: {}", operations.size(), basket.getBasketId(), Money.toMajor(basket.getSubTotalMinor()));
+
+        Set<Long> unpriced = new LinkedHashSet<>(basket.getProducts().keySet());
+        unpriced.removeAll(productInfo.keySet());
+        if (!unpriced.isEmpty()) {
+            productInfo.putAll(warehouseClient.getProductDetailsBatchForDisplay(unpriced));
+        }
+        return toBasketDTO(basket, productInfo);
     }
 
     /**
@@ -84,13 +140,13 @@ public class BasketService {
      * @return BasketDTO containing detailed information about the basket.
      * @throws BasketNotFoundException if the basket cannot be found.
      */
-    @Transactional
     public BasketDTO getBasketById(Long basketId) {
         log.debug("Retrieving details for basket {}", basketId);
-        Basket basket = basketRepository.findById(basketId)
-                .orElseThrow(() -> new BasketNotFoundException("Basket not found", "3405"));
+        Basket basket = transactionRunner.inReadOnlyTransaction("basket.get-by-id", () -> basketRepository.findById(basketId)
+                .orElseThrow(() -> new BasketNotFoundException("Basket not found", "3405"))
+                .snapshot());
         log.debug("Basket found: {}", basket.getBasketId());
-        return saveAndConvertBasket(basket);
+        return convertToBasketDTO(basket);
     }
 
     /**
@@ -106,16 +162,128 @@ public class BasketService {
     }
 
     /**
-     * Saves the basket and converts it to a BasketDTO.
+     * Finds the active basket of a user.
      *
-     * @param basket The basket to save and convert.
-     * @return The converted BasketDTO.
+     * @param userId the ID of the user.
+     * @return The active Basket entity.
+     * @throws BasketNotFoundException if the user has no active basket.
      */
-    public BasketDTO saveAndConvertBasket(Basket basket) {
-        log.debug("Saving and converting basket: {}", basket.getBasketId());
-        basket = basketRepository.save(basket);
-        log.info("Basket {} updated. Subtotal: {}", basket.getBasketId(), basket.getSubTotalAmount());
-        return convertToBasketDTO(basket);
+    public Basket findActiveBasket(Long userId) {
+        log.debug("Finding active basket of user ID {}", userId);
+        return basketRepository.findByUserIdAndBasketStatus(userId, BasketStatus.ACTIVE)
+                .orElseThrow(() -> new BasketNotFoundException("Basket not found", "3405"));
+    }
+
+    /**
+     * Reopens the contents of a checked out basket whose order was cancelled.
+     * The checked out basket stays attached to its order, so its lines and subtotal are copied into a new
+     * active basket. Nothing is reopened if the user has already started a new active basket.
+     *
+     * @param checkedOut the basket of the cancelled order.
+     */
+    public void reopenBasket(Basket checkedOut) {
+        if (basketRepository.findByUserIdAndBasketStatus(checkedOut.getUserId(), BasketStatus.ACTIVE).isPresent()) {
+            log.info("User ID {} already has an active basket, basket {} is not reopened", checkedOut.getUserId(), checkedOut.getBasketId());
+            return;
+        }
+        Basket reopened = Basket.builder()
+                .userId(checkedOut.getUserId())
+                .basketStatus(BasketStatus.ACTIVE)
+                .build();
+        reopened.copyLinesFrom(checkedOut);
+        reopened = basketRepository.save(reopened);
+        basketHistoryService.recordReopen(reopened, checkedOut.getProducts());
+        log.info("Basket {} reopened as basket {}", checkedOut.getBasketId(), reopened.getBasketId());
+    }
+
+    /**
+     * Loads the active basket of a user, creating and persisting a new one if there is none,
+     * and returns an unmanaged copy of it for the in-memory basket store.
+     *
+     * @param userId the ID of the user.
+     * @return The unmanaged copy of the active basket, with its ID assigned.
+     */
+    @RetryOnConflict
+    public Basket loadActiveBasket(Long userId) {
+        return transactionRunner.inTransaction("basket.load", () -> {
+            Basket basket = getOrCreateActiveBasket(userId);
+            if (basket.getBasketId() == null) {
+                basket = basketRepository.save(basket);
+            }
+            return basket.snapshot();
+        });
+    }
+
+    /**
+     * Writes the lines and subtotals of baskets held in memory back to their persisted baskets,
+     * recording the changes since the previous write in the history of each basket.
+     * Runs in its own transaction, so the written state is committed even if the caller rolls back.
+     *
+     * @param snapshots the unmanaged copies of the baskets to write.
+     * @return The IDs of the baskets that were not written because they are no longer active or were deleted.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public Set<Long> writeBackBaskets(Collection<Basket> snapshots) {
+        Map<Long, Basket> baskets = new HashMap<>();
+        basketRepository.findAllWithLinesByBasketIdIn(snapshots.stream().map(Basket::getBasketId).toList())
+                .forEach(basket -> baskets.put(basket.getBasketId(), basket));
+
+        Set<Long> skipped = new LinkedHashSet<>();
+        List<Basket> written = new ArrayList<>();
+        for (Basket snapshot : snapshots) {
+            Basket basket = baskets.get(snapshot.getBasketId());
+            if (basket == null || basket.getBasketStatus() != BasketStatus.ACTIVE) {
+                skipped.add(snapshot.getBasketId());
+                continue;
+            }
+            Map<Long, Integer> before = basket.getProducts();
+            basket.copyLinesFrom(snapshot);
+            basketHistoryService.recordLineChanges(basket, before);
+            written.add(basket);
+        }
+        basketRepository.saveAll(written);
+        log.debug("Wrote back {} baskets, skipped {}", written.size(), skipped.size());
+        return skipped;
+    }
+
+    /**
+     * Deletes one chunk of active baskets that have not been modified since the cutoff, with their lines.
+     * Runs in its own short transaction, so the locks on the chunk are released as soon as it is deleted.
+     *
+     * @param cutoff baskets modified before this time are deleted.
+     * @param chunkSize the maximum number of baskets to delete.
+     * @return The number of deleted baskets; less than the chunk size once no idle basket is left.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public int deleteIdleBaskets(Date cutoff, int chunkSize) {
+        List<Long> basketIds = basketRepository.lockIdleActiveBasketIds(cutoff, chunkSize);
+        if (basketIds.isEmpty()) {
+            return 0;
+        }
+        int lines = basketRepository.deleteProductsByBasketIdIn(basketIds);
+        int deleted = basketRepository.deleteByBasketIdIn(basketIds);
+        log.debug("Deleted {} idle baskets with {} lines", deleted, lines);
+        return deleted;
+    }
+
+    /**
+     * Converts several baskets to BasketDTOs, fetching the details of all their products
+     * with a single warehouse request.
+     *
+     * @param baskets the baskets to convert.
+     * @return The BasketDTOs keyed by basket ID, in the order of the given baskets.
+     */
+    public Map<Long, BasketDTO> convertToBasketDTOs(Collection<Basket> baskets) {
+        Set<Long> productIds = new LinkedHashSet<>();
+        baskets.forEach(basket -> productIds.addAll(basket.getProducts().keySet()));
+        log.debug("Converting {} baskets with {} distinct products", baskets.size(), productIds.size());
+        Map<Long, ProductDTO> productInfo = productIds.isEmpty()
+                ? Map.of()
+                : warehouseClient.getProductDetailsBatchForDisplay(productIds);
+
+        Map<Long, BasketDTO> basketDTOs = new LinkedHashMap<>();
+        baskets.forEach(basket -> basketDTOs.put(basket.getBasketId(), toBasketDTO(basket, productInfo)));
+        return basketDTOs;
     }
 
     /**
@@ -130,6 +298,79 @@ public class BasketService {
                 .orElseGet(() -> createNewBasket(userId));
     }
 
+    /**
+     * Changes the active basket of a user in a short transaction, creating the basket if there is none,
+     * and records the change in the history of the basket.
+     *
+     * @param operation The name of the operation the transaction is timed as.
+     * @param userId The ID of the user.
+     * @param change The change of the basket, without any remote call.
+     * @return An unmanaged copy of the saved basket, to be enriched after the transaction.
+     */
+    private Basket changeActiveBasket(String operation, Long userId, Consumer<Basket> change) {
+        return transactionRunner.inTransaction(operation, () -> {
+            Basket basket = getOrCreateActiveBasket(userId);
+            Map<Long, Integer> before = basket.getProducts();
+            change.accept(basket);
+            basket = basketRepository.save(basket);
+            basketHistoryService.recordLineChanges(basket, before);
+            log.info("Basket {} updated. Subtotal: {}", basket.getBasketId(), Money.toMajor(basket.getSubTotalMinor()));
+            return basket.snapshot();
+        });
+    }
+
+    /**
+     * Validates the operations and prices their products with a single warehouse lookup.
+     *
+     * @param operations the operations to price.
+     * @return The product details keyed by product ID.
+     * @throws IllegalArgumentException if an operation is malformed.
+     */
+    public Map<Long, ProductDTO> priceOperations(List<BasketOperationDTO> operations) {
+        operations.forEach(this::validateOperation);
+        Set<Long> productIds = new LinkedHashSet<>();
+        operations.forEach(operation -> productIds.add(operation.getProductId()));
+        return productIds.isEmpty()
+                ? Map.of()
+                : warehouseClient.getProductDetailsBatch(productIds);
+    }
+
+    /**
+     * Applies the operations to the basket in order, with the prices fetched beforehand by {@link #priceOperations}.
+     * Makes no remote call and persists nothing.
+     *
+     * @param basket the basket to change.
+     * @param operations the validated operations to apply.
+     * @param productInfo the product details keyed by product ID, covering every product of the operations.
+     * @throws IllegalArgumentException if an operation removes more than the basket holds.
+     */
+    public void applyPricedOperations(Basket basket, List<BasketOperationDTO> operations, Map<Long, ProductDTO> productInfo) {
+        for (BasketOperationDTO operation : operations) {
+            long price = Money.toMinor(productInfo.get(operation.getProductId()).getPrice());
+            switch (operation.getType()) {
+                case ADD -> basket.addProduct(operation.getProductId(), price, operation.getQuantity());
+                case REMOVE -> basket.removeProduct(operation.getProductId(), price, operation.getQuantity());
+                case SET -> basket.setProductQuantity(operation.getProductId(), price, operation.getQuantity());
+            }
+        }
+    }
+
+    /**
+     * Checks that an operation of a bulk request is complete and has a meaningful quantity.
+     *
+     * @param operation The operation to check.
+     * @throws IllegalArgumentException if the operation is invalid.
+     */
+    private void validateOperation(BasketOperationDTO operation) {
+        if (operation.getType() == null || operation.getProductId() == null || operation.getQuantity() == null) {
+            throw new IllegalArgumentException("Operation type, product ID and quantity are required.");
+        }
+        int minimum = operation.getType() == BasketOperationType.SET ? 0 : 1;
+        if (operation.getQuantity() < minimum) {
+            throw new IllegalArgumentException("Invalid quantity " + operation.getQuantity() + " for product " + operation.getProductId() + ".");
+        }
+    }
+
     /**
      * Fetches product information by its ID.
      *
@@ -152,36 +393,67 @@ public class BasketService {
         return Basket.builder()
                 .userId(userId)
                 .basketStatus(BasketStatus.ACTIVE)
-                .subTotalAmount(0.0)
-                .products(new HashMap<>())
+                .subTotalMinor(0L)
+                .build();
+    }
+
+    /**
+     * Builds the view of a basket that does not exist yet: active, empty and without an ID.
+     *
+     * @return The empty BasketDTO.
+     */
+    private BasketDTO emptyBasketView() {
+        return BasketDTO.builder()
+                .success(true)
+                .basketStatus(BasketStatus.ACTIVE)
+                .subtotalAmount(Money.toMajor(0L))
+                .products(new ArrayList<>())
                 .build();
     }
 
     /**
      * Converts a Basket entity to a BasketDTO.
+     * The details of every product in the basket are fetched with a single warehouse request.
      *
      * @param basket The Basket entity to convert.
      * @return The converted BasketDTO.
      */
-    private BasketDTO convertToBasketDTO(Basket basket) {
+    public BasketDTO convertToBasketDTO(Basket basket) {
+        Map<Long, Integer> products = basket.getProducts();
+        Map<Long, ProductDTO> productInfo = products.isEmpty()
+                ? Map.of()
+                : warehouseClient.getProductDetailsBatchForDisplay(products.keySet());
+        return toBasketDTO(basket, productInfo);
+    }
+
+    /**
+     * Maps a Basket entity to a BasketDTO using already fetched product details.
+     *
+     * @param basket The Basket entity to map.
+     * @param productInfo The product details keyed by product ID, covering every product of the basket.
+     * @return The mapped BasketDTO.
+     */
+    private BasketDTO toBasketDTO(Basket basket, Map<Long, ProductDTO> productInfo) {
         List<ProductDTO> productDetails = basket.getProducts().entrySet().stream()
-                .map(this::fetchProductDetailsWithQuantity)
+                .map(entry -> withQuantity(productInfo.get(entry.getKey()), entry.getValue()))
                 .collect(Collectors.toList());
         BasketDTO basketDTO = modelMapper.map(basket, BasketDTO.class);
         basketDTO.setProducts(productDetails);
+        basketDTO.setSubtotalAmount(Money.toMajor(basket.getSubTotalMinor()));
         basketDTO.setSuccess(true);
         return basketDTO;
     }
 
     /**
-     * Fetches product details with the specified quantity.
+     * Copies the product details with the specified quantity, leaving the fetched details untouched.
      *
-     * @param entry The entry containing the product ID and quantity.
+     * @param product The fetched product details.
+     * @param quantity The quantity of the product in the basket.
      * @return The ProductDTO containing product details with quantity.
      */
-    private ProductDTO fetchProductDetailsWithQuantity(Map.Entry<Long, Integer> entry) {
-        ProductDTO product = fetchProductInfo(entry.getKey());
-        product.setQuantity(entry.getValue());
-        return product;
+    private ProductDTO withQuantity(ProductDTO product, Integer quantity) {
+        return product.toBuilder()
+                .quantity(quantity)
+                .build();
     }
 }
\ No newline at end of file
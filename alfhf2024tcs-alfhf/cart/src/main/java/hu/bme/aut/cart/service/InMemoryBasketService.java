@@ -0,0 +1,96 @@
+package hu.bme.aut.cart.service;
+
+import hu.bme.aut.cart.client.CoreClient;
+import hu.bme.aut.cart.client.WarehouseClient;
+import hu.bme.aut.cart.dto.BasketDTO;
+import hu.bme.aut.cart.dto.BasketOperationDTO;
+import hu.bme.aut.cart.dto.ProductDTO;
+import hu.bme.aut.cart.model.Money;
+import hu.bme.aut.cart.model.entity.Basket;
+import hu.bme.aut.cart.store.ActiveBasketStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves the basket operations of users from the {@link ActiveBasketStore} instead of the database.
+ * Used in place of {@link BasketService} for the active basket when the in-memory store is enabled;
+ * the changes are written to the database behind the responses.
+ */
+@Service
+@ConditionalOnProperty(name = "cart.basket.store.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class InMemoryBasketService {
+
+    private final ActiveBasketStore activeBasketStore;
+    private final BasketService basketService;
+    private final CoreClient coreClient;
+    private final WarehouseClient warehouseClient;
+
+    /**
+     * Retrieves the active basket of a user, from memory if it is held there, otherwise from the database.
+     *
+     * @param userToken the user's token for validation.
+     * @return BasketDTO representing the active basket of the user.
+     */
+    public BasketDTO getBasketByUser(String userToken) {
+        Long userId = coreClient.getUserIdFromToken(userToken);
+        return activeBasketStore.find(userId)
+                .map(basketService::convertToBasketDTO)
+                .orElseGet(() -> basketService.getBasketByUser(userToken));
+    }
+
+    /**
+     * Adds or updates the quantity of a specified product in a user's active basket.
+     *
+     * @param userToken the user's token for validation.
+     * @param productId the ID of the product to add.
+     * @param quantity the quantity of the product to add.
+     * @return BasketDTO representing the updated state of the basket.
+     */
+    public BasketDTO addToBasket(String userToken, Long productId, Integer quantity) {
+        log.debug("Adding product {} to in-memory basket with quantity {}", productId, quantity);
+        Long userId = coreClient.getUserIdFromToken(userToken);
+        long price = Money.toMinor(warehouseClient.getProductDetails(productId).getPrice());
+        Basket basket = activeBasketStore.update(userId, active -> active.addProduct(productId, price, quantity));
+        return basketService.convertToBasketDTO(basket);
+    }
+
+    /**
+     * Removes a specified quantity of a product from a user's active basket.
+     *
+     * @param userToken the user's token for validation.
+     * @param productId the ID of the product to remove.
+     * @param quantity the quantity to remove.
+     * @return BasketDTO representing the updated state of the basket.
+     */
+    public BasketDTO removeFromBasket(String userToken, Long productId, Integer quantity) {
+        log.debug("Removing product {} from in-memory basket with quantity {}", productId, quantity);
+        Long userId = coreClient.getUserIdFromToken(userToken);
+        long price = Money.toMinor(warehouseClient.getProductDetails(productId).getPrice());
+        Basket basket = activeBasketStore.update(userId, active -> active.removeProduct(productId, price, quantity));
+        return basketService.convertToBasketDTO(basket);
+    }
+
+    /**
+     * Applies a list of add, remove and set-quantity operations to a user's active basket at once.
+     * If any operation is invalid, none of them is applied.
+     *
+     * @param userToken the user's token for validation.
+     * @param operations the operations to apply, in order.
+     * @return BasketDTO representing the updated state of the basket.
+     */
+    public BasketDTO applyOperations(String userToken, List<BasketOperationDTO> operations) {
+        log.debug("Applying {} operations to in-memory basket", operations.size());
+        Long userId = coreClient.getUserIdFromToken(userToken);
+        Map<Long, ProductDTO> productInfo = basketService.priceOperations(operations);
+        Basket basket = activeBasketStore.update(userId,
+                active -> basketService.applyPricedOperations(active, operations, productInfo));
+        return basketService.convertToBasketDTO(basket);
+    }
+}
\ No newline at end of file
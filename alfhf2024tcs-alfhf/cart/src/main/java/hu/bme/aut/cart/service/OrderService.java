@@ -1,56 +1,109 @@
 package hu.bme.aut.cart.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import hu.bme.aut.cart.checkout.CheckoutRequestedEvent;
 import hu.bme.aut.cart.client.CoreClient;
+import hu.bme.aut.cart.client.WarehouseClient;
 import hu.bme.aut.cart.dto.BasketDTO;
 import hu.bme.aut.cart.dto.CoreValidationResponseDTO;
 import hu.bme.aut.cart.dto.OrderDTO;
+import hu.bme.aut.cart.dto.OrderPageDTO;
+import hu.bme.aut.cart.dto.OrderStatusDTO;
+import hu.bme.aut.cart.dto.ProductDTO;
 import hu.bme.aut.cart.exception.CardNotBelongToUserException;
 import hu.bme.aut.cart.exception.InsufficientFundsException;
 import hu.bme.aut.cart.exception.OrderNotFoundException;
+import hu.bme.aut.cart.exception.ServiceCommunicationException;
+import hu.bme.aut.cart.model.Money;
 import hu.bme.aut.cart.model.entity.Basket;
 import hu.bme.aut.cart.model.entity.Order;
+import hu.bme.aut.cart.model.enums.BasketStatus;
 import hu.bme.aut.cart.model.enums.OrderStatus;
 import hu.bme.aut.cart.repository.OrderRepository;
-import jakarta.transaction.Transactional;
+import hu.bme.aut.cart.retry.RetryOnConflict;
+import hu.bme.aut.cart.store.ActiveBasketStore;
+import hu.bme.aut.cart.transaction.TransactionRunner;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
  * Service class for managing orders within the CART module.
+ * Remote calls are made before or after the short database transaction of a flow, never inside it.
+ * Orders are read from their lines recorded at checkout, so reading them needs no WAREHOUSE call.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class OrderService {
 
+    private static final int MAX_HISTORY_PAGE_SIZE = 100;
+
     private final OrderRepository orderRepository;
     private final BasketService basketService;
+    private final BasketHistoryService basketHistoryService;
     private final ModelMapper modelMapper;
     private final CoreClient coreClient;
+    private final WarehouseClient warehouseClient;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectProvider<ActiveBasketStore> activeBasketStore;
+    private final TransactionRunner transactionRunner;
 
-    @Transactional
+    /**
+     * Accepts the active basket of a user as a new order in PENDING state.
+     * The card is validated asynchronously by the checkout workers once this transaction has committed;
+     * the result can be polled with {@link #getOrderStatus(Long, String)}.
+     * If the basket is held by the in-memory basket store, its pending changes are written first.
+     * The token is resolved, the basket is flushed and its products are priced before the transaction
+     * creating the order is started; the names and prices are recorded on the lines of the order,
+     * and the total of the order, which is the amount reserved on the card, is computed from those lines.
+     *
+     * @param userToken The user's token for validation.
+     * @param cardId The ID of the card used for the order.
+     * @return An OrderDTO describing the pending order, without basket details.
+     */
+    @RetryOnConflict
     public OrderDTO createOrderForUser(String userToken, String cardId) {
-        BasketDTO basketDTO = basketService.getBasketByUser(userToken);
-        return createOrderFromBasket(basketDTO.getBasketId(), cardId, userToken);
+        Long userId = coreClient.getUserIdFromToken(userToken);
+        activeBasketStore.ifAvailable(store -> store.flushAndRelease(userId));
+        Set<Long> productIds = transactionRunner.inReadOnlyTransaction("order.price", () ->
+                basketService.findActiveBasket(userId).getProducts().keySet());
+        Map<Long, ProductDTO> productInfo = productIds.isEmpty()
+                ? Map.of()
+                : warehouseClient.getProductDetailsBatch(productIds);
+        return transactionRunner.inTransaction("order.create", () -> {
+            Basket basket = basketService.findActiveBasket(userId);
+            return createOrderFromBasket(basket.getBasketId(), cardId, userToken, productInfo);
+        });
     }
 
     /**
-     * Creates an order from a specified basket.
+     * Creates a pending order from a specified basket and requests its asynchronous checkout.
      *
      * @param basketId The ID of the basket from which to create the order.
      * @param cardId The ID of the card used for the order.
      * @param userToken The user's token for validation.
-     * @return An OrderDTO containing detailed information about the newly created order.
+     * @param productInfo The details of the products of the basket keyed by product ID, fetched before the transaction.
+     * @return An OrderDTO describing the newly created order.
      * @throws IllegalStateException if an order already exists for the specified basket.
+     * @throws OptimisticLockingFailureException if a product was added to the basket after it was priced.
      */
-    private OrderDTO createOrderFromBasket(Long basketId, String cardId, String userToken) {
+    private OrderDTO createOrderFromBasket(Long basketId, String cardId, String userToken, Map<Long, ProductDTO> productInfo) {
         log.debug("Creating order from basket ID {}", basketId);
         Basket basket = basketService.findBasketById(basketId);
 
@@ -59,77 +112,368 @@ public class OrderService {
             throw new IllegalStateException("Order already exists for this basket");
         }
 
-        validateCard(cardId, basket.getSubTotalAmount(), userToken);
-
         Order order = Order.builder()
                 .orderDate(new Date())
                 .status(OrderStatus.PENDING)
-                .totalAmount(basket.getSubTotalAmount())
+                .cardId(cardId)
                 .build();
+        for (Map.Entry<Long, Integer> line : basket.getProducts().entrySet()) {
+            ProductDTO product = productInfo.get(line.getKey());
+            if (product == null) {
+                throw new OptimisticLockingFailureException("Basket " + basketId + " changed while its products were priced");
+            }
+            order.addLine(line.getKey(), product.getName(), Money.toMinor(product.getPrice()), line.getValue());
+        }
+        if (order.getTotalMinor() != basket.getSubTotalMinor()) {
+            log.info("Prices of basket {} changed since the products were added, order total is {} instead of {}",
+                    basketId, Money.toMajor(order.getTotalMinor()), Money.toMajor(basket.getSubTotalMinor()));
+        }
         order.setBasket(basket);
+        basketHistoryService.recordCheckout(basket);
 
         order = orderRepository.save(order);
-        BasketDTO basketDTO = basketService.saveAndConvertBasket(basket);
-        log.info("Order created successfully with ID {}", order.getOrderId());
+        eventPublisher.publishEvent(new CheckoutRequestedEvent(order.getOrderId(), userToken, cardId, order.getTotalMinor()));
+        log.info("Order accepted with ID {}, checkout queued", order.getOrderId());
+
+        return mapToOrderDTO(order, null);
+    }
+
+    /**
+     * Marks a pending order as completed after its card has been validated.
+     * Runs in its own transaction, as it is called from the checkout workers.
+     *
+     * @param orderId The ID of the order to complete.
+     * @return The resulting status of the order; an order that is no longer pending is left unchanged.
+     * @throws OrderNotFoundException if no order is found with the provided ID.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public OrderStatusDTO completeOrder(Long orderId) {
+        Order order = findOrderById(orderId);
+        if (order.getStatus() == OrderStatus.PENDING) {
+            order.setStatus(OrderStatus.COMPLETED);
+            log.info("Order {} completed", orderId);
+        }
+        return mapToOrderStatusDTO(order);
+    }
+
+    /**
+     * Cancels a pending order whose checkout failed, and reopens its basket so the user can try again.
+     * Runs in its own transaction, as it is called from the checkout workers.
+     *
+     * @param orderId The ID of the order to cancel.
+     * @param failureCode The error code of the failed step.
+     * @param failureMessage The reason of the failure.
+     * @return The resulting status of the order; an order that is no longer pending is left unchanged.
+     * @throws OrderNotFoundException if no order is found with the provided ID.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public OrderStatusDTO failOrder(Long orderId, String failureCode, String failureMessage) {
+        Order order = findOrderById(orderId);
+        if (order.getStatus() == OrderStatus.PENDING) {
+            order.setStatus(OrderStatus.CANCELLED);
+            order.setFailureCode(failureCode);
+            order.setFailureMessage(failureMessage);
+            basketService.reopenBasket(order.getBasket());
+            log.info("Order {} cancelled with error {}: {}", orderId, failureCode, failureMessage);
+        }
+        return mapToOrderStatusDTO(order);
+    }
+
+    /**
+     * Retrieves the status of an order of the user without any basket details.
+     *
+     * @param orderId The ID of the order.
+     * @param userToken The user's token for validation.
+     * @return An OrderStatusDTO with the status and, for a cancelled order, the failure reason.
+     * @throws OrderNotFoundException if no order of the user is found with the provided ID.
+     */
+    public OrderStatusDTO getOrderStatus(Long orderId, String userToken) {
+        Long userId = coreClient.getUserIdFromToken(userToken);
+        return transactionRunner.inReadOnlyTransaction("order.status", () ->
+                mapToOrderStatusDTO(orderRepository.findByOrderIdAndUserId(orderId, userId)
+                        .orElseThrow(() -> new OrderNotFoundException("Order not found with ID: " + orderId, "3406"))));
+    }
 
-        return mapToOrderDTO(order, basketDTO);
+    /**
+     * Finds the orders that are still pending but were placed before the given time.
+     *
+     * @param cutoff The time before which a pending order is considered stale.
+     * @return The stale orders, without their basket and lines.
+     */
+    @Transactional(readOnly = true)
+    public List<Order> findStalePendingOrders(Date cutoff) {
+        return orderRepository.findByStatusAndOrderDateBefore(OrderStatus.PENDING, cutoff);
     }
 
     /**
-     * Retrieves all orders associated with a specific user token.
+     * Retrieves all orders associated with a specific user token, with their lines, in a single query.
      *
      * @param userToken The user's token for validation.
      * @return A list of OrderDTOs representing the orders of the specified user.
      */
-    @Transactional
     public List<OrderDTO> getOrdersByUserToken(String userToken) {
         log.debug("Fetching orders for user token {}", userToken);
         Long userId = coreClient.getUserIdFromToken(userToken);
-        List<Order> orders = orderRepository.findByUserId(userId);
-        return orders.stream()
-                .map(order -> {
-                    BasketDTO basketDTO = basketService.getBasketById(order.getBasket().getBasketId());
-                    return mapToOrderDTO(order, basketDTO);
-                })
-                .collect(Collectors.toList());
+        List<LoadedOrder> orders = transactionRunner.inReadOnlyTransaction("order.list", () ->
+                orderRepository.findByUserId(userId).stream()
+                        .map(this::loadOrder)
+                        .collect(Collectors.toList()));
+        return withLegacyBaskets(orders);
+    }
+
+    /**
+     * Retrieves one page of a user's order history, newest first.
+     * The page is resolved with keyset pagination: the IDs of the page are queried first, then the
+     * orders are loaded with their lines in one query.
+     *
+     * @param userToken The user's token for validation.
+     * @param before The order ID to continue from (the previous page's next cursor), or null for the first page.
+     * @param size The requested page size, clamped between 1 and {@value #MAX_HISTORY_PAGE_SIZE}.
+     * @return An OrderPageDTO containing the orders of the page and the cursor of the next page.
+     */
+    public OrderPageDTO getOrderHistory(String userToken, Long before, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_HISTORY_PAGE_SIZE));
+        log.debug("Fetching order history page before {} with size {}", before, pageSize);
+        Long userId = coreClient.getUserIdFromToken(userToken);
+
+        HistoryPage page = transactionRunner.inReadOnlyTransaction("order.history", () -> {
+            List<Long> orderIds = orderRepository.findOrderIdsByUserId(userId, before, PageRequest.of(0, pageSize + 1));
+            boolean more = orderIds.size() > pageSize;
+            if (more) {
+                orderIds = orderIds.subList(0, pageSize);
+            }
+            List<LoadedOrder> orders = orderIds.isEmpty()
+                    ? List.of()
+                    : orderRepository.findAllWithLinesByOrderIdIn(orderIds).stream()
+                            .map(this::loadOrder)
+                            .collect(Collectors.toList());
+            return new HistoryPage(orderIds, orders, more);
+        });
+        List<OrderDTO> orderDTOs = withLegacyBaskets(page.orders());
+
+        log.info("Fetched {} orders of user ID {}, more available: {}", orderDTOs.size(), userId, page.hasMore());
+        return OrderPageDTO.builder()
+                .orders(orderDTOs)
+                .nextCursor(page.hasMore() ? page.orderIds().get(page.orderIds().size() - 1) : null)
+                .hasMore(page.hasMore())
+                .success(true)
+                .build();
     }
 
     /**
-     * Retrieves an order by its ID.
+     * Retrieves an order by its ID, with its lines, in a single query.
      *
      * @param orderId The ID of the order to retrieve.
      * @return An OrderDTO containing detailed information about the order.
      * @throws OrderNotFoundException if no order is found with the provided ID.
      */
-    @Transactional
     public OrderDTO getOrderById(Long orderId) {
         log.debug("Retrieving order with ID {}", orderId);
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new OrderNotFoundException("Order not found with ID: " + orderId, "3406"));
-        BasketDTO basketDTO = basketService.getBasketById(order.getBasket().getBasketId());
-        return mapToOrderDTO(order, basketDTO);
+        LoadedOrder order = transactionRunner.inReadOnlyTransaction("order.get", () -> loadOrder(
+                orderRepository.findWithLinesByOrderId(orderId)
+                        .orElseThrow(() -> new OrderNotFoundException("Order not found with ID: " + orderId, "3406"))));
+        return withLegacyBaskets(List.of(order)).get(0);
+    }
+
+    /**
+     * Holds the total of an order on its card. Unlike a balance check, the amount is deducted from the card
+     * until it is captured or released, so concurrent orders cannot spend the same funds.
+     * The reservation is identified by the order, so a retried call holds the amount only once.
+     *
+     * @param orderId The ID of the order.
+     * @param cardId The ID of the card to hold the amount on.
+     * @param totalMinor The total of the order, in minor units.
+     * @param userToken The user's token for validation.
+     */
+    public void reserveFunds(Long orderId, String cardId, long totalMinor, String userToken) {
+        log.debug("Reserving {} on card ID {} for order {}", Money.toMajor(totalMinor), cardId, orderId);
+        throwIfRejected(coreClient.reserveFunds(userToken, reservationIdOf(orderId), cardId, totalMinor));
     }
 
     /**
-     * Validates if the card belongs to the user and checks the balance.
+     * Charges the amount held for an order.
      *
-     * @param cardId The ID of the card to validate.
-     * @param totalAmount The total amount to check against the card balance.
+     * @param orderId The ID of the order.
      * @param userToken The user's token for validation.
      */
-    public void validateCard(String cardId, Double totalAmount, String userToken) {
-        log.debug("Validating card ID {} for amount {}", cardId, totalAmount);
-        CoreValidationResponseDTO response = coreClient.validateCard(userToken, cardId, totalAmount);
+    public void captureFunds(Long orderId, String userToken) {
+        log.debug("Capturing reservation of order {}", orderId);
+        throwIfRejected(coreClient.captureReservation(userToken, reservationIdOf(orderId)));
+    }
+
+    /**
+     * Records that the total of a pending order has been charged, so the checkout recovery completes the order
+     * instead of cancelling it if it cannot be completed now.
+     * Runs in its own transaction, as it is called from the checkout workers.
+     *
+     * @param orderId The ID of the order.
+     * @throws OrderNotFoundException if no order is found with the provided ID.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void recordCapture(Long orderId) {
+        Order order = findOrderById(orderId);
+        if (order.getStatus() == OrderStatus.PENDING) {
+            order.setFundsCaptured(true);
+        }
+    }
+
+    /**
+     * Settles the reservation of an order whose checkout was abandoned before a capture was recorded.
+     * The token of the user is no longer available, so the CORE module is asked directly:
+     * an amount still held is returned to the card, while a captured amount is kept.
+     *
+     * @param orderId The ID of the order.
+     * @return true if the reservation has been captured, so the order has to be completed rather than cancelled.
+     */
+    public boolean settleAbandonedReservation(Long orderId) {
+        String reservationId = reservationIdOf(orderId);
+        Optional<String> status = coreClient.getReservationStatus(reservationId);
+        if (status.isEmpty()) {
+            log.debug("No reservation was made for order {}", orderId);
+            return false;
+        }
+        switch (status.get()) {
+            case "CAPTURED" -> {
+                log.warn("Reservation of order {} has been captured, but the capture was not recorded", orderId);
+                return true;
+            }
+            case "RESERVED" -> {
+                log.info("Releasing reservation of abandoned order {}", orderId);
+                throwIfRejected(coreClient.releaseReservation(reservationId));
+                return false;
+            }
+            default -> {
+                log.debug("Reservation of order {} is already {}", orderId, status.get());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Returns the amount held for an order to its card.
+     * A reservation that is never released expires in the CORE module and is returned then.
+     *
+     * @param orderId The ID of the order.
+     * @param userToken The user's token for validation.
+     */
+    public void releaseFunds(Long orderId, String userToken) {
+        log.debug("Releasing reservation of order {}", orderId);
+        throwIfRejected(coreClient.releaseReservation(userToken, reservationIdOf(orderId)));
+    }
+
+    /**
+     * Maps an unsuccessful response of the CORE module to the matching exception.
+     *
+     * @param response The response of the CORE module.
+     */
+    private void throwIfRejected(CoreValidationResponseDTO response) {
         if (!response.isSuccess()) {
-            log.error("Card validation failed with error: {}", response.getErrorMessage());
+            log.error("Request rejected by the core service with error: {}", response.getErrorMessage());
             if ("10100".equals(response.getErrorCode())) {
                 throw new CardNotBelongToUserException(response.getErrorMessage(), response.getErrorCode());
             } else if ("10101".equals(response.getErrorCode())) {
                 throw new InsufficientFundsException(response.getErrorMessage(), response.getErrorCode());
             }
+            throw new ServiceCommunicationException(response.getErrorMessage(),
+                    response.getErrorCode() != null ? response.getErrorCode() : "3500");
         }
     }
 
+    private static String reservationIdOf(Long orderId) {
+        return "order-" + orderId;
+    }
+
+    /**
+     * Finds an order by its ID.
+     *
+     * @param orderId The ID of the order to find.
+     * @return The found Order entity.
+     * @throws OrderNotFoundException if no order is found with the provided ID.
+     */
+    private Order findOrderById(Long orderId) {
+        return orderRepository.findById(orderId)
+                .orElseThrow(() -> new OrderNotFoundException("Order not found with ID: " + orderId, "3406"));
+    }
+
+    /**
+     * Maps an order loaded with its lines to an OrderDTO with the lines as its basket.
+     * An order placed before lines were recorded has none; an unmanaged copy of its basket is kept instead,
+     * to be priced after the transaction.
+     *
+     * @param order The order entity, with its lines fetched.
+     * @return The mapped order, with the copy of its basket if it has no lines.
+     */
+    private LoadedOrder loadOrder(Order order) {
+        if (order.getLines().isEmpty()) {
+            return new LoadedOrder(mapToOrderDTO(order, null), order.getBasket().snapshot());
+        }
+        return new LoadedOrder(mapToOrderDTO(order, mapLinesToBasketDTO(order)), null);
+    }
+
+    /**
+     * Attaches the basket details to the orders placed before lines were recorded, fetching their products
+     * with a single warehouse request. Orders with lines need no request at all.
+     *
+     * @param orders The loaded orders.
+     * @return The OrderDTOs in the order of the loaded orders.
+     */
+    private List<OrderDTO> withLegacyBaskets(List<LoadedOrder> orders) {
+        List<Basket> legacyBaskets = orders.stream()
+                .map(LoadedOrder::legacyBasket)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        if (!legacyBaskets.isEmpty()) {
+            Map<Long, BasketDTO> basketDTOs = basketService.convertToBasketDTOs(legacyBaskets);
+            orders.stream()
+                    .filter(order -> order.legacyBasket() != null)
+                    .forEach(order -> order.order().setBasket(basketDTOs.get(order.legacyBasket().getBasketId())));
+        }
+        return orders.stream()
+                .map(LoadedOrder::order)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Maps the lines of an order to the BasketDTO of the order, with the names and prices at checkout.
+     * Only the ID of the basket is read, so the basket itself is not loaded.
+     *
+     * @param order The order entity, with its lines fetched.
+     * @return The BasketDTO of the order.
+     */
+    private BasketDTO mapLinesToBasketDTO(Order order) {
+        List<ProductDTO> products = order.getLines().stream()
+                .map(line -> ProductDTO.builder()
+                        .id(line.getProductId())
+                        .name(line.getProductName())
+                        .price(Money.toMajor(line.getUnitPriceMinor()))
+                        .quantity(line.getQuantity())
+                        .build())
+                .collect(Collectors.toList());
+        return BasketDTO.builder()
+                .success(true)
+                .basketId(order.getBasket().getBasketId())
+                .basketStatus(BasketStatus.CHECKED_OUT)
+                .subtotalAmount(Money.toMajor(order.getTotalMinor()))
+                .products(products)
+                .build();
+    }
+
+    /**
+     * Maps an Order entity to an OrderStatusDTO.
+     *
+     * @param order The order entity to map.
+     * @return The populated OrderStatusDTO.
+     */
+    private OrderStatusDTO mapToOrderStatusDTO(Order order) {
+        return OrderStatusDTO.builder()
+                .orderId(order.getOrderId())
+                .orderStatus(order.getStatus())
+                .failureCode(order.getFailureCode())
+                .failureMessage(order.getFailureMessage())
+                .success(true)
+                .build();
+    }
+
     /**
      * Maps an Order entity to an OrderDTO while also including detailed basket information.
      *
@@ -139,8 +483,21 @@ public class OrderService {
      */
     private OrderDTO mapToOrderDTO(Order order, BasketDTO basketDTO) {
         OrderDTO orderDTO = modelMapper.map(order, OrderDTO.class);
+        orderDTO.setTotalAmount(Money.toMajor(order.getTotalMinor()));
         orderDTO.setBasket(basketDTO);
         orderDTO.setSuccess(true);
         return orderDTO;
     }
+
+    /**
+     * An order mapped in the transaction; the basket is only set for orders without lines.
+     */
+    private record LoadedOrder(OrderDTO order, Basket legacyBasket) {
+    }
+
+    /**
+     * The orders of a history page loaded in the transaction.
+     */
+    private record HistoryPage(List<Long> orderIds, List<LoadedOrder> orders, boolean hasMore) {
+    }
 }
\ No newline at end of file
@@ -0,0 +1,292 @@
+package hu.bme.aut.cart.store;
+
+import hu.bme.aut.cart.model.entity.Basket;
+import hu.bme.aut.cart.service.BasketService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the active baskets of users in memory and writes them behind to the database.
+ * Every basket has a single writer at a time: changes of the same user are serialized by the lock of its slot,
+ * and are applied to a copy that replaces the held basket only if the whole change succeeds.
+ * Changed baskets are written back in periodic batches, and always synchronously before checkout.
+ * Baskets without pending changes are evicted when they have been idle for too long or the store is full.
+ * The store assumes that requests of a user are always served by the same instance.
+ */
+@Component
+@ConditionalOnProperty(name = "cart.basket.store.enabled", havingValue = "true")
+@Slf4j
+public class ActiveBasketStore {
+
+    private final BasketService basketService;
+    private final int maxSize;
+    private final Duration idleTimeout;
+    private final int flushBatchSize;
+    private final Map<Long, Slot> slots = new ConcurrentHashMap<>();
+    private final Counter flushedBaskets;
+    private final Counter failedFlushes;
+    private final Counter lostChanges;
+
+    public ActiveBasketStore(BasketService basketService,
+                             @Value("${cart.basket.store.max-size:10000}") int maxSize,
+                             @Value("${cart.basket.store.idle-timeout:30m}") Duration idleTimeout,
+                             @Value("${cart.basket.store.flush-batch-size:100}") int flushBatchSize,
+                             MeterRegistry meterRegistry) {
+        this.basketService = basketService;
+        this.maxSize = maxSize;
+        this.idleTimeout = idleTimeout;
+        this.flushBatchSize = flushBatchSize;
+        Gauge.builder("cart.basket.store.size", slots, Map::size)
+                .description("Active baskets held in memory")
+                .register(meterRegistry);
+        Gauge.builder("cart.basket.store.dirty", this, ActiveBasketStore::dirtyCount)
+                .description("Baskets held in memory with changes not yet written to the database")
+                .register(meterRegistry);
+        this.flushedBaskets = Counter.builder("cart.basket.store.flushed")
+                .description("Baskets written back to the database")
+                .register(meterRegistry);
+        this.failedFlushes = Counter.builder("cart.basket.store.flush.failures")
+                .description("Write-back batches that failed and are retried later")
+                .register(meterRegistry);
+        this.lostChanges = Counter.builder("cart.basket.store.lost")
+                .description("Baskets dropped from memory with changes that could not be written")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns a copy of the active basket of a user if it is held in memory.
+     *
+     * @param userId the ID of the user.
+     * @return The copy of the basket, or an empty Optional if the basket is not held in memory.
+     */
+    public Optional<Basket> find(Long userId) {
+        Slot slot = slots.get(userId);
+        if (slot == null) {
+            return Optional.empty();
+        }
+        slot.lock.lock();
+        try {
+            if (slot.removed || slot.basket == null) {
+                return Optional.empty();
+            }
+            slot.touch();
+            return Optional.of(slot.basket.snapshot());
+        } finally {
+            slot.lock.unlock();
+        }
+    }
+
+    /**
+     * Changes the active basket of a user, loading or creating it first if it is not held in memory yet.
+     * The change is applied to a copy, so a change that throws leaves the held basket untouched.
+     *
+     * @param userId the ID of the user.
+     * @param change the change to apply.
+     * @return A copy of the changed basket.
+     */
+    public Basket update(Long userId, Consumer<Basket> change) {
+        while (true) {
+            Slot slot = slots.computeIfAbsent(userId, id -> new Slot());
+            slot.lock.lock();
+            try {
+                if (slot.removed) {
+                    continue;
+                }
+                if (slot.basket == null) {
+                    slot.basket = basketService.loadActiveBasket(userId);
+                }
+                Basket changed = slot.basket.snapshot();
+                change.accept(changed);
+                slot.basket = changed;
+                slot.changes++;
+                slot.touch();
+                return changed.snapshot();
+            } finally {
+                slot.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes the pending changes of a user's basket to the database and drops the basket from memory,
+     * so the checkout reads the current lines and later changes start from the checked out state.
+     *
+     * @param userId the ID of the user.
+     */
+    public void flushAndRelease(Long userId) {
+        Slot slot = slots.get(userId);
+        if (slot == null) {
+            return;
+        }
+        slot.lock.lock();
+        try {
+            if (slot.removed) {
+                return;
+            }
+            if (slot.isDirty()) {
+                Basket snapshot = slot.basket.snapshot();
+                if (basketService.writeBackBaskets(List.of(snapshot)).isEmpty()) {
+                    flushedBaskets.increment();
+                } else {
+                    logLostChanges(userId, snapshot);
+                }
+            }
+            remove(userId, slot);
+        } finally {
+            slot.lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the changed baskets back in batches, then evicts the baskets that are idle or exceed the size limit.
+     * Baskets that are being changed are skipped and written in a later run.
+     */
+    @Scheduled(fixedDelayString = "${cart.basket.store.flush-interval:PT1S}")
+    public void flushDirty() {
+        List<Pending> batch = new ArrayList<>();
+        for (Map.Entry<Long, Slot> entry : slots.entrySet()) {
+            Slot slot = entry.getValue();
+            if (!slot.lock.tryLock()) {
+                continue;
+            }
+            try {
+                if (!slot.removed && slot.isDirty()) {
+                    batch.add(new Pending(entry.getKey(), slot, slot.basket.snapshot(), slot.changes));
+                }
+            } finally {
+                slot.lock.unlock();
+            }
+            if (batch.size() == flushBatchSize) {
+                writeBack(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBack(batch);
+        }
+        evict();
+    }
+
+    /**
+     * Writes every pending change before the application stops.
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        log.info("Writing back {} changed baskets before shutdown", dirtyCount());
+        flushDirty();
+    }
+
+    private void writeBack(List<Pending> batch) {
+        Set<Long> skipped;
+        try {
+            skipped = basketService.writeBackBaskets(batch.stream().map(Pending::snapshot).toList());
+        } catch (RuntimeException ex) {
+            failedFlushes.increment();
+            log.error("Writing back {} baskets failed, retrying later: {}", batch.size(), ex.getMessage());
+            return;
+        }
+        for (Pending pending : batch) {
+            Slot slot = pending.slot();
+            slot.lock.lock();
+            try {
+                slot.flushedChanges = Math.max(slot.flushedChanges, pending.changes());
+                if (skipped.contains(pending.snapshot().getBasketId())) {
+                    logLostChanges(pending.userId(), slot.basket);
+                    remove(pending.userId(), slot);
+                }
+            } finally {
+                slot.lock.unlock();
+            }
+        }
+        flushedBaskets.increment(batch.size() - skipped.size());
+    }
+
+    /**
+     * Reports the lines of a basket that could not be written because the basket was checked out elsewhere
+     * or deleted as abandoned, so the lost changes can be restored by hand.
+     */
+    private void logLostChanges(Long userId, Basket basket) {
+        lostChanges.increment();
+        log.error("Basket {} of user ID {} is no longer active, dropping its unwritten lines from memory: {}",
+                basket.getBasketId(), userId, basket.getProducts());
+    }
+
+    private void evict() {
+        long idleBefore = System.nanoTime() - idleTimeout.toNanos();
+        int excess = slots.size() - maxSize;
+        List<Candidate> candidates = new ArrayList<>();
+        slots.forEach((userId, slot) -> candidates.add(new Candidate(userId, slot, slot.lastAccess)));
+        candidates.sort(Comparator.comparingLong(Candidate::lastAccess));
+        for (Candidate candidate : candidates) {
+            if (excess <= 0 && candidate.lastAccess() - idleBefore >= 0) {
+                break;
+            }
+            Slot slot = candidate.slot();
+            if (!slot.lock.tryLock()) {
+                continue;
+            }
+            try {
+                if (!slot.removed && !slot.isDirty()) {
+                    remove(candidate.userId(), slot);
+                    excess--;
+                }
+            } finally {
+                slot.lock.unlock();
+            }
+        }
+    }
+
+    private void remove(Long userId, Slot slot) {
+        slot.removed = true;
+        slots.remove(userId, slot);
+    }
+
+    private int dirtyCount() {
+        return (int) slots.values().stream().filter(Slot::isDirty).count();
+    }
+
+    /**
+     * The basket of a user held in memory. Every field is written under the lock; the change counters
+     * and the access time are also read without it, for the metrics and to pick eviction candidates.
+     */
+    private static class Slot {
+        private final ReentrantLock lock = new ReentrantLock();
+        private Basket basket;
+        private volatile long changes;
+        private volatile long flushedChanges;
+        private boolean removed;
+        private volatile long lastAccess = System.nanoTime();
+
+        private boolean isDirty() {
+            return changes != flushedChanges;
+        }
+
+        private void touch() {
+            lastAccess = System.nanoTime();
+        }
+    }
+
+    private record Pending(Long userId, Slot slot, Basket snapshot, long changes) {
+    }
+
+    private record Candidate(Long userId, Slot slot, long lastAccess) {
+    }
+}
\ No newline at end of file
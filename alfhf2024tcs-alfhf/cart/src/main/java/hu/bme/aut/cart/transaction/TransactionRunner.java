@@ -0,0 +1,61 @@
+package hu.bme.aut.cart.transaction;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Runs the database part of a flow in a short programmatic transaction, so remote calls to the CORE and
+ * WAREHOUSE modules can be made before and after it without holding a pooled connection.
+ * The duration of every transaction is recorded per operation, which is how long the operation held its connection.
+ */
+@Component
+public class TransactionRunner {
+
+    private final TransactionTemplate readWrite;
+    private final TransactionTemplate readOnly;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public TransactionRunner(PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.readWrite = new TransactionTemplate(transactionManager);
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Runs the work in a read-write transaction, joining the current transaction if there is one.
+     *
+     * @param operation the name of the operation the duration is recorded for
+     * @param work the database work, without any remote call
+     * @return the result of the work
+     */
+    public <T> T inTransaction(String operation, Supplier<T> work) {
+        return timer(operation).record(() -> readWrite.execute(status -> work.get()));
+    }
+
+    /**
+     * Runs the work in a read-only transaction, joining the current transaction if there is one.
+     *
+     * @param operation the name of the operation the duration is recorded for
+     * @param work the database work, without any remote call
+     * @return the result of the work
+     */
+    public <T> T inReadOnlyTransaction(String operation, Supplier<T> work) {
+        return timer(operation).record(() -> readOnly.execute(status -> work.get()));
+    }
+
+    private Timer timer(String operation) {
+        return timers.computeIfAbsent(operation, name -> Timer.builder("cart.db.transaction.duration")
+                .tag("operation", name)
+                .description("Time a database connection is held by the transaction of the operation")
+                .register(meterRegistry));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,43 @@
+-- Baskets and their lines. At most one ACTIVE basket per user, enforced by the unique active owner column.
+CREATE TABLE basket (
+    basket_id       BIGINT NOT NULL AUTO_INCREMENT,
+    version         BIGINT,
+    user_id         BIGINT NOT NULL,
+    active_user_id  BIGINT,
+    basket_status   ENUM ('ACTIVE', 'CHECKED_OUT', 'CANCELLED') NOT NULL,
+    last_modified   DATETIME(6) NOT NULL,
+    sub_total_minor BIGINT NOT NULL,
+    PRIMARY KEY (basket_id),
+    CONSTRAINT uk_basket_active_user UNIQUE (active_user_id)
+) ENGINE = InnoDB;
+
+-- Active basket lookup of a user
+CREATE INDEX idx_basket_user_status ON basket (user_id, basket_status);
+-- Sweep of idle active baskets
+CREATE INDEX idx_basket_status_last_modified ON basket (basket_status, last_modified);
+
+CREATE TABLE basket_products (
+    basket_id  BIGINT NOT NULL,
+    product_id BIGINT NOT NULL,
+    quantity   INTEGER,
+    PRIMARY KEY (basket_id, product_id),
+    CONSTRAINT fk_basket_products_basket FOREIGN KEY (basket_id) REFERENCES basket (basket_id)
+) ENGINE = InnoDB;
+
+-- Orders, one per checked out basket
+CREATE TABLE orders (
+    order_id        BIGINT NOT NULL AUTO_INCREMENT,
+    basket_id       BIGINT NOT NULL,
+    order_date      DATETIME(6) NOT NULL,
+    status          ENUM ('PENDING', 'COMPLETED', 'CANCELLED', 'SHIPPED'),
+    total_minor     BIGINT NOT NULL,
+    card_id         VARCHAR(255),
+    failure_code    VARCHAR(255),
+    failure_message VARCHAR(255),
+    PRIMARY KEY (order_id),
+    CONSTRAINT uk_orders_basket UNIQUE (basket_id),
+    CONSTRAINT fk_orders_basket FOREIGN KEY (basket_id) REFERENCES basket (basket_id)
+) ENGINE = InnoDB;
+
+-- Recovery of orders pending for too long
+CREATE INDEX idx_orders_status_order_date ON orders (status, order_date);
@@ -0,0 +1,26 @@
+-- Append-only history of the baskets. Neither table references basket, so the history outlives deleted baskets.
+ALTER TABLE basket ADD COLUMN event_sequence BIGINT NOT NULL DEFAULT 0;
+
+-- One row per item-added, item-removed and checked-out event, numbered per basket from 1
+CREATE TABLE basket_events (
+    basket_id       BIGINT NOT NULL,
+    sequence_number BIGINT NOT NULL,
+    event_type      ENUM ('ITEM_ADDED', 'ITEM_REMOVED', 'CHECKED_OUT') NOT NULL,
+    user_id         BIGINT NOT NULL,
+    product_id      BIGINT,
+    quantity        INTEGER,
+    sub_total_minor BIGINT NOT NULL,
+    occurred_at     DATETIME(6) NOT NULL,
+    PRIMARY KEY (basket_id, sequence_number)
+) ENGINE = InnoDB;
+
+-- State of a basket after the event with the given sequence number, taken every few events
+CREATE TABLE basket_snapshots (
+    basket_id       BIGINT NOT NULL,
+    sequence_number BIGINT NOT NULL,
+    basket_status   ENUM ('ACTIVE', 'CHECKED_OUT', 'CANCELLED') NOT NULL,
+    sub_total_minor BIGINT NOT NULL,
+    products        TEXT NOT NULL,
+    created_at      DATETIME(6) NOT NULL,
+    PRIMARY KEY (basket_id, sequence_number)
+) ENGINE = InnoDB;
@@ -0,0 +1,11 @@
+-- Lines of the orders with the product name and unit price at checkout, written once and never updated.
+-- Orders placed before this migration have no lines and are still shown from their baskets.
+CREATE TABLE order_lines (
+    order_id         BIGINT NOT NULL,
+    product_id       BIGINT NOT NULL,
+    product_name     VARCHAR(255),
+    unit_price_minor BIGINT NOT NULL,
+    quantity         INTEGER NOT NULL,
+    PRIMARY KEY (order_id, product_id),
+    CONSTRAINT fk_order_lines_order FOREIGN KEY (order_id) REFERENCES orders (order_id)
+) ENGINE = InnoDB;
@@ -0,0 +1,2 @@
+-- Set once the total of an order has been charged, so the checkout recovery completes such an order instead of cancelling it
+ALTER TABLE orders ADD COLUMN funds_captured BOOLEAN NOT NULL DEFAULT FALSE;
@@ -0,0 +1,227 @@
+package hu.bme.aut.cart.checkouttest;
+
+import hu.bme.aut.cart.checkout.CheckoutProcessor;
+import hu.bme.aut.cart.checkout.CheckoutRequestedEvent;
+import hu.bme.aut.cart.checkout.OrderStatusNotifier;
+import hu.bme.aut.cart.dto.OrderStatusDTO;
+import hu.bme.aut.cart.exception.InsufficientFundsException;
+import hu.bme.aut.cart.exception.ServiceCommunicationException;
+import hu.bme.aut.cart.model.entity.Order;
+import hu.bme.aut.cart.model.enums.OrderStatus;
+import hu.bme.aut.cart.service.OrderService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CheckoutProcessorTest {
+
+    @Mock
+    private ThreadPoolTaskExecutor checkoutExecutor;
+
+    @Mock
+    private OrderService orderService;
+
+    @Mock
+    private OrderStatusNotifier orderStatusNotifier;
+
+    private CheckoutProcessor checkoutProcessor;
+
+    private final CheckoutRequestedEvent event = new CheckoutRequestedEvent(1L, "token123", "card123", 10000L);
+
+    @BeforeEach
+    void setUp() {
+        checkoutProcessor = new CheckoutProcessor(checkoutExecutor, orderService, orderStatusNotifier,
+                Duration.ofMinutes(5), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void testOnCheckoutRequested_CompletesOrderAndCapturesFunds() {
+        // Arrange
+        runTasksInline();
+        OrderStatusDTO completed = status(OrderStatus.COMPLETED);
+        when(orderService.completeOrder(1L)).thenReturn(completed);
+
+        // Act
+        checkoutProcessor.onCheckoutRequested(event);
+
+        // Assert
+        InOrder inOrder = inOrder(orderService);
+        inOrder.verify(orderService).reserveFunds(1L, "card123", 10000L, "token123");
+        inOrder.verify(orderService).captureFunds(1L, "token123");
+        inOrder.verify(orderService).recordCapture(1L);
+        inOrder.verify(orderService).completeOrder(1L);
+        verify(orderService, never()).releaseFunds(anyLong(), anyString());
+        verify(orderService, never()).failOrder(anyLong(), anyString(), anyString());
+        verify(orderStatusNotifier, times(1)).publish(completed);
+    }
+
+    @Test
+    void testOnCheckoutRequested_OrderNoLongerPendingKeepsCapture() {
+        // Arrange
+        runTasksInline();
+        OrderStatusDTO cancelled = status(OrderStatus.CANCELLED);
+        when(orderService.completeOrder(1L)).thenReturn(cancelled);
+
+        // Act
+        checkoutProcessor.onCheckoutRequested(event);
+
+        // Assert
+        verify(orderService, times(1)).captureFunds(1L, "token123");
+        verify(orderService, never()).releaseFunds(anyLong(), anyString());
+        verify(orderStatusNotifier, times(1)).publish(cancelled);
+    }
+
+    @Test
+    void testOnCheckoutRequested_CaptureFailureReleasesFundsAndCancelsOrder() {
+        // Arrange
+        runTasksInline();
+        OrderStatusDTO cancelled = status(OrderStatus.CANCELLED);
+        doThrow(new ServiceCommunicationException("Reservation expired", "10103"))
+                .when(orderService).captureFunds(anyLong(), anyString());
+        when(orderService.failOrder(1L, "10103", "Reservation expired")).thenReturn(cancelled);
+
+        // Act
+        checkoutProcessor.onCheckoutRequested(event);
+
+        // Assert
+        verify(orderService, never()).recordCapture(anyLong());
+        verify(orderService, never()).completeOrder(anyLong());
+        verify(orderService, times(1)).releaseFunds(1L, "token123");
+        verify(orderStatusNotifier, times(1)).publish(cancelled);
+    }
+
+    @Test
+    void testOnCheckoutRequested_CompletionFailureAfterCaptureKeepsCapture() {
+        // Arrange
+        runTasksInline();
+        when(orderService.completeOrder(1L)).thenThrow(new IllegalStateException("Database unavailable"));
+
+        // Act
+        checkoutProcessor.onCheckoutRequested(event);
+
+        // Assert
+        verify(orderService, times(1)).captureFunds(1L, "token123");
+        verify(orderService, times(1)).recordCapture(1L);
+        verify(orderService, never()).releaseFunds(anyLong(), anyString());
+        verify(orderService, never()).failOrder(anyLong(), anyString(), anyString());
+        verify(orderStatusNotifier, never()).publish(any());
+    }
+
+    @Test
+    void testOnCheckoutRequested_ValidationFailureCancelsOrder() {
+        // Arrange
+        runTasksInline();
+        OrderStatusDTO cancelled = status(OrderStatus.CANCELLED);
+        doThrow(new InsufficientFundsException("Insufficient funds", "10101"))
+                .when(orderService).reserveFunds(anyLong(), anyString(), anyLong(), anyString());
+        when(orderService.failOrder(1L, "10101", "Insufficient funds")).thenReturn(cancelled);
+
+        // Act
+        checkoutProcessor.onCheckoutRequested(event);
+
+        // Assert
+        verify(orderService, never()).completeOrder(anyLong());
+        verify(orderService, never()).releaseFunds(anyLong(), anyString());
+        verify(orderStatusNotifier, times(1)).publish(cancelled);
+    }
+
+    @Test
+    void testExpireStalePendingOrders_SkipsOrdersInFlight() {
+        // Arrange
+        checkoutProcessor.onCheckoutRequested(event);
+        when(orderService.findStalePendingOrders(any(Date.class))).thenReturn(List.of(order(1L, false), order(2L, false)));
+        when(orderService.failOrder(eq(2L), eq("3410"), anyString())).thenReturn(status(OrderStatus.CANCELLED));
+
+        // Act
+        checkoutProcessor.expireStalePendingOrders();
+
+        // Assert
+        verify(orderService, never()).settleAbandonedReservation(1L);
+        verify(orderService, never()).failOrder(eq(1L), anyString(), anyString());
+        verify(orderService, times(1)).settleAbandonedReservation(2L);
+        verify(orderService, times(1)).failOrder(eq(2L), eq("3410"), anyString());
+    }
+
+    @Test
+    void testExpireStalePendingOrders_CompletesOrderWithRecordedCapture() {
+        // Arrange
+        OrderStatusDTO completed = status(OrderStatus.COMPLETED);
+        when(orderService.findStalePendingOrders(any(Date.class))).thenReturn(List.of(order(1L, true)));
+        when(orderService.completeOrder(1L)).thenReturn(completed);
+
+        // Act
+        checkoutProcessor.expireStalePendingOrders();
+
+        // Assert
+        verify(orderService, never()).settleAbandonedReservation(anyLong());
+        verify(orderService, never()).failOrder(anyLong(), anyString(), anyString());
+        verify(orderStatusNotifier, times(1)).publish(completed);
+    }
+
+    @Test
+    void testExpireStalePendingOrders_CompletesOrderCapturedInCore() {
+        // Arrange
+        OrderStatusDTO completed = status(OrderStatus.COMPLETED);
+        when(orderService.findStalePendingOrders(any(Date.class))).thenReturn(List.of(order(1L, false)));
+        when(orderService.settleAbandonedReservation(1L)).thenReturn(true);
+        when(orderService.completeOrder(1L)).thenReturn(completed);
+
+        // Act
+        checkoutProcessor.expireStalePendingOrders();
+
+        // Assert
+        verify(orderService, never()).failOrder(anyLong(), anyString(), anyString());
+        verify(orderStatusNotifier, times(1)).publish(completed);
+    }
+
+    @Test
+    void testExpireStalePendingOrders_CoreUnavailableKeepsOrderPending() {
+        // Arrange
+        when(orderService.findStalePendingOrders(any(Date.class))).thenReturn(List.of(order(1L, false)));
+        when(orderService.settleAbandonedReservation(1L)).thenThrow(new ServiceCommunicationException("Core service is unavailable", "3500"));
+
+        // Act
+        checkoutProcessor.expireStalePendingOrders();
+
+        // Assert
+        verify(orderService, never()).completeOrder(anyLong());
+        verify(orderService, never()).failOrder(anyLong(), anyString(), anyString());
+        verify(orderStatusNotifier, never()).publish(any());
+    }
+
+    private void runTasksInline() {
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(checkoutExecutor).execute(any(Runnable.class));
+    }
+
+    private static Order order(Long orderId, boolean fundsCaptured) {
+        return Order.builder()
+                .orderId(orderId)
+                .status(OrderStatus.PENDING)
+                .fundsCaptured(fundsCaptured)
+                .build();
+    }
+
+    private static OrderStatusDTO status(OrderStatus orderStatus) {
+        return OrderStatusDTO.builder()
+                .orderId(1L)
+                .orderStatus(orderStatus)
+                .success(true)
+                .build();
+    }
+}
\ No newline at end of file
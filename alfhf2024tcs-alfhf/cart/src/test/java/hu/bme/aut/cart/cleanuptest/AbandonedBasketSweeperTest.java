@@ -0,0 +1,75 @@
+package hu.bme.aut.cart.cleanuptest;
+
+import hu.bme.aut.cart.cleanup.AbandonedBasketSweeper;
+import hu.bme.aut.cart.service.BasketService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AbandonedBasketSweeperTest {
+
+    @Mock
+    private BasketService basketService;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private AbandonedBasketSweeper sweeper;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        sweeper = new AbandonedBasketSweeper(basketService, Duration.ofDays(30), 2, 10, meterRegistry);
+    }
+
+    @Test
+    void testExpireIdleBaskets_DeletesUntilChunkIsNotFull() {
+        // Arrange
+        when(basketService.deleteIdleBaskets(any(Date.class), eq(2))).thenReturn(2, 2, 1);
+
+        // Act
+        sweeper.expireIdleBaskets();
+
+        // Assert
+        verify(basketService, times(3)).deleteIdleBaskets(any(Date.class), eq(2));
+        assertEquals(5, meterRegistry.get("cart.basket.expired").counter().count());
+        assertEquals(1, meterRegistry.get("cart.basket.expiry.duration").timer().count());
+    }
+
+    @Test
+    void testExpireIdleBaskets_StopsAfterMaxChunks() {
+        // Arrange
+        when(basketService.deleteIdleBaskets(any(Date.class), eq(2))).thenReturn(2);
+
+        // Act
+        sweeper.expireIdleBaskets();
+
+        // Assert
+        verify(basketService, times(10)).deleteIdleBaskets(any(Date.class), eq(2));
+        assertEquals(20, meterRegistry.get("cart.basket.expired").counter().count());
+    }
+
+    @Test
+    void testExpireIdleBaskets_FailureKeepsDeletedCount() {
+        // Arrange
+        when(basketService.deleteIdleBaskets(any(Date.class), eq(2)))
+                .thenReturn(2)
+                .thenThrow(new IllegalStateException("Lock wait timeout"));
+
+        // Act
+        sweeper.expireIdleBaskets();
+
+        // Assert
+        assertEquals(2, meterRegistry.get("cart.basket.expired").counter().count());
+    }
+}
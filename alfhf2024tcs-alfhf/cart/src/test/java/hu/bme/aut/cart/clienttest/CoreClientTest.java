@@ -0,0 +1,168 @@
+package hu.bme.aut.cart.clienttest;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import hu.bme.aut.cart.cache.TokenResolution;
+import hu.bme.aut.cart.client.CoreClient;
+import hu.bme.aut.cart.dto.CoreValidationResponseDTO;
+import hu.bme.aut.cart.exception.ServiceCommunicationException;
+import hu.bme.aut.cart.exception.UserTokenException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CoreClientTest {
+
+    @Mock
+    private RestTemplate restTemplate;
+
+    @Spy
+    private Cache<String, TokenResolution> userTokenCache = Caffeine.newBuilder().maximumSize(10).build();
+
+    @Spy
+    private CircuitBreaker circuitBreaker = CircuitBreaker.ofDefaults("core");
+
+    @Spy
+    private Bulkhead bulkhead = Bulkhead.ofDefaults("core");
+
+    @InjectMocks
+    private CoreClient coreClient;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(coreClient, "coreServiceUrl", "http://core");
+    }
+
+    @Test
+    void testGetUserIdFromToken_CachesValidToken() {
+        // Arrange
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("User-ID", "1");
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.GET), any(HttpEntity.class), eq(CoreValidationResponseDTO.class)))
+                .thenReturn(new ResponseEntity<>(new CoreValidationResponseDTO(true, null, null), headers, HttpStatus.OK));
+
+        // Act
+        Long first = coreClient.getUserIdFromToken("token");
+        Long second = coreClient.getUserIdFromToken("token");
+
+        // Assert
+        assertEquals(1L, first);
+        assertEquals(1L, second);
+        verify(restTemplate, times(1)).exchange(anyString(), eq(HttpMethod.GET), any(HttpEntity.class), eq(CoreValidationResponseDTO.class));
+    }
+
+    @Test
+    void testGetUserIdFromToken_CachesRejectedToken() {
+        // Arrange
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.GET), any(HttpEntity.class), eq(CoreValidationResponseDTO.class)))
+                .thenReturn(ResponseEntity.ok(new CoreValidationResponseDTO(false, "10051", "Token expired")));
+
+        // Act & Assert
+        UserTokenException first = assertThrows(UserTokenException.class, () -> coreClient.getUserIdFromToken("token"));
+        UserTokenException second = assertThrows(UserTokenException.class, () -> coreClient.getUserIdFromToken("token"));
+
+        assertEquals("10051", first.getErrorCode());
+        assertEquals("10051", second.getErrorCode());
+        verify(restTemplate, times(1)).exchange(anyString(), eq(HttpMethod.GET), any(HttpEntity.class), eq(CoreValidationResponseDTO.class));
+    }
+
+    @Test
+    void testRevokeToken_ForcesRevalidation() {
+        // Arrange
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("User-ID", "1");
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.GET), any(HttpEntity.class), eq(CoreValidationResponseDTO.class)))
+                .thenReturn(new ResponseEntity<>(new CoreValidationResponseDTO(true, null, null), headers, HttpStatus.OK));
+        coreClient.getUserIdFromToken("token");
+
+        // Act
+        coreClient.revokeToken("token");
+        coreClient.getUserIdFromToken("token");
+
+        // Assert
+        verify(restTemplate, times(2)).exchange(anyString(), eq(HttpMethod.GET), any(HttpEntity.class), eq(CoreValidationResponseDTO.class));
+    }
+
+    @Test
+    void testValidateCard_CircuitOpen() {
+        // Arrange
+        circuitBreaker.transitionToOpenState();
+
+        // Act & Assert
+        ServiceCommunicationException exception = assertThrows(ServiceCommunicationException.class,
+                () -> coreClient.validateCard("token", "card", 10000L));
+        assertEquals("3500", exception.getErrorCode());
+        verifyNoInteractions(restTemplate);
+    }
+
+    @Test
+    void testReserveFunds_RejectionReturnedWithErrorCode() {
+        // Arrange
+        String body = "{\"success\":false,\"errorCode\":\"10101\",\"errorMessage\":\"Insufficient funds\"}";
+        when(restTemplate.exchange(eq("http://core/reservations/card/100.00"), eq(HttpMethod.POST), any(HttpEntity.class), eq(CoreValidationResponseDTO.class)))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.UNAUTHORIZED, "Unauthorized", HttpHeaders.EMPTY,
+                        body.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+
+        // Act
+        CoreValidationResponseDTO result = coreClient.reserveFunds("token", "order-1", "card", 10000L);
+
+        // Assert
+        assertFalse(result.isSuccess());
+        assertEquals("10101", result.getErrorCode());
+    }
+
+    @Test
+    void testGetReservationStatus_SendsInternalSecret() {
+        // Arrange
+        ReflectionTestUtils.setField(coreClient, "internalSecret", "secret");
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Reservation-Status", "CAPTURED");
+        when(restTemplate.exchange(eq("http://core/internal/reservations/order-1"), eq(HttpMethod.GET),
+                argThat((HttpEntity<?> entity) -> "secret".equals(entity.getHeaders().getFirst("X-Internal-Secret"))),
+                eq(CoreValidationResponseDTO.class)))
+                .thenReturn(new ResponseEntity<>(new CoreValidationResponseDTO(true, null, null), headers, HttpStatus.OK));
+
+        // Act
+        Optional<String> status = coreClient.getReservationStatus("order-1");
+
+        // Assert
+        assertEquals(Optional.of("CAPTURED"), status);
+    }
+
+    @Test
+    void testGetReservationStatus_UnknownReservation() {
+        // Arrange
+        String body = "{\"success\":false,\"errorCode\":\"10103\",\"errorMessage\":\"Reservation not found\"}";
+        when(restTemplate.exchange(eq("http://core/internal/reservations/order-1"), eq(HttpMethod.GET), any(HttpEntity.class), eq(CoreValidationResponseDTO.class)))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.UNAUTHORIZED, "Unauthorized", HttpHeaders.EMPTY,
+                        body.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+
+        // Act
+        Optional<String> status = coreClient.getReservationStatus("order-1");
+
+        // Assert
+        assertTrue(status.isEmpty());
+    }
+}
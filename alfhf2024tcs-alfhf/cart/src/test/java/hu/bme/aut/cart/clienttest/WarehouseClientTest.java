@@ -0,0 +1,153 @@
+package hu.bme.aut.cart.clienttest;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import hu.bme.aut.cart.client.WarehouseClient;
+import hu.bme.aut.cart.dto.ProductDTO;
+import hu.bme.aut.cart.exception.ServiceCommunicationException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WarehouseClientTest {
+
+    @Mock
+    private RestTemplate restTemplate;
+
+    private final Cache<Long, ProductDTO> productInfoCache = Caffeine.newBuilder().maximumSize(10).build();
+
+    private final Cache<Long, ProductDTO> lastKnownProductInfoCache = Caffeine.newBuilder().maximumSize(10).build();
+
+    @Spy
+    private CircuitBreaker circuitBreaker = CircuitBreaker.ofDefaults("warehouse");
+
+    @Spy
+    private Bulkhead bulkhead = Bulkhead.ofDefaults("warehouse");
+
+    private WarehouseClient warehouseClient;
+
+    @BeforeEach
+    void setUp() {
+        warehouseClient = new WarehouseClient(restTemplate, productInfoCache, lastKnownProductInfoCache, circuitBreaker, bulkhead);
+        ReflectionTestUtils.setField(warehouseClient, "warehouseServiceUrl", "http://warehouse");
+        ReflectionTestUtils.setField(warehouseClient, "fetchMode", WarehouseClient.FetchMode.PARALLEL);
+        ReflectionTestUtils.setField(warehouseClient, "parallelMaxConcurrency", 2);
+        ReflectionTestUtils.setField(warehouseClient, "parallelDeadline", Duration.ofSeconds(2));
+    }
+
+    @Test
+    void testGetProductDetailsBatch_ParallelMode() {
+        // Arrange
+        when(restTemplate.getForEntity(any(URI.class), eq(ProductDTO.class))).thenAnswer(invocation -> {
+            URI uri = invocation.getArgument(0);
+            long id = Long.parseLong(uri.getPath().substring(uri.getPath().lastIndexOf('/') + 1));
+            return ResponseEntity.ok(ProductDTO.builder().id(id).name("Product " + id).price(BigDecimal.TEN).build());
+        });
+
+        // Act
+        Map<Long, ProductDTO> result = warehouseClient.getProductDetailsBatch(List.of(3L, 1L, 2L));
+
+        // Assert
+        assertEquals(List.of(3L, 1L, 2L), List.copyOf(result.keySet()));
+        assertEquals("Product 1", result.get(1L).getName());
+        verify(restTemplate, times(3)).getForEntity(any(URI.class), eq(ProductDTO.class));
+    }
+
+    @Test
+    void testGetProductDetailsBatch_ServedFromCache() {
+        // Arrange
+        productInfoCache.put(1L, ProductDTO.builder().id(1L).name("Product 1").price(BigDecimal.TEN).build());
+
+        // Act
+        Map<Long, ProductDTO> result = warehouseClient.getProductDetailsBatch(List.of(1L));
+
+        // Assert
+        assertEquals("Product 1", result.get(1L).getName());
+        verifyNoInteractions(restTemplate);
+    }
+
+    @Test
+    void testGetProductDetailsBatch_ParallelModeDeadlineExceeded() {
+        // Arrange
+        ReflectionTestUtils.setField(warehouseClient, "parallelDeadline", Duration.ofMillis(100));
+        when(restTemplate.getForEntity(any(URI.class), eq(ProductDTO.class))).thenAnswer(invocation -> {
+            Thread.sleep(1000);
+            return ResponseEntity.ok(new ProductDTO());
+        });
+
+        // Act & Assert
+        assertThrows(ServiceCommunicationException.class,
+                () -> warehouseClient.getProductDetailsBatch(List.of(1L, 2L)));
+    }
+
+    @Test
+    void testGetProductDetails_FailsFastDespiteLastKnownEntry() {
+        // Arrange
+        lastKnownProductInfoCache.put(1L, ProductDTO.builder().id(1L).name("Product 1").price(BigDecimal.TEN).build());
+        when(restTemplate.getForEntity(any(URI.class), eq(ProductDTO.class)))
+                .thenThrow(new ResourceAccessException("Connection refused"));
+
+        // Act & Assert
+        ServiceCommunicationException exception = assertThrows(ServiceCommunicationException.class,
+                () -> warehouseClient.getProductDetails(1L));
+        assertEquals("3500", exception.getErrorCode());
+    }
+
+    @Test
+    void testGetProductDetailsBatch_CircuitOpenFailsFastDespiteLastKnownEntry() {
+        // Arrange
+        lastKnownProductInfoCache.put(1L, ProductDTO.builder().id(1L).name("Product 1").price(BigDecimal.TEN).build());
+        circuitBreaker.transitionToOpenState();
+
+        // Act & Assert
+        assertThrows(ServiceCommunicationException.class, () -> warehouseClient.getProductDetailsBatch(List.of(1L)));
+        verifyNoInteractions(restTemplate);
+    }
+
+    @Test
+    void testGetProductDetailsBatchForDisplay_CircuitOpenServesStaleEntries() {
+        // Arrange
+        lastKnownProductInfoCache.put(1L, ProductDTO.builder().id(1L).name("Product 1").price(BigDecimal.TEN).build());
+        circuitBreaker.transitionToOpenState();
+
+        // Act
+        Map<Long, ProductDTO> result = warehouseClient.getProductDetailsBatchForDisplay(List.of(1L));
+
+        // Assert
+        assertEquals("Product 1", result.get(1L).getName());
+        verifyNoInteractions(restTemplate);
+    }
+
+    @Test
+    void testGetProductDetailsBatchForDisplay_CircuitOpenWithoutStaleEntry() {
+        // Arrange
+        lastKnownProductInfoCache.put(1L, ProductDTO.builder().id(1L).name("Product 1").price(BigDecimal.TEN).build());
+        circuitBreaker.transitionToOpenState();
+
+        // Act & Assert
+        assertThrows(ServiceCommunicationException.class,
+                () -> warehouseClient.getProductDetailsBatchForDisplay(List.of(1L, 2L)));
+        verifyNoInteractions(restTemplate);
+    }
+}
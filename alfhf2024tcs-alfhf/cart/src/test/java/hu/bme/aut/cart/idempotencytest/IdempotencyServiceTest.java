@@ -0,0 +1,107 @@
+package hu.bme.aut.cart.idempotencytest;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import hu.bme.aut.cart.exception.IdempotentRequestInProgressException;
+import hu.bme.aut.cart.idempotency.IdempotencyService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyServiceTest {
+
+    private IdempotencyService idempotencyService;
+    private AtomicInteger calls;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new IdempotencyService(
+                Caffeine.newBuilder().maximumSize(100).build(), new SimpleMeterRegistry());
+        calls = new AtomicInteger();
+    }
+
+    @Test
+    void testExecute_ReplaysStoredResponse() {
+        // Act
+        ResponseEntity<String> first = idempotencyService.execute("key-1", "token123", "PUT /cart/basket/1/2", this::okResponse);
+        ResponseEntity<String> second = idempotencyService.execute("key-1", "token123", "PUT /cart/basket/1/2", this::okResponse);
+
+        // Assert
+        assertEquals(1, calls.get());
+        assertEquals("call 1", first.getBody());
+        assertEquals("call 1", second.getBody());
+        assertEquals(HttpStatus.OK, second.getStatusCode());
+        assertEquals("true", second.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertNull(first.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+    }
+
+    @Test
+    void testExecute_KeyScopedToUserAndOperation() {
+        // Act
+        idempotencyService.execute("key-1", "token123", "PUT /cart/basket/1/2", this::okResponse);
+        idempotencyService.execute("key-1", "token456", "PUT /cart/basket/1/2", this::okResponse);
+        idempotencyService.execute("key-1", "token123", "DELETE /cart/basket/1/2", this::okResponse);
+
+        // Assert
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void testExecute_WithoutKeyAlwaysRuns() {
+        // Act
+        idempotencyService.execute(null, "token123", "POST /cart/orders/card123", this::okResponse);
+        idempotencyService.execute(null, "token123", "POST /cart/orders/card123", this::okResponse);
+
+        // Assert
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void testExecute_ServerErrorNotStored() {
+        // Act
+        idempotencyService.execute("key-1", "token123", "POST /cart/orders/card123", () -> {
+            calls.incrementAndGet();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("failed");
+        });
+        ResponseEntity<String> retry = idempotencyService.execute("key-1", "token123", "POST /cart/orders/card123", this::okResponse);
+
+        // Assert
+        assertEquals(2, calls.get());
+        assertEquals("call 2", retry.getBody());
+    }
+
+    @Test
+    void testExecute_ExceptionNotStored() {
+        // Act
+        assertThrows(IllegalStateException.class, () ->
+                idempotencyService.execute("key-1", "token123", "POST /cart/orders/card123", () -> {
+                    calls.incrementAndGet();
+                    throw new IllegalStateException("core unavailable");
+                }));
+        ResponseEntity<String> retry = idempotencyService.execute("key-1", "token123", "POST /cart/orders/card123", this::okResponse);
+
+        // Assert
+        assertEquals(2, calls.get());
+        assertEquals("call 2", retry.getBody());
+    }
+
+    @Test
+    void testExecute_RepeatWhileInProgressRejected() {
+        // Act & Assert
+        IdempotentRequestInProgressException exception = assertThrows(IdempotentRequestInProgressException.class, () ->
+                idempotencyService.execute("key-1", "token123", "POST /cart/orders/card123", () ->
+                        idempotencyService.execute("key-1", "token123", "POST /cart/orders/card123", this::okResponse)));
+
+        assertEquals("3411", exception.getErrorCode());
+        assertEquals(0, calls.get());
+    }
+
+    private ResponseEntity<String> okResponse() {
+        return ResponseEntity.ok("call " + calls.incrementAndGet());
+    }
+}
@@ -0,0 +1,51 @@
+package hu.bme.aut.cart.modeltest;
+
+import hu.bme.aut.cart.model.Money;
+import hu.bme.aut.cart.model.entity.Basket;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    @Test
+    void testToMinor_RoundsHalfUp() {
+        // Act & Assert
+        assertEquals(1999L, Money.toMinor(new BigDecimal("19.99")));
+        assertEquals(2020L, Money.toMinor(BigDecimal.valueOf(20.2)));
+        assertEquals(1000L, Money.toMinor(new BigDecimal("9.995")));
+    }
+
+    @Test
+    void testToMajor() {
+        // Act & Assert
+        assertEquals(new BigDecimal("999.99"), Money.toMajor(99999L));
+        assertEquals("0.00", Money.toMajor(0L).toPlainString());
+    }
+
+    @Test
+    void testTimes_Overflow() {
+        // Act & Assert
+        assertThrows(ArithmeticException.class, () -> Money.times(Long.MAX_VALUE, 2));
+    }
+
+    @Test
+    void testBasketSubtotal_NoDriftAfterManyCycles() {
+        // Arrange
+        Basket basket = Basket.builder().build();
+        long price = Money.toMinor(new BigDecimal("0.10"));
+
+        // Act
+        for (int i = 0; i < 10_000; i++) {
+            basket.addProduct(1L, price, 3);
+            basket.removeProduct(1L, price, 2);
+        }
+        basket.setProductQuantity(1L, price, 7);
+
+        // Assert
+        assertEquals(70L, basket.getSubTotalMinor());
+        assertEquals(new BigDecimal("0.70"), Money.toMajor(basket.getSubTotalMinor()));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,111 @@
+package hu.bme.aut.cart.repositorytest;
+
+import hu.bme.aut.cart.model.entity.Basket;
+import hu.bme.aut.cart.model.enums.BasketStatus;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Counts the JDBC statements a basket mutation costs on an in-memory database.
+ * With the former element collection, changing one line of a basket with ten lines deleted and
+ * re-inserted the whole collection; with line entities only the changed line and the basket are written.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class BasketLineStatementCountTest {
+
+    private static final int LINES = 10;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Long basketId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Basket basket = Basket.builder()
+                .userId(1L)
+                .basketStatus(BasketStatus.ACTIVE)
+                .build();
+        for (long productId = 1; productId <= LINES; productId++) {
+            basket.addProduct(productId, 1000L, 1);
+        }
+        basketId = entityManager.persistAndFlush(basket).getBasketId();
+        entityManager.clear();
+    }
+
+    @Test
+    void testUpdateOneLine_WritesOnlyThatLine() {
+        // Arrange
+        Basket basket = loadBasket();
+
+        // Act
+        basket.addProduct(1L, 1000L, 2);
+        entityManager.flush();
+
+        // Assert
+        assertEquals(2, statistics.getEntityUpdateCount());
+        assertEquals(0, statistics.getEntityInsertCount());
+        assertEquals(0, statistics.getEntityDeleteCount());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void testRemoveOneLine_DeletesOnlyThatLine() {
+        // Arrange
+        Basket basket = loadBasket();
+
+        // Act
+        basket.removeProduct(1L, 1000L, 1);
+        entityManager.flush();
+
+        // Assert
+        assertEquals(1, statistics.getEntityUpdateCount());
+        assertEquals(1, statistics.getEntityDeleteCount());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void testAddManyLines_InsertsInOneBatch() {
+        // Arrange
+        Basket basket = loadBasket();
+
+        // Act
+        for (long productId = LINES + 1; productId <= LINES + 5; productId++) {
+            basket.addProduct(productId, 1000L, 1);
+        }
+        entityManager.flush();
+
+        // Assert
+        assertEquals(5, statistics.getEntityInsertCount());
+        assertEquals(1, statistics.getEntityUpdateCount());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    /**
+     * Loads the basket with its lines and resets the statistics, so only the writes of the mutation are counted.
+     */
+    private Basket loadBasket() {
+        Basket basket = entityManager.find(Basket.class, basketId);
+        assertEquals(LINES, basket.getLines().size());
+        statistics.clear();
+        return basket;
+    }
+}
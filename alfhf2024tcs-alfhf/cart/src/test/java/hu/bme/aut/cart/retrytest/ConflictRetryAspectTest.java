@@ -0,0 +1,97 @@
+package hu.bme.aut.cart.retrytest;
+
+import hu.bme.aut.cart.retry.ConflictRetryAspect;
+import hu.bme.aut.cart.retry.RetryOnConflict;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.lang.annotation.Annotation;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ConflictRetryAspectTest {
+
+    @Mock
+    private ProceedingJoinPoint joinPoint;
+
+    @Mock
+    private Signature signature;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ConflictRetryAspect aspect;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        aspect = new ConflictRetryAspect(meterRegistry);
+    }
+
+    @Test
+    void testRetry_SucceedsAfterConflict() throws Throwable {
+        // Arrange
+        when(joinPoint.getSignature()).thenReturn(signature);
+        when(joinPoint.proceed())
+                .thenThrow(new OptimisticLockingFailureException("stale basket"))
+                .thenThrow(new DataIntegrityViolationException("duplicate active basket"))
+                .thenReturn("ok");
+
+        // Act
+        Object result = aspect.retry(joinPoint, retryOnConflict(3));
+
+        // Assert
+        assertEquals("ok", result);
+        verify(joinPoint, times(3)).proceed();
+        assertEquals(2.0, meterRegistry.get("cart.conflict.retries").counter().count());
+    }
+
+    @Test
+    void testRetry_GivesUpAfterMaxAttempts() throws Throwable {
+        // Arrange
+        when(joinPoint.getSignature()).thenReturn(signature);
+        when(joinPoint.proceed()).thenThrow(new OptimisticLockingFailureException("stale basket"));
+
+        // Act & Assert
+        assertThrows(OptimisticLockingFailureException.class, () -> aspect.retry(joinPoint, retryOnConflict(2)));
+        verify(joinPoint, times(2)).proceed();
+        assertEquals(1.0, meterRegistry.get("cart.conflict.exhausted").counter().count());
+    }
+
+    @Test
+    void testRetry_OtherExceptionsAreNotRetried() throws Throwable {
+        // Arrange
+        when(joinPoint.proceed()).thenThrow(new IllegalArgumentException("Product not found or insufficient quantity."));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> aspect.retry(joinPoint, retryOnConflict(3)));
+        verify(joinPoint, times(1)).proceed();
+    }
+
+    private static RetryOnConflict retryOnConflict(int maxAttempts) {
+        return new RetryOnConflict() {
+            @Override
+            public int maxAttempts() {
+                return maxAttempts;
+            }
+
+            @Override
+            public long backoffMillis() {
+                return 0;
+            }
+
+            @Override
+            public Class<? extends Annotation> annotationType() {
+                return RetryOnConflict.class;
+            }
+        };
+    }
+}
\ No newline at end of file
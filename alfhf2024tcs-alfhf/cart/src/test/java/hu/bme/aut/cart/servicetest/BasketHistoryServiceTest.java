@@ -0,0 +1,184 @@
+package hu.bme.aut.cart.servicetest;
+
+import hu.bme.aut.cart.dto.BasketHistoryDTO;
+import hu.bme.aut.cart.exception.BasketNotFoundException;
+import hu.bme.aut.cart.model.entity.Basket;
+import hu.bme.aut.cart.model.entity.BasketEvent;
+import hu.bme.aut.cart.model.entity.BasketSnapshot;
+import hu.bme.aut.cart.model.enums.BasketEventType;
+import hu.bme.aut.cart.model.enums.BasketStatus;
+import hu.bme.aut.cart.repository.BasketEventRepository;
+import hu.bme.aut.cart.repository.BasketSnapshotRepository;
+import hu.bme.aut.cart.service.BasketHistoryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BasketHistoryServiceTest {
+
+    @Mock
+    private BasketEventRepository basketEventRepository;
+
+    @Mock
+    private BasketSnapshotRepository basketSnapshotRepository;
+
+    private BasketHistoryService basketHistoryService;
+    private Basket basket;
+
+    @BeforeEach
+    void setUp() {
+        basketHistoryService = new BasketHistoryService(basketEventRepository, basketSnapshotRepository, 3);
+        basket = Basket.builder()
+                .basketId(1L)
+                .userId(1L)
+                .basketStatus(BasketStatus.ACTIVE)
+                .subTotalMinor(0L)
+                .build();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRecordLineChanges_AppendsOneEventPerChangedProduct() {
+        // Arrange
+        basket.addProduct(1L, 10000L, 2);
+        basket.addProduct(3L, 500L, 1);
+        Map<Long, Integer> before = Map.of(1L, 2, 2L, 4);
+
+        // Act
+        basketHistoryService.recordLineChanges(basket, before);
+
+        // Assert
+        ArgumentCaptor<List<BasketEvent>> captor = ArgumentCaptor.forClass(List.class);
+        verify(basketEventRepository, times(1)).saveAll(captor.capture());
+        List<BasketEvent> events = captor.getValue();
+        assertEquals(2, events.size());
+        assertEquals(BasketEventType.ITEM_REMOVED, events.get(0).getEventType());
+        assertEquals(2L, events.get(0).getProductId());
+        assertEquals(4, events.get(0).getQuantity());
+        assertEquals(1L, events.get(0).getSequenceNumber());
+        assertEquals(BasketEventType.ITEM_ADDED, events.get(1).getEventType());
+        assertEquals(3L, events.get(1).getProductId());
+        assertEquals(1, events.get(1).getQuantity());
+        assertEquals(2L, events.get(1).getSequenceNumber());
+        assertEquals(2L, basket.getEventSequence());
+        verify(basketSnapshotRepository, never()).save(any(BasketSnapshot.class));
+    }
+
+    @Test
+    void testRecordLineChanges_NothingChanged() {
+        // Arrange
+        basket.addProduct(1L, 10000L, 2);
+
+        // Act
+        basketHistoryService.recordLineChanges(basket, Map.of(1L, 2));
+
+        // Assert
+        verify(basketEventRepository, never()).saveAll(anyList());
+        assertEquals(0L, basket.getEventSequence());
+    }
+
+    @Test
+    void testRecordReopen_StartsFromCheckedOutQuantities() {
+        // Arrange
+        basket.addProduct(1L, 10000L, 2);
+
+        // Act
+        basketHistoryService.recordReopen(basket, Map.of(1L, 2));
+
+        // Assert
+        ArgumentCaptor<BasketSnapshot> captor = ArgumentCaptor.forClass(BasketSnapshot.class);
+        verify(basketSnapshotRepository, times(1)).save(captor.capture());
+        BasketSnapshot snapshot = captor.getValue();
+        assertEquals(0L, snapshot.getSequenceNumber());
+        assertEquals(BasketStatus.ACTIVE, snapshot.getBasketStatus());
+        assertEquals(Map.of(1L, 2), snapshot.getProducts());
+        assertEquals(20000L, snapshot.getSubTotalMinor());
+        verify(basketEventRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void testRecordCheckout_TakesSnapshotAtInterval() {
+        // Arrange
+        basket.addProduct(1L, 10000L, 2);
+        basket.setBasketStatus(BasketStatus.CHECKED_OUT);
+        basket.setEventSequence(2L);
+
+        // Act
+        basketHistoryService.recordCheckout(basket);
+
+        // Assert
+        ArgumentCaptor<BasketSnapshot> captor = ArgumentCaptor.forClass(BasketSnapshot.class);
+        verify(basketSnapshotRepository, times(1)).save(captor.capture());
+        BasketSnapshot snapshot = captor.getValue();
+        assertEquals(3L, snapshot.getSequenceNumber());
+        assertEquals(BasketStatus.CHECKED_OUT, snapshot.getBasketStatus());
+        assertEquals(Map.of(1L, 2), snapshot.getProducts());
+        assertEquals(20000L, snapshot.getSubTotalMinor());
+        assertEquals(3L, basket.getEventSequence());
+    }
+
+    @Test
+    void testRebuildBasket_FromSnapshotAndTail() {
+        // Arrange
+        BasketSnapshot snapshot = BasketSnapshot.builder()
+                .basketId(1L)
+                .sequenceNumber(3L)
+                .basketStatus(BasketStatus.ACTIVE)
+                .subTotalMinor(25000L)
+                .products(Map.of(1L, 2, 2L, 1))
+                .createdAt(new Date())
+                .build();
+        when(basketSnapshotRepository.findFirstByBasketIdOrderBySequenceNumberDesc(1L)).thenReturn(Optional.of(snapshot));
+        when(basketEventRepository.findByBasketIdAndSequenceNumberGreaterThanOrderBySequenceNumber(1L, 3L)).thenReturn(List.of(
+                event(4L, BasketEventType.ITEM_REMOVED, 2L, 1, 20000L),
+                event(5L, BasketEventType.ITEM_ADDED, 1L, 1, 30000L),
+                event(6L, BasketEventType.CHECKED_OUT, null, null, 30000L)));
+
+        // Act
+        BasketHistoryDTO result = basketHistoryService.rebuildBasket(1L);
+
+        // Assert
+        assertEquals(6L, result.getSequenceNumber());
+        assertEquals(BasketStatus.CHECKED_OUT, result.getBasketStatus());
+        assertEquals(Map.of(1L, 3), result.getProducts());
+        assertEquals(new BigDecimal("300.00"), result.getSubtotalAmount());
+    }
+
+    @Test
+    void testRebuildBasket_NoHistory() {
+        // Arrange
+        when(basketSnapshotRepository.findFirstByBasketIdOrderBySequenceNumberDesc(anyLong())).thenReturn(Optional.empty());
+        when(basketEventRepository.findByBasketIdAndSequenceNumberGreaterThanOrderBySequenceNumber(anyLong(), anyLong())).thenReturn(List.of());
+
+        // Act & Assert
+        BasketNotFoundException exception = assertThrows(BasketNotFoundException.class, () -> basketHistoryService.rebuildBasket(1L));
+        assertEquals("3405", exception.getErrorCode());
+    }
+
+    private BasketEvent event(long sequenceNumber, BasketEventType eventType, Long productId, Integer quantity, long subTotalMinor) {
+        return BasketEvent.builder()
+                .basketId(1L)
+                .sequenceNumber(sequenceNumber)
+                .eventType(eventType)
+                .userId(1L)
+                .productId(productId)
+                .quantity(quantity)
+                .subTotalMinor(subTotalMinor)
+                .occurredAt(new Date())
+                .build();
+    }
+}
@@ -3,12 +3,17 @@ package hu.bme.aut.cart.servicetest;
 import hu.bme.aut.cart.client.CoreClient;
 import hu.bme.aut.cart.client.WarehouseClient;
 import hu.bme.aut.cart.dto.BasketDTO;
+import hu.bme.aut.cart.dto.BasketOperationDTO;
 import hu.bme.aut.cart.dto.ProductDTO;
 import hu.bme.aut.cart.exception.BasketNotFoundException;
 import hu.bme.aut.cart.model.entity.Basket;
+import hu.bme.aut.cart.model.enums.BasketOperationType;
 import hu.bme.aut.cart.model.enums.BasketStatus;
 import hu.bme.aut.cart.repository.BasketRepository;
+import hu.bme.aut.cart.service.BasketHistoryService;
 import hu.bme.aut.cart.service.BasketService;
+import hu.bme.aut.cart.transaction.TransactionRunner;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -16,11 +21,15 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.modelmapper.ModelMapper;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.math.BigDecimal;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
@@ -40,6 +49,14 @@ class BasketServiceTest {
     @Mock
     private CoreClient coreClient;
 
+    @Mock
+    private BasketHistoryService basketHistoryService;
+
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    @Spy
+    private TransactionRunner transactionRunner = new TransactionRunner(transactionManager, new SimpleMeterRegistry());
+
     @InjectMocks
     private BasketService basketService;
 
@@ -53,20 +70,19 @@ class BasketServiceTest {
                 .basketId(1L)
                 .userId(1L)
                 .basketStatus(BasketStatus.ACTIVE)
-                .subTotalAmount(0.0)
-                .products(new HashMap<>())
+                .subTotalMinor(0L)
                 .build();
 
         productDTO = ProductDTO.builder()
                 .id(1L)
                 .name("Product 1")
-                .price(100.0)
+                .price(new BigDecimal("100.00"))
                 .quantity(10)
                 .build();
         basketDTO = BasketDTO.builder()
                 .basketId(1L)
                 .basketStatus(BasketStatus.ACTIVE)
-                .subtotalAmount(0.0)
+                .subtotalAmount(BigDecimal.ZERO)
                 .products(new ArrayList<>())
                 .build();
     }
@@ -78,6 +94,7 @@ class BasketServiceTest {
         when(basketRepository.findByUserIdAndBasketStatus(anyLong(), any(BasketStatus.class)))
                 .thenReturn(Optional.of(basket));
         when(warehouseClient.getProductDetails(anyLong())).thenReturn(productDTO);
+        when(warehouseClient.getProductDetailsBatchForDisplay(anyCollection())).thenReturn(Map.of(1L, productDTO));
         when(basketRepository.save(any(Basket.class))).thenReturn(basket);
         when(modelMapper.map(any(Basket.class), eq(BasketDTO.class))).thenReturn(new BasketDTO());
 
@@ -89,14 +106,39 @@ class BasketServiceTest {
         verify(basketRepository, times(1)).save(any(Basket.class));
     }
 
+    @Test
+    void testAddToBasket_RemoteCallsOutsideTransaction() {
+        // Arrange
+        when(coreClient.getUserIdFromToken(anyString())).thenReturn(1L);
+        when(basketRepository.findByUserIdAndBasketStatus(anyLong(), any(BasketStatus.class)))
+                .thenReturn(Optional.of(basket));
+        when(warehouseClient.getProductDetails(anyLong())).thenReturn(productDTO);
+        when(warehouseClient.getProductDetailsBatchForDisplay(anyCollection())).thenReturn(Map.of(1L, productDTO));
+        when(basketRepository.save(any(Basket.class))).thenReturn(basket);
+        when(modelMapper.map(any(Basket.class), eq(BasketDTO.class))).thenReturn(new BasketDTO());
+
+        // Act
+        basketService.addToBasket("token", 1L, 5);
+
+        // Assert
+        InOrder inOrder = inOrder(coreClient, warehouseClient, transactionManager, basketRepository);
+        inOrder.verify(coreClient).getUserIdFromToken("token");
+        inOrder.verify(warehouseClient).getProductDetails(1L);
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(basketRepository).save(basket);
+        inOrder.verify(transactionManager).commit(any());
+        inOrder.verify(warehouseClient).getProductDetailsBatchForDisplay(anyCollection());
+    }
+
     @Test
     void testRemoveFromBasket() {
         // Arrange
-        basket.addProduct(1L, 100.0, 10);
+        basket.addProduct(1L, 10000L, 10);
         when(coreClient.getUserIdFromToken(anyString())).thenReturn(1L);
         when(basketRepository.findByUserIdAndBasketStatus(anyLong(), any(BasketStatus.class)))
                 .thenReturn(Optional.of(basket));
         when(warehouseClient.getProductDetails(anyLong())).thenReturn(productDTO);
+        when(warehouseClient.getProductDetailsBatchForDisplay(anyCollection())).thenReturn(Map.of(1L, productDTO));
         when(basketRepository.save(any(Basket.class))).thenReturn(basket);
         when(modelMapper.map(any(Basket.class), eq(BasketDTO.class))).thenReturn(new BasketDTO());
 
@@ -108,12 +150,54 @@ class BasketServiceTest {
         verify(basketRepository, times(1)).save(any(Basket.class));
     }
 
+    @Test
+    void testApplyOperations() {
+        // Arrange
+        basket.addProduct(1L, 10000L, 4);
+        ProductDTO secondProduct = productDTO.toBuilder().id(2L).name("Product 2").price(new BigDecimal("50.00")).build();
+        when(coreClient.getUserIdFromToken(anyString())).thenReturn(1L);
+        when(basketRepository.findByUserIdAndBasketStatus(anyLong(), any(BasketStatus.class)))
+                .thenReturn(Optional.of(basket));
+        when(warehouseClient.getProductDetailsBatch(anyCollection())).thenReturn(Map.of(1L, productDTO, 2L, secondProduct));
+        when(basketRepository.save(any(Basket.class))).thenReturn(basket);
+        when(modelMapper.map(any(Basket.class), eq(BasketDTO.class))).thenReturn(new BasketDTO());
+        List<BasketOperationDTO> operations = List.of(
+                new BasketOperationDTO(BasketOperationType.ADD, 2L, 3),
+                new BasketOperationDTO(BasketOperationType.REMOVE, 1L, 1),
+                new BasketOperationDTO(BasketOperationType.SET, 2L, 1));
+
+        // Act
+        BasketDTO result = basketService.applyOperations("token", operations);
+
+        // Assert
+        assertEquals(2, result.getProducts().size());
+        assertEquals(Map.of(1L, 3, 2L, 1), basket.getProducts());
+        assertEquals(35000L, basket.getSubTotalMinor());
+        verify(coreClient, times(1)).getUserIdFromToken(anyString());
+        verify(warehouseClient, times(1)).getProductDetailsBatch(anyCollection());
+        verify(warehouseClient, never()).getProductDetails(anyLong());
+        verify(basketRepository, times(1)).save(any(Basket.class));
+        verify(basketHistoryService, times(1)).recordLineChanges(basket, Map.of(1L, 4));
+    }
+
+    @Test
+    void testApplyOperations_InvalidOperation() {
+        // Arrange
+        List<BasketOperationDTO> operations = List.of(
+                new BasketOperationDTO(BasketOperationType.ADD, 1L, 2),
+                new BasketOperationDTO(BasketOperationType.REMOVE, 1L, 0));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> basketService.applyOperations("token", operations));
+        verifyNoInteractions(coreClient, warehouseClient);
+        verify(basketRepository, never()).save(any(Basket.class));
+    }
+
     @Test
     void testGetBasketById() {
         // Arrange
         when(basketRepository.findById(anyLong())).thenReturn(Optional.of(basket));
         when(modelMapper.map(any(Basket.class), eq(BasketDTO.class))).thenReturn(basketDTO);
-        when(basketRepository.save(any(Basket.class))).thenReturn(basket);
 
         // Act
         BasketDTO result = basketService.getBasketById(1L);
@@ -124,20 +208,120 @@ class BasketServiceTest {
         verify(basketRepository, times(1)).findById(anyLong());
         verify(modelMapper, times(1)).map(any(Basket.class), eq(BasketDTO.class));
         verify(warehouseClient, times(basket.getProducts().size())).getProductDetails(anyLong());
+        verify(basketRepository, never()).save(any(Basket.class));
     }
+
     @Test
-    void testSaveAndConvertBasket() {
+    void testGetBasketById_FetchesAllProductsInOneBatch() {
         // Arrange
-        when(basketRepository.save(any(Basket.class))).thenReturn(basket);
+        basket.addProduct(1L, 10000L, 2);
+        basket.addProduct(2L, 5000L, 3);
+        ProductDTO secondProduct = productDTO.toBuilder().id(2L).name("Product 2").price(new BigDecimal("50.00")).build();
+        when(basketRepository.findById(anyLong())).thenReturn(Optional.of(basket));
+        when(warehouseClient.getProductDetailsBatchForDisplay(anyCollection())).thenReturn(Map.of(1L, productDTO, 2L, secondProduct));
         when(modelMapper.map(any(Basket.class), eq(BasketDTO.class))).thenReturn(basketDTO);
 
         // Act
-        BasketDTO result = basketService.saveAndConvertBasket(basket);
-        
+        BasketDTO result = basketService.getBasketById(1L);
+
         // Assert
-        assertNotNull(result);
-        verify(basketRepository, times(1)).save(any(Basket.class));
-        verify(modelMapper, times(1)).map(any(Basket.class), eq(BasketDTO.class));
+        assertEquals(2, result.getProducts().size());
+        assertTrue(result.getProducts().stream().anyMatch(p -> p.getId().equals(2L) && p.getQuantity() == 3));
+        assertEquals(10, productDTO.getQuantity());
+        verify(warehouseClient, times(1)).getProductDetailsBatchForDisplay(anyCollection());
+        verify(warehouseClient, never()).getProductDetails(anyLong());
+    }
+
+    @Test
+    void testGetBasketByUser() {
+        // Arrange
+        when(coreClient.getUserIdFromToken(anyString())).thenReturn(1L);
+        when(basketRepository.findByUserIdAndBasketStatus(anyLong(), any(BasketStatus.class)))
+                .thenReturn(Optional.of(basket));
+        when(modelMapper.map(any(Basket.class), eq(BasketDTO.class))).thenReturn(basketDTO);
+
+        // Act
+        BasketDTO result = basketService.getBasketByUser("token");
+
+        // Assert
+        assertEquals(1L, result.getBasketId());
+        verify(basketRepository, never()).save(any(Basket.class));
+    }
+
+    @Test
+    void testGetBasketByUser_NoActiveBasket() {
+        // Arrange
+        when(coreClient.getUserIdFromToken(anyString())).thenReturn(1L);
+        when(basketRepository.findByUserIdAndBasketStatus(anyLong(), any(BasketStatus.class)))
+                .thenReturn(Optional.empty());
+
+        // Act
+        BasketDTO result = basketService.getBasketByUser("token");
+
+        // Assert
+        assertTrue(result.isSuccess());
+        assertNull(result.getBasketId());
+        assertEquals(BasketStatus.ACTIVE, result.getBasketStatus());
+        assertEquals(0, BigDecimal.ZERO.compareTo(result.getSubtotalAmount()));
+        assertTrue(result.getProducts().isEmpty());
+        verify(basketRepository, never()).save(any(Basket.class));
+        verifyNoInteractions(warehouseClient);
+    }
+
+    @Test
+    void testFindActiveBasket_NotFound() {
+        // Arrange
+        when(basketRepository.findByUserIdAndBasketStatus(anyLong(), any(BasketStatus.class)))
+                .thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(BasketNotFoundException.class, () -> basketService.findActiveBasket(1L));
+    }
+
+    @Test
+    void testConvertToBasketDTOs_FetchesAllProductsInOneBatch() {
+        // Arrange
+        basket.addProduct(1L, 10000L, 2);
+        Basket otherBasket = Basket.builder().basketId(2L).userId(1L).build();
+        otherBasket.addProduct(1L, 10000L, 1);
+        otherBasket.addProduct(2L, 10000L, 4);
+        ProductDTO secondProduct = productDTO.toBuilder().id(2L).name("Product 2").build();
+        when(warehouseClient.getProductDetailsBatchForDisplay(anyCollection())).thenReturn(Map.of(1L, productDTO, 2L, secondProduct));
+        when(modelMapper.map(any(Basket.class), eq(BasketDTO.class))).thenAnswer(invocation -> new BasketDTO());
+
+        // Act
+        Map<Long, BasketDTO> result = basketService.convertToBasketDTOs(List.of(basket, otherBasket));
+
+        // Assert
+        assertEquals(List.of(1L, 2L), new ArrayList<>(result.keySet()));
+        assertEquals(1, result.get(1L).getProducts().size());
+        assertEquals(2, result.get(2L).getProducts().size());
+        verify(warehouseClient, times(1)).getProductDetailsBatchForDisplay(Set.of(1L, 2L));
+    }
+
+    @Test
+    void testReopenBasket() {
+        // Arrange
+        basket.addProduct(1L, 10000L, 2);
+        basket.setBasketStatus(BasketStatus.CHECKED_OUT);
+        when(basketRepository.findByUserIdAndBasketStatus(anyLong(), any(BasketStatus.class)))
+                .thenReturn(Optional.empty());
+        when(basketRepository.save(any(Basket.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        basketService.reopenBasket(basket);
+
+        // Assert
+        ArgumentCaptor<Basket> captor = ArgumentCaptor.forClass(Basket.class);
+        verify(basketRepository).save(captor.capture());
+        Basket reopened = captor.getValue();
+        assertEquals(BasketStatus.ACTIVE, reopened.getBasketStatus());
+        assertEquals(Map.of(1L, 2), reopened.getProducts());
+        assertEquals(20000L, reopened.getSubTotalMinor());
+        assertSame(reopened, reopened.getLines().get(1L).getBasket());
+        assertEquals(2, basket.getLines().get(1L).getQuantity());
+        verify(basketHistoryService, times(1)).recordReopen(reopened, Map.of(1L, 2));
+        verify(basketHistoryService, never()).recordLineChanges(any(Basket.class), anyMap());
     }
 
     @Test
@@ -171,4 +355,55 @@ class BasketServiceTest {
         assertThrows(BasketNotFoundException.class, () -> basketService.findBasketById(1L));
     }
 
+    @Test
+    void testDeleteIdleBaskets() {
+        // Arrange
+        Date cutoff = new Date();
+        when(basketRepository.lockIdleActiveBasketIds(cutoff, 2)).thenReturn(List.of(1L, 2L));
+        when(basketRepository.deleteProductsByBasketIdIn(List.of(1L, 2L))).thenReturn(3);
+        when(basketRepository.deleteByBasketIdIn(List.of(1L, 2L))).thenReturn(2);
+
+        // Act
+        int deleted = basketService.deleteIdleBaskets(cutoff, 2);
+
+        // Assert
+        assertEquals(2, deleted);
+        InOrder inOrder = inOrder(basketRepository);
+        inOrder.verify(basketRepository).deleteProductsByBasketIdIn(List.of(1L, 2L));
+        inOrder.verify(basketRepository).deleteByBasketIdIn(List.of(1L, 2L));
+    }
+
+    @Test
+    void testDeleteIdleBaskets_NothingIdle() {
+        // Arrange
+        when(basketRepository.lockIdleActiveBasketIds(any(Date.class), anyInt())).thenReturn(List.of());
+
+        // Act
+        int deleted = basketService.deleteIdleBaskets(new Date(), 2);
+
+        // Assert
+        assertEquals(0, deleted);
+        verify(basketRepository, never()).deleteByBasketIdIn(anyCollection());
+    }
+
+    @Test
+    void testWriteBackBaskets_SkipsBasketNoLongerActive() {
+        // Arrange
+        basket.addProduct(1L, 10000L, 1);
+        Basket checkedOut = Basket.builder().basketId(2L).userId(2L).basketStatus(BasketStatus.CHECKED_OUT).build();
+        Basket snapshot = basket.snapshot();
+        snapshot.setProductQuantity(1L, 10000L, 3);
+        when(basketRepository.findAllWithLinesByBasketIdIn(anyCollection())).thenReturn(List.of(basket, checkedOut));
+
+        // Act
+        Set<Long> skipped = basketService.writeBackBaskets(List.of(snapshot, checkedOut.snapshot()));
+
+        // Assert
+        assertEquals(Set.of(2L), skipped);
+        assertEquals(Map.of(1L, 3), basket.getProducts());
+        assertEquals(30000L, basket.getSubTotalMinor());
+        verify(basketRepository).saveAll(List.of(basket));
+        verify(basketHistoryService, times(1)).recordLineChanges(basket, Map.of(1L, 1));
+        verify(basketHistoryService, never()).recordLineChanges(eq(checkedOut), anyMap());
+    }
 }
\ No newline at end of file
@@ -1,28 +1,50 @@
 package hu.bme.aut.cart.servicetest;
 
+import hu.bme.aut.cart.checkout.CheckoutRequestedEvent;
 import hu.bme.aut.cart.client.CoreClient;
+import hu.bme.aut.cart.client.WarehouseClient;
 import hu.bme.aut.cart.dto.BasketDTO;
 import hu.bme.aut.cart.dto.CoreValidationResponseDTO;
 import hu.bme.aut.cart.dto.OrderDTO;
+import hu.bme.aut.cart.dto.OrderPageDTO;
+import hu.bme.aut.cart.dto.OrderStatusDTO;
+import hu.bme.aut.cart.dto.ProductDTO;
 import hu.bme.aut.cart.exception.CardNotBelongToUserException;
 import hu.bme.aut.cart.exception.InsufficientFundsException;
 import hu.bme.aut.cart.exception.OrderNotFoundException;
+import hu.bme.aut.cart.exception.ServiceCommunicationException;
 import hu.bme.aut.cart.model.entity.Basket;
 import hu.bme.aut.cart.model.entity.Order;
+import hu.bme.aut.cart.model.entity.OrderLine;
+import hu.bme.aut.cart.model.enums.BasketStatus;
 import hu.bme.aut.cart.model.enums.OrderStatus;
 import hu.bme.aut.cart.repository.OrderRepository;
+import hu.bme.aut.cart.service.BasketHistoryService;
 import hu.bme.aut.cart.service.BasketService;
 import hu.bme.aut.cart.service.OrderService;
+import hu.bme.aut.cart.store.ActiveBasketStore;
+import hu.bme.aut.cart.transaction.TransactionRunner;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.math.BigDecimal;
 import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -38,12 +60,27 @@ class OrderServiceTest {
     @Mock
     private BasketService basketService;
 
+    @Mock
+    private BasketHistoryService basketHistoryService;
+
     @Mock
     private CoreClient coreClient;
 
+    @Mock
+    private WarehouseClient warehouseClient;
+
     @Mock
     private ModelMapper modelMapper;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private ObjectProvider<ActiveBasketStore> activeBasketStore;
+
+    @Spy
+    private TransactionRunner transactionRunner = new TransactionRunner(mock(PlatformTransactionManager.class), new SimpleMeterRegistry());
+
     @InjectMocks
     private OrderService orderService;
 
@@ -54,26 +91,28 @@ class OrderServiceTest {
     void setUp() {
         basket = new Basket();
         basket.setBasketId(1L);
-        basket.setSubTotalAmount(100.0);
+        basket.setSubTotalMinor(10000L);
 
         order = new Order();
         order.setOrderId(1L);
         order.setBasket(basket);
         order.setOrderDate(new Date());
         order.setStatus(OrderStatus.PENDING);
-        order.setTotalAmount(100.0);
+        order.setTotalMinor(10000L);
     }
 
 
     @Test
-    void testCreateOrderFromBasket_OrderAlreadyExists() {
+    void testCreateOrderForUser_OrderAlreadyExists() {
         // Arrange
         basket.setOrder(order);
+        when(coreClient.getUserIdFromToken(anyString())).thenReturn(1L);
+        when(basketService.findActiveBasket(anyLong())).thenReturn(basket);
         when(basketService.findBasketById(anyLong())).thenReturn(basket);
 
         // Act & Assert
         IllegalStateException exception = assertThrows(IllegalStateException.class, () -> {
-            orderService.createOrderFromBasket(1L, "card123", "token123");
+            orderService.createOrderForUser("token123", "card123");
         });
 
         assertEquals("Order already exists for this basket", exception.getMessage());
@@ -81,12 +120,236 @@ class OrderServiceTest {
         verify(orderRepository, never()).save(any(Order.class));
     }
 
+    @Test
+    void testCreateOrderForUser_AcceptsPendingOrder() {
+        // Arrange
+        Basket activeBasket = Basket.builder()
+                .basketId(2L)
+                .userId(1L)
+                .basketStatus(BasketStatus.ACTIVE)
+                .subTotalMinor(0L)
+                .build();
+        activeBasket.addProduct(1L, 5000L, 1);
+        when(coreClient.getUserIdFromToken(anyString())).thenReturn(1L);
+        when(basketService.findActiveBasket(anyLong())).thenReturn(activeBasket);
+        when(basketService.findBasketById(anyLong())).thenReturn(activeBasket);
+        when(warehouseClient.getProductDetailsBatch(anyCollection())).thenReturn(Map.of(1L, ProductDTO.builder()
+                .id(1L)
+                .name("Laptop")
+                .price(new BigDecimal("50.00"))
+                .build()));
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> {
+            Order saved = invocation.getArgument(0);
+            saved.setOrderId(7L);
+            return saved;
+        });
+        when(modelMapper.map(any(Order.class), eq(OrderDTO.class))).thenReturn(new OrderDTO());
+
+        // Act
+        OrderDTO result = orderService.createOrderForUser("token123", "card123");
+
+        // Assert
+        assertTrue(result.isSuccess());
+        assertEquals(BasketStatus.CHECKED_OUT, activeBasket.getBasketStatus());
+        ArgumentCaptor<Order> captor = ArgumentCaptor.forClass(Order.class);
+        verify(orderRepository, times(1)).save(captor.capture());
+        List<OrderLine> lines = captor.getValue().getLines();
+        assertEquals(1, lines.size());
+        assertEquals(1L, lines.get(0).getProductId());
+        assertEquals("Laptop", lines.get(0).getProductName());
+        assertEquals(5000L, lines.get(0).getUnitPriceMinor());
+        assertEquals(1, lines.get(0).getQuantity());
+        verify(eventPublisher, times(1)).publishEvent(new CheckoutRequestedEvent(7L, "token123", "card123", 5000L));
+        verify(basketHistoryService, times(1)).recordCheckout(activeBasket);
+        verify(coreClient, never()).validateCard(anyString(), anyString(), anyLong());
+    }
+
+    @Test
+    void testCreateOrderForUser_TotalFollowsCurrentPrices() {
+        // Arrange
+        Basket activeBasket = Basket.builder()
+                .basketId(2L)
+                .userId(1L)
+                .basketStatus(BasketStatus.ACTIVE)
+                .subTotalMinor(0L)
+                .build();
+        activeBasket.addProduct(1L, 5000L, 2);
+        when(coreClient.getUserIdFromToken(anyString())).thenReturn(1L);
+        when(basketService.findActiveBasket(anyLong())).thenReturn(activeBasket);
+        when(basketService.findBasketById(anyLong())).thenReturn(activeBasket);
+        when(warehouseClient.getProductDetailsBatch(anyCollection())).thenReturn(Map.of(1L, ProductDTO.builder()
+                .id(1L)
+                .name("Laptop")
+                .price(new BigDecimal("60.00"))
+                .build()));
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> {
+            Order saved = invocation.getArgument(0);
+            saved.setOrderId(7L);
+            return saved;
+        });
+        when(modelMapper.map(any(Order.class), eq(OrderDTO.class))).thenReturn(new OrderDTO());
+
+        // Act
+        orderService.createOrderForUser("token123", "card123");
+
+        // Assert
+        ArgumentCaptor<Order> captor = ArgumentCaptor.forClass(Order.class);
+        verify(orderRepository, times(1)).save(captor.capture());
+        assertEquals(12000L, captor.getValue().getTotalMinor());
+        assertEquals(6000L, captor.getValue().getLines().get(0).getUnitPriceMinor());
+        verify(eventPublisher, times(1)).publishEvent(new CheckoutRequestedEvent(7L, "token123", "card123", 12000L));
+    }
+
+    @Test
+    void testCreateOrderForUser_BasketChangedWhilePriced() {
+        // Arrange
+        Basket pricedBasket = Basket.builder()
+                .basketId(2L)
+                .userId(1L)
+                .basketStatus(BasketStatus.ACTIVE)
+                .subTotalMinor(0L)
+                .build();
+        Basket changedBasket = Basket.builder()
+                .basketId(2L)
+                .userId(1L)
+                .basketStatus(BasketStatus.ACTIVE)
+                .subTotalMinor(0L)
+                .build();
+        changedBasket.addProduct(1L, 5000L, 1);
+        when(coreClient.getUserIdFromToken(anyString())).thenReturn(1L);
+        when(basketService.findActiveBasket(anyLong())).thenReturn(pricedBasket, changedBasket);
+        when(basketService.findBasketById(anyLong())).thenReturn(changedBasket);
+
+        // Act & Assert
+        assertThrows(OptimisticLockingFailureException.class, () -> orderService.createOrderForUser("token123", "card123"));
+        verify(warehouseClient, never()).getProductDetailsBatch(anyCollection());
+        verify(orderRepository, never()).save(any(Order.class));
+    }
+
+    @Test
+    void testCompleteOrder() {
+        // Arrange
+        when(orderRepository.findById(anyLong())).thenReturn(Optional.of(order));
+
+        // Act
+        OrderStatusDTO result = orderService.completeOrder(1L);
+
+        // Assert
+        assertEquals(OrderStatus.COMPLETED, result.getOrderStatus());
+        assertEquals(OrderStatus.COMPLETED, order.getStatus());
+    }
+
+    @Test
+    void testGetOrderStatus_OwnOrder() {
+        // Arrange
+        when(coreClient.getUserIdFromToken("token123")).thenReturn(1L);
+        when(orderRepository.findByOrderIdAndUserId(1L, 1L)).thenReturn(Optional.of(order));
+
+        // Act
+        OrderStatusDTO result = orderService.getOrderStatus(1L, "token123");
+
+        // Assert
+        assertEquals(OrderStatus.PENDING, result.getOrderStatus());
+    }
+
+    @Test
+    void testGetOrderStatus_OtherUsersOrder() {
+        // Arrange
+        when(coreClient.getUserIdFromToken("token123")).thenReturn(2L);
+        when(orderRepository.findByOrderIdAndUserId(1L, 2L)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(OrderNotFoundException.class, () -> orderService.getOrderStatus(1L, "token123"));
+    }
+
+    @Test
+    void testRecordCapture() {
+        // Arrange
+        when(orderRepository.findById(anyLong())).thenReturn(Optional.of(order));
+
+        // Act
+        orderService.recordCapture(1L);
+
+        // Assert
+        assertTrue(order.isFundsCaptured());
+        assertEquals(OrderStatus.PENDING, order.getStatus());
+    }
+
+    @Test
+    void testSettleAbandonedReservation_ReleasesHeldFunds() {
+        // Arrange
+        when(coreClient.getReservationStatus("order-1")).thenReturn(Optional.of("RESERVED"));
+        when(coreClient.releaseReservation("order-1")).thenReturn(new CoreValidationResponseDTO(true, null, null));
+
+        // Act
+        boolean captured = orderService.settleAbandonedReservation(1L);
+
+        // Assert
+        assertFalse(captured);
+        verify(coreClient, times(1)).releaseReservation("order-1");
+    }
+
+    @Test
+    void testSettleAbandonedReservation_KeepsCapturedFunds() {
+        // Arrange
+        when(coreClient.getReservationStatus("order-1")).thenReturn(Optional.of("CAPTURED"));
+
+        // Act
+        boolean captured = orderService.settleAbandonedReservation(1L);
+
+        // Assert
+        assertTrue(captured);
+        verify(coreClient, never()).releaseReservation(anyString());
+    }
+
+    @Test
+    void testSettleAbandonedReservation_NoReservation() {
+        // Arrange
+        when(coreClient.getReservationStatus("order-1")).thenReturn(Optional.empty());
+
+        // Act
+        boolean captured = orderService.settleAbandonedReservation(1L);
+
+        // Assert
+        assertFalse(captured);
+        verify(coreClient, never()).releaseReservation(anyString());
+    }
+
+    @Test
+    void testFailOrder_CancelsAndReopensBasket() {
+        // Arrange
+        when(orderRepository.findById(anyLong())).thenReturn(Optional.of(order));
+
+        // Act
+        OrderStatusDTO result = orderService.failOrder(1L, "10101", "Insufficient funds");
+
+        // Assert
+        assertEquals(OrderStatus.CANCELLED, result.getOrderStatus());
+        assertEquals("10101", result.getFailureCode());
+        verify(basketService, times(1)).reopenBasket(basket);
+    }
+
+    @Test
+    void testFailOrder_AlreadyCompleted() {
+        // Arrange
+        order.setStatus(OrderStatus.COMPLETED);
+        when(orderRepository.findById(anyLong())).thenReturn(Optional.of(order));
+
+        // Act
+        OrderStatusDTO result = orderService.failOrder(1L, "3410", "Checkout expired before it could be processed");
+
+        // Assert
+        assertEquals(OrderStatus.COMPLETED, result.getOrderStatus());
+        assertNull(result.getFailureCode());
+        verify(basketService, never()).reopenBasket(any(Basket.class));
+    }
+
     @Test
     void testGetOrdersByUserToken_Success() {
         // Arrange
         when(coreClient.getUserIdFromToken(anyString())).thenReturn(1L);
         when(orderRepository.findByUserId(anyLong())).thenReturn(Collections.singletonList(order));
-        when(basketService.getBasketById(anyLong())).thenReturn(new BasketDTO());
+        when(basketService.convertToBasketDTOs(anyCollection())).thenReturn(Map.of(1L, new BasketDTO()));
         when(modelMapper.map(any(Order.class), eq(OrderDTO.class))).thenReturn(new OrderDTO());
 
         // Act
@@ -95,14 +358,78 @@ class OrderServiceTest {
         // Assert
         assertNotNull(results);
         assertFalse(results.isEmpty());
+        assertNotNull(results.get(0).getBasket());
         verify(orderRepository, times(1)).findByUserId(anyLong());
     }
 
+    @Test
+    void testGetOrdersByUserToken_ReadsLinesWithoutWarehouse() {
+        // Arrange
+        order.addLine(1L, "Laptop", 5000L, 2);
+        when(coreClient.getUserIdFromToken(anyString())).thenReturn(1L);
+        when(orderRepository.findByUserId(anyLong())).thenReturn(Collections.singletonList(order));
+        when(modelMapper.map(any(Order.class), eq(OrderDTO.class))).thenReturn(new OrderDTO());
+
+        // Act
+        List<OrderDTO> results = orderService.getOrdersByUserToken("token123");
+
+        // Assert
+        BasketDTO basketDTO = results.get(0).getBasket();
+        assertEquals(1L, basketDTO.getBasketId());
+        assertEquals(BasketStatus.CHECKED_OUT, basketDTO.getBasketStatus());
+        assertEquals(1, basketDTO.getProducts().size());
+        assertEquals("Laptop", basketDTO.getProducts().get(0).getName());
+        assertEquals(new BigDecimal("50.00"), basketDTO.getProducts().get(0).getPrice());
+        assertEquals(2, basketDTO.getProducts().get(0).getQuantity());
+        verify(basketService, never()).convertToBasketDTOs(anyCollection());
+        verifyNoInteractions(warehouseClient);
+    }
+
+    @Test
+    void testGetOrderHistory_HasMore() {
+        // Arrange
+        when(coreClient.getUserIdFromToken(anyString())).thenReturn(1L);
+        when(orderRepository.findOrderIdsByUserId(eq(1L), isNull(), any(Pageable.class))).thenReturn(List.of(1L, 0L));
+        when(orderRepository.findAllWithLinesByOrderIdIn(anyCollection())).thenReturn(List.of(order));
+        when(basketService.convertToBasketDTOs(anyCollection())).thenReturn(Map.of(1L, new BasketDTO()));
+        when(modelMapper.map(any(Order.class), eq(OrderDTO.class))).thenReturn(new OrderDTO());
+
+        // Act
+        OrderPageDTO result = orderService.getOrderHistory("token123", null, 1);
+
+        // Assert
+        assertTrue(result.isSuccess());
+        assertTrue(result.isHasMore());
+        assertEquals(1L, result.getNextCursor());
+        assertEquals(1, result.getOrders().size());
+        assertNotNull(result.getOrders().get(0).getBasket());
+        verify(orderRepository, times(1)).findAllWithLinesByOrderIdIn(List.of(1L));
+        verify(basketService, times(1)).convertToBasketDTOs(anyCollection());
+        verify(basketService, never()).getBasketById(anyLong());
+    }
+
+    @Test
+    void testGetOrderHistory_LastPage() {
+        // Arrange
+        when(coreClient.getUserIdFromToken(anyString())).thenReturn(1L);
+        when(orderRepository.findOrderIdsByUserId(eq(1L), eq(5L), any(Pageable.class))).thenReturn(List.of());
+
+        // Act
+        OrderPageDTO result = orderService.getOrderHistory("token123", 5L, 20);
+
+        // Assert
+        assertFalse(result.isHasMore());
+        assertNull(result.getNextCursor());
+        assertTrue(result.getOrders().isEmpty());
+        verify(orderRepository, never()).findAllWithLinesByOrderIdIn(anyCollection());
+        verify(basketService, never()).convertToBasketDTOs(anyCollection());
+    }
+
     @Test
     void testGetOrderById_Success() {
         // Arrange
-        when(orderRepository.findById(anyLong())).thenReturn(Optional.of(order));
-        when(basketService.getBasketById(anyLong())).thenReturn(new BasketDTO());
+        when(orderRepository.findWithLinesByOrderId(anyLong())).thenReturn(Optional.of(order));
+        when(basketService.convertToBasketDTOs(anyCollection())).thenReturn(Map.of(1L, new BasketDTO()));
         when(modelMapper.map(any(Order.class), eq(OrderDTO.class))).thenReturn(new OrderDTO());
 
         // Act
@@ -110,13 +437,13 @@ class OrderServiceTest {
 
         // Assert
         assertNotNull(result);
-        verify(orderRepository, times(1)).findById(anyLong());
+        verify(orderRepository, times(1)).findWithLinesByOrderId(anyLong());
     }
 
     @Test
     void testGetOrderById_NotFound() {
         // Arrange
-        when(orderRepository.findById(anyLong())).thenReturn(Optional.empty());
+        when(orderRepository.findWithLinesByOrderId(anyLong())).thenReturn(Optional.empty());
 
         // Act & Assert
         OrderNotFoundException exception = assertThrows(OrderNotFoundException.class, () -> {
@@ -124,42 +451,58 @@ class OrderServiceTest {
         });
 
         assertEquals("Order not found with ID: 1", exception.getMessage());
-        verify(orderRepository, times(1)).findById(anyLong());
+        verify(orderRepository, times(1)).findWithLinesByOrderId(anyLong());
     }
 
     @Test
-    void testValidateCard_CardNotBelongToUser() {
+    void testReserveFunds_CardNotBelongToUser() {
         // Arrange
         CoreValidationResponseDTO response = new CoreValidationResponseDTO();
         response.setSuccess(false);
         response.setErrorCode("10100");
         response.setErrorMessage("Card does not belong to user");
-        when(coreClient.validateCard(anyString(), anyString(), anyDouble())).thenReturn(response);
+        when(coreClient.reserveFunds("token123", "order-1", "card123", 10000L)).thenReturn(response);
 
         // Act & Assert
         CardNotBelongToUserException exception = assertThrows(CardNotBelongToUserException.class, () -> {
-            orderService.validateCard("card123", 100.0, "token123");
+            orderService.reserveFunds(1L, "card123", 10000L, "token123");
         });
 
         assertEquals("Card does not belong to user", exception.getMessage());
-        verify(coreClient, times(1)).validateCard(anyString(), anyString(), anyDouble());
+        verify(coreClient, times(1)).reserveFunds("token123", "order-1", "card123", 10000L);
+    }
+
+    @Test
+    void testReserveFunds_OtherError() {
+        // Arrange
+        CoreValidationResponseDTO response = new CoreValidationResponseDTO();
+        response.setSuccess(false);
+        response.setErrorCode("10050");
+        response.setErrorMessage("Invalid token");
+        when(coreClient.reserveFunds("token123", "order-1", "card123", 10000L)).thenReturn(response);
+
+        // Act & Assert
+        ServiceCommunicationException exception = assertThrows(ServiceCommunicationException.class, () -> {
+            orderService.reserveFunds(1L, "card123", 10000L, "token123");
+        });
+
+        assertEquals("10050", exception.getErrorCode());
     }
 
     @Test
-    void testValidateCard_InsufficientFunds() {
+    void testReserveFunds_InsufficientFunds() {
         // Arrange
         CoreValidationResponseDTO response = new CoreValidationResponseDTO();
         response.setSuccess(false);
         response.setErrorCode("10101");
         response.setErrorMessage("Insufficient funds");
-        when(coreClient.validateCard(anyString(), anyString(), anyDouble())).thenReturn(response);
+        when(coreClient.reserveFunds("token123", "order-1", "card123", 10000L)).thenReturn(response);
 
         // Act & Assert
         InsufficientFundsException exception = assertThrows(InsufficientFundsException.class, () -> {
-            orderService.validateCard("card123", 100.0, "token123");
+            orderService.reserveFunds(1L, "card123", 10000L, "token123");
         });
 
-        assertEquals("Insufficient funds", exception.getMessage());
-        verify(coreClient, times(1)).validateCard(anyString(), anyString(), anyDouble());
+        assertEquals("10101", exception.getErrorCode());
     }
 }
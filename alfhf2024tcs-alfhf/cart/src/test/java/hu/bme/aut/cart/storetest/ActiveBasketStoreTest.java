@@ -0,0 +1,177 @@
+package hu.bme.aut.cart.storetest;
+
+import hu.bme.aut.cart.model.entity.Basket;
+import hu.bme.aut.cart.model.enums.BasketStatus;
+import hu.bme.aut.cart.service.BasketService;
+import hu.bme.aut.cart.store.ActiveBasketStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ActiveBasketStoreTest {
+
+    @Mock
+    private BasketService basketService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ActiveBasketStore store;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        store = new ActiveBasketStore(basketService, 1, Duration.ofMinutes(30), 10, meterRegistry);
+    }
+
+    @Test
+    void testUpdate_LoadsOnceAndKeepsChangesInMemory() {
+        // Arrange
+        when(basketService.loadActiveBasket(1L)).thenReturn(activeBasket(10L, 1L));
+
+        // Act
+        store.update(1L, basket -> basket.addProduct(1L, 1000L, 1));
+        Basket result = store.update(1L, basket -> basket.addProduct(1L, 1000L, 2));
+
+        // Assert
+        assertEquals(Map.of(1L, 3), result.getProducts());
+        assertEquals(3000L, result.getSubTotalMinor());
+        verify(basketService, times(1)).loadActiveBasket(1L);
+        verify(basketService, never()).writeBackBaskets(anyCollection());
+    }
+
+    @Test
+    void testUpdate_FailedChangeLeavesBasketUntouched() {
+        // Arrange
+        when(basketService.loadActiveBasket(1L)).thenReturn(activeBasket(10L, 1L));
+        store.update(1L, basket -> basket.addProduct(1L, 1000L, 1));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> store.update(1L, basket -> {
+            basket.addProduct(2L, 500L, 1);
+            basket.removeProduct(3L, 500L, 1);
+        }));
+        assertEquals(Map.of(1L, 1), store.find(1L).orElseThrow().getProducts());
+    }
+
+    @Test
+    void testFlushDirty_WritesChangedBasketsOnce() {
+        // Arrange
+        when(basketService.loadActiveBasket(1L)).thenReturn(activeBasket(10L, 1L));
+        when(basketService.writeBackBaskets(anyCollection())).thenReturn(Set.of());
+        store.update(1L, basket -> basket.addProduct(1L, 1000L, 2));
+
+        // Act
+        store.flushDirty();
+        store.flushDirty();
+
+        // Assert
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<Basket>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(basketService, times(1)).writeBackBaskets(captor.capture());
+        Basket written = captor.getValue().iterator().next();
+        assertEquals(10L, written.getBasketId());
+        assertEquals(Map.of(1L, 2), written.getProducts());
+    }
+
+    @Test
+    void testFlushDirty_FailedWriteIsRetried() {
+        // Arrange
+        when(basketService.loadActiveBasket(1L)).thenReturn(activeBasket(10L, 1L));
+        when(basketService.writeBackBaskets(anyCollection()))
+                .thenThrow(new IllegalStateException("Connection refused"))
+                .thenReturn(Set.of());
+        store.update(1L, basket -> basket.addProduct(1L, 1000L, 2));
+
+        // Act
+        store.flushDirty();
+        store.flushDirty();
+
+        // Assert
+        verify(basketService, times(2)).writeBackBaskets(anyCollection());
+        assertTrue(store.find(1L).isPresent());
+    }
+
+    @Test
+    void testFlushDirty_EvictsCleanBasketsOverTheSizeLimit() {
+        // Arrange
+        when(basketService.loadActiveBasket(1L)).thenReturn(activeBasket(10L, 1L));
+        when(basketService.loadActiveBasket(2L)).thenReturn(activeBasket(20L, 2L));
+        when(basketService.writeBackBaskets(anyCollection())).thenReturn(Set.of());
+        store.update(1L, basket -> basket.addProduct(1L, 1000L, 1));
+        store.update(2L, basket -> basket.addProduct(1L, 1000L, 1));
+
+        // Act
+        store.flushDirty();
+
+        // Assert
+        assertTrue(store.find(1L).isEmpty());
+        assertTrue(store.find(2L).isPresent());
+    }
+
+    @Test
+    void testFlushAndRelease_WritesSynchronouslyAndDropsBasket() {
+        // Arrange
+        when(basketService.loadActiveBasket(1L)).thenReturn(activeBasket(10L, 1L));
+        store.update(1L, basket -> basket.addProduct(1L, 1000L, 1));
+
+        // Act
+        store.flushAndRelease(1L);
+
+        // Assert
+        verify(basketService, times(1)).writeBackBaskets(anyCollection());
+        assertTrue(store.find(1L).isEmpty());
+    }
+
+    @Test
+    void testFlushDirty_DropsBasketNoLongerActive() {
+        // Arrange
+        when(basketService.loadActiveBasket(1L)).thenReturn(activeBasket(10L, 1L));
+        when(basketService.writeBackBaskets(anyCollection())).thenReturn(Set.of(10L));
+        store.update(1L, basket -> basket.addProduct(1L, 1000L, 1));
+
+        // Act
+        store.flushDirty();
+
+        // Assert
+        assertTrue(store.find(1L).isEmpty());
+        assertEquals(1.0, meterRegistry.counter("cart.basket.store.lost").count());
+        assertEquals(0.0, meterRegistry.counter("cart.basket.store.flushed").count());
+    }
+
+    @Test
+    void testFlushAndRelease_ReportsChangesOfBasketNoLongerActive() {
+        // Arrange
+        when(basketService.loadActiveBasket(1L)).thenReturn(activeBasket(10L, 1L));
+        when(basketService.writeBackBaskets(anyCollection())).thenReturn(Set.of(10L));
+        store.update(1L, basket -> basket.addProduct(1L, 1000L, 1));
+
+        // Act
+        store.flushAndRelease(1L);
+
+        // Assert
+        assertTrue(store.find(1L).isEmpty());
+        assertEquals(1.0, meterRegistry.counter("cart.basket.store.lost").count());
+        assertEquals(0.0, meterRegistry.counter("cart.basket.store.flushed").count());
+    }
+
+    private static Basket activeBasket(Long basketId, Long userId) {
+        return Basket.builder()
+                .basketId(basketId)
+                .userId(userId)
+                .basketStatus(BasketStatus.ACTIVE)
+                .build();
+    }
+}
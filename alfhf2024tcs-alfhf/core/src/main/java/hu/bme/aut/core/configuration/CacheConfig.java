@@ -0,0 +1,33 @@
+package hu.bme.aut.core.configuration;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the in-process caches of the CORE module.
+ * Every cache records its statistics and is bound to the meter registry, so its hit, miss and eviction counters
+ * are published as metrics.
+ */
+@Configuration
+public class CacheConfig {
+
+    @Bean
+    public Cache<String, Long> validatedTokenCache(
+            @Value("${core.token-cache.max-size:10000}") int maxSize,
+            @Value("${core.token-cache.ttl:10m}") Duration ttl,
+            MeterRegistry meterRegistry) {
+        Cache<String, Long> cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        return CaffeineCacheMetrics.monitor(meterRegistry, cache, "validatedToken");
+    }
+}
\ No newline at end of file
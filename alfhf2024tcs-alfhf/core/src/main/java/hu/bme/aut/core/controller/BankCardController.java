@@ -40,9 +40,8 @@ public class BankCardController {
         try {
             double parsedPrice = Double.parseDouble(price.replace(",", "."));
             log.info("card id: {}, price: {}", cardId, parsedPrice);
-            boolean isValid = userBankCardValidationService.validateCard(token, cardId);
-            boolean hasBalance = userBankCardValidationService.checkCardBalance(cardId, parsedPrice);
-            return ResponseEntity.ok(new CoreValidationResponseDTO(isValid && hasBalance, null, null));
+            boolean isValid = userBankCardValidationService.validateCardAndBalance(token, cardId, parsedPrice);
+            return ResponseEntity.ok(new CoreValidationResponseDTO(isValid, null, null));
         } catch (NumberFormatException ex) {
             log.error("Error parsing price: {}", ex.getMessage());
             return ResponseEntity.badRequest().body(new CoreValidationResponseDTO(false, "Invalid price format", "3501"));
@@ -0,0 +1,87 @@
+package hu.bme.aut.core.controller;
+
+import hu.bme.aut.core.dto.CoreValidationResponseDTO;
+import hu.bme.aut.core.model.CardReservation;
+import hu.bme.aut.core.service.CardReservationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Controller for holding amounts on bank cards, and for charging or returning the held amounts.
+ * The ID and the state of the affected reservation are returned in the "Reservation-ID" and
+ * "Reservation-Status" response headers.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/core/reservations")
+@RequiredArgsConstructor
+public class CardReservationController {
+
+    private final CardReservationService cardReservationService;
+
+    /**
+     * Holds the given price on the bank card, if the card belongs to the user and its balance covers the price.
+     *
+     * @param token The user authentication token provided in the request header.
+     * @param reservationId The ID of the reservation chosen by the caller; a retried request with the same ID holds the price only once.
+     * @param cardId The unique identifier of the bank card.
+     * @param price The amount to hold.
+     * @return A {@link ResponseEntity} with {@link CoreValidationResponseDTO}, indicating the result of the reservation.
+     */
+    @PostMapping("/{cardId}/{price}")
+    public ResponseEntity<CoreValidationResponseDTO> reserve(
+            @RequestHeader("User-Token") String token,
+            @RequestHeader("Reservation-ID") String reservationId,
+            @PathVariable String cardId,
+            @PathVariable String price) {
+        log.info("Request to reserve {} on card ID: {} as {}", price, cardId, reservationId);
+
+        try {
+            double parsedPrice = Double.parseDouble(price.replace(",", "."));
+            return respond(cardReservationService.reserve(token, reservationId, cardId, parsedPrice));
+        } catch (NumberFormatException ex) {
+            log.error("Error parsing price: {}", ex.getMessage());
+            return ResponseEntity.badRequest().body(new CoreValidationResponseDTO(false, "3501", "Invalid price format"));
+        }
+    }
+
+    /**
+     * Charges the amount held by the reservation.
+     *
+     * @param token The user authentication token provided in the request header.
+     * @param reservationId The ID of the reservation.
+     * @return A {@link ResponseEntity} with {@link CoreValidationResponseDTO}, indicating the result of the capture.
+     */
+    @PostMapping("/{reservationId}/capture")
+    public ResponseEntity<CoreValidationResponseDTO> capture(@RequestHeader("User-Token") String token,
+                                                             @PathVariable String reservationId) {
+        log.info("Request to capture reservation {}", reservationId);
+        return respond(cardReservationService.capture(token, reservationId));
+    }
+
+    /**
+     * Returns the amount held by the reservation to its card.
+     *
+     * @param token The user authentication token provided in the request header.
+     * @param reservationId The ID of the reservation.
+     * @return A {@link ResponseEntity} with {@link CoreValidationResponseDTO}, indicating the result of the release.
+     */
+    @PostMapping("/{reservationId}/release")
+    public ResponseEntity<CoreValidationResponseDTO> release(@RequestHeader("User-Token") String token,
+                                                             @PathVariable String reservationId) {
+        log.info("Request to release reservation {}", reservationId);
+        return respond(cardReservationService.release(token, reservationId));
+    }
+
+    private ResponseEntity<CoreValidationResponseDTO> respond(CardReservation reservation) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Reservation-ID", reservation.getReservationId());
+        headers.add("Reservation-Status", reservation.getStatus().name());
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(new CoreValidationResponseDTO(true, null, null));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,84 @@
+package hu.bme.aut.core.controller;
+
+import hu.bme.aut.core.dto.CoreValidationResponseDTO;
+import hu.bme.aut.core.model.CardReservation;
+import hu.bme.aut.core.service.CardReservationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Controller that lets other modules settle reservations without a token of the user, e.g. when the CART module
+ * recovers a checkout whose worker was lost. The endpoints are only for internal callers, which authenticate with
+ * the shared secret in the X-Internal-Secret header. The state of the reservation is returned in the
+ * "Reservation-Status" response header.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/core/internal/reservations")
+@RequiredArgsConstructor
+public class InternalReservationController {
+
+    private final CardReservationService cardReservationService;
+
+    @Value("${core.internal-secret:}")
+    private String internalSecret;
+
+    /**
+     * Looks up the state of a reservation.
+     *
+     * @param reservationId The ID of the reservation.
+     * @param secret The shared secret of internal callers.
+     * @return A {@link ResponseEntity} with {@link CoreValidationResponseDTO}, or 403 if the secret does not match.
+     */
+    @GetMapping("/{reservationId}")
+    public ResponseEntity<CoreValidationResponseDTO> get(@PathVariable String reservationId,
+                                                         @RequestHeader(value = "X-Internal-Secret", required = false) String secret) {
+        if (!isInternalCaller(secret)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return respond(cardReservationService.getReservation(reservationId));
+    }
+
+    /**
+     * Returns the amount held by the reservation to its card.
+     *
+     * @param reservationId The ID of the reservation.
+     * @param secret The shared secret of internal callers.
+     * @return A {@link ResponseEntity} with {@link CoreValidationResponseDTO}, or 403 if the secret does not match.
+     */
+    @PostMapping("/{reservationId}/release")
+    public ResponseEntity<CoreValidationResponseDTO> release(@PathVariable String reservationId,
+                                                             @RequestHeader(value = "X-Internal-Secret", required = false) String secret) {
+        if (!isInternalCaller(secret)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        log.info("Internal request to release reservation {}", reservationId);
+        return respond(cardReservationService.releaseForOwner(reservationId));
+    }
+
+    private ResponseEntity<CoreValidationResponseDTO> respond(CardReservation reservation) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Reservation-ID", reservation.getReservationId());
+        headers.add("Reservation-Status", reservation.getStatus().name());
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(new CoreValidationResponseDTO(true, null, null));
+    }
+
+    private boolean isInternalCaller(String secret) {
+        if (internalSecret.isEmpty() || secret == null
+                || !MessageDigest.isEqual(internalSecret.getBytes(StandardCharsets.UTF_8), secret.getBytes(StandardCharsets.UTF_8))) {
+            log.warn("Rejected internal reservation request without a valid internal secret");
+            return false;
+        }
+        return true;
+    }
+}
\ No newline at end of file
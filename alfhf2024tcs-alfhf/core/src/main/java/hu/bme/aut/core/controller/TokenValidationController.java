@@ -1,16 +1,24 @@
 package hu.bme.aut.core.controller;
 
+import hu.bme.aut.core.dto.BatchTokenValidationResponseDTO;
 import hu.bme.aut.core.dto.CoreValidationResponseDTO;
+import hu.bme.aut.core.dto.TokenValidationResultDTO;
 import hu.bme.aut.core.service.UserTokenValidationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 /**
  * Controller to handle token validation requests.
  * This controller is responsible for validating user tokens to ensure they are still valid
@@ -23,6 +31,9 @@ import org.springframework.web.bind.annotation.RestController;
 public class TokenValidationController {
     private final UserTokenValidationService tokenValidationService;
 
+    @Value("${core.auth.batch.max-size:1000}")
+    private int maxBatchSize;
+
     /**
      * Validates the user token received in the request header.
      * @param token The user token provided in the "User-Token" request header.
@@ -41,4 +52,41 @@ public class TokenValidationController {
                 .headers(headers)
                 .body(new CoreValidationResponseDTO(true, null, null));
     }
+
+    /**
+     * Validates many user tokens in one request, e.g. for gateways and batch jobs acting for many users.
+     * @param tokens The user tokens to validate, at most {@code core.auth.batch.max-size} of them.
+     * @return A {@link ResponseEntity} containing a {@link BatchTokenValidationResponseDTO} with the user ID
+     *         or the error of every token, in the order of the tokens.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<BatchTokenValidationResponseDTO> validateTokens(@RequestBody List<String> tokens) {
+        log.info("Validating {} tokens in a batch.", tokens.size());
+        if (tokens.size() > maxBatchSize) {
+            log.error("Batch of {} tokens exceeds the limit of {}", tokens.size(), maxBatchSize);
+            return ResponseEntity.badRequest().body(BatchTokenValidationResponseDTO.builder()
+                    .success(false)
+                    .errorCode("3502")
+                    .errorMessage("Too many tokens in one request, the limit is " + maxBatchSize)
+                    .build());
+        }
+
+        List<TokenValidationResultDTO> results = tokenValidationService.validateTokens(tokens);
+        return ResponseEntity.ok(BatchTokenValidationResponseDTO.builder()
+                .success(true)
+                .results(results)
+                .build());
+    }
+
+    /**
+     * Revokes the user token received in the request header, e.g. on logout.
+     * @param token The user token provided in the "User-Token" request header.
+     * @return An empty {@link ResponseEntity}; revoking an unknown token succeeds as well.
+     */
+    @DeleteMapping
+    public ResponseEntity<Void> revokeToken(@RequestHeader("User-Token") String token) {
+        log.info("Revoking user token.");
+        tokenValidationService.revokeToken(token);
+        return ResponseEntity.noContent().build();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,38 @@
+package hu.bme.aut.core.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) for the response of a batch token validation request.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchTokenValidationResponseDTO {
+
+    /**
+     * Indicates whether the request could be processed; the validity of the tokens is given per token.
+     */
+    private boolean success;
+
+    /**
+     * The error code provided if the request could not be processed.
+     */
+    private String errorCode;
+
+    /**
+     * The error message associated with the error code.
+     */
+    private String errorMessage;
+
+    /**
+     * The validation results in the order of the requested tokens.
+     */
+    private List<TokenValidationResultDTO> results;
+}
\ No newline at end of file
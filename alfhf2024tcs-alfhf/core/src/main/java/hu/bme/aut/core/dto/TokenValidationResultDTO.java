@@ -0,0 +1,41 @@
+package hu.bme.aut.core.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object (DTO) for the validation result of one token of a batch validation request.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TokenValidationResultDTO {
+
+    /**
+     * The validated token.
+     */
+    private String token;
+
+    /**
+     * Indicates whether the token is valid.
+     */
+    private boolean success;
+
+    /**
+     * The ID of the user the token belongs to, if the token is valid.
+     */
+    private Long userId;
+
+    /**
+     * The error code provided if the token is not valid.
+     */
+    private String errorCode;
+
+    /**
+     * The error message associated with the error code.
+     */
+    private String errorMessage;
+}
\ No newline at end of file
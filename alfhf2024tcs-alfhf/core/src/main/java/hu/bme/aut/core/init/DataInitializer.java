@@ -29,9 +29,10 @@ public class DataInitializer implements CommandLineRunner {
 
     @Override
     public void run(String... args) throws Exception {
-        log.info("Start from a clean slate");
-        userRepository.deleteAll();
-        userBankCardRepository.deleteAll();
+        if (userRepository.count() > 0) {
+            log.info("Users already present, skipping data initialization");
+            return;
+        }
 
         log.info("Creating new users");
         User user1 = createUser("John Doe", "john@example.com");
@@ -42,8 +43,8 @@ public class DataInitializer implements CommandLineRunner {
         createBankCard("C0002", "5390508354245119", "Alice Smith", "456", 2000.0, "HUF", user2);
 
         log.info("Giving them tokens");
-        tokenValidationService.generateUserToken(user1);
-        tokenValidationService.generateUserToken(user2);
+        log.info("Token of {}: {}", user1.getEmail(), tokenValidationService.generateUserToken(user1));
+        log.info("Token of {}: {}", user2.getEmail(), tokenValidationService.generateUserToken(user2));
 
         log.info("Data initialization complete.");
     }
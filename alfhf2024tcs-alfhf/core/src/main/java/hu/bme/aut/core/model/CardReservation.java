@@ -0,0 +1,57 @@
+package hu.bme.aut.core.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Represents an amount held on a bank card until it is captured, released or expires.
+ * The amount is deducted from the card when the reservation is made, so concurrent reservations
+ * can never spend the same funds twice.
+ */
+@Entity
+@Table(name = "card_reservation", indexes = @Index(name = "idx_card_reservation_status_expires_at", columnList = "status, expires_at"))
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+public class CardReservation {
+    /**
+     * The ID of the reservation, chosen by the caller so a retried reservation is not made twice.
+     */
+    @Id
+    @Column(name = "reservation_id", length = 64)
+    private String reservationId;
+
+    /**
+     * The card the amount is held on.
+     */
+    @Column(name = "card_id", nullable = false)
+    private String cardId;
+
+    /**
+     * The user who made the reservation; only this user can capture or release it.
+     */
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    /**
+     * The held amount.
+     */
+    @Column(name = "amount", nullable = false)
+    private Double amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 16)
+    private ReservationStatus status;
+
+    /**
+     * The time after which the reservation can no longer be captured and its amount is returned to the card.
+     */
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+}
\ No newline at end of file
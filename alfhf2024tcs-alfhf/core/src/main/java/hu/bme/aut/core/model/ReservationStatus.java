@@ -0,0 +1,23 @@
+package hu.bme.aut.core.model;
+
+/**
+ * The states of a card reservation. Only a RESERVED reservation can change state, and every change is final.
+ */
+public enum ReservationStatus {
+    /**
+     * The amount is held on the card, waiting to be captured or released.
+     */
+    RESERVED,
+    /**
+     * The held amount has been charged.
+     */
+    CAPTURED,
+    /**
+     * The held amount has been returned to the card on request.
+     */
+    RELEASED,
+    /**
+     * The held amount has been returned to the card because the reservation was not captured in time.
+     */
+    EXPIRED
+}
\ No newline at end of file
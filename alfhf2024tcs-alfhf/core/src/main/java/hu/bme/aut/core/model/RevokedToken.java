@@ -0,0 +1,34 @@
+package hu.bme.aut.core.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Represents a signed token revoked before its expiry.
+ * Only the ID of the token is kept, and only until the token would have expired anyway.
+ */
+@Entity
+@Table(name = "revoked_token", indexes = @Index(name = "idx_revoked_token_expires_at", columnList = "expires_at"))
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+public class RevokedToken {
+    /**
+     * The random ID of the revoked token.
+     */
+    @Id
+    @Column(name = "token_id", length = 32)
+    private String tokenId;
+
+    /**
+     * The time the revoked token expires at; the entry can be removed after it.
+     */
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+}
\ No newline at end of file
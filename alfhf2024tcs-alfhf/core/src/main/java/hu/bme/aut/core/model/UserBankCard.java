@@ -7,7 +7,7 @@ import lombok.*;
  * Represents a bank card associated with a User.
  */
 @Entity
-@Table(name = "user_bank_card")
+@Table(name = "user_bank_card", indexes = @Index(name = "idx_user_bank_card_card_user", columnList = "card_id, user_id"))
 @AllArgsConstructor
 @NoArgsConstructor
 @Data
@@ -21,7 +21,7 @@ public class UserBankCard {
     /**
      * The unique identifier of the bank card.
      */
-    @Column(nullable = false, unique = true)
+    @Column(name = "card_id", nullable = false, unique = true)
     private String cardId;
 
     /**
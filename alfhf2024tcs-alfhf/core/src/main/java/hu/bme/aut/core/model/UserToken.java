@@ -10,7 +10,7 @@ import lombok.NoArgsConstructor;
  * Represents an authentication token of a User.
  */
 @Entity
-@Table(name = "user_token")
+@Table(name = "user_token", uniqueConstraints = @UniqueConstraint(name = "uk_user_token_token", columnNames = "token"))
 @AllArgsConstructor
 @NoArgsConstructor
 @Data
@@ -23,6 +23,7 @@ public class UserToken {
     /**
      * The token string used for user authentication.
      */
+    @Column(name = "token")
     private String token;
 
     /**
@@ -0,0 +1,48 @@
+package hu.bme.aut.core.repository;
+
+import hu.bme.aut.core.model.CardReservation;
+import hu.bme.aut.core.model.ReservationStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Repository interface for CardReservation entities.
+ * State changes are conditional updates: exactly one of any concurrent changes of a reservation updates a row.
+ * The persistence context is cleared after them, so the reservation read afterwards has its new state.
+ */
+@Repository
+public interface CardReservationRepository extends JpaRepository<CardReservation, String> {
+
+    /**
+     * Moves a reservation of the user from RESERVED to the given state, unless it expired before the given time.
+     *
+     * @return 1 if the reservation changed state, 0 if it was not reserved, not the user's or expired.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE CardReservation r SET r.status = :status WHERE r.reservationId = :reservationId AND r.userId = :userId "
+            + "AND r.status = hu.bme.aut.core.model.ReservationStatus.RESERVED AND r.expiresAt > :now")
+    int transitionReserved(@Param("reservationId") String reservationId, @Param("userId") Long userId,
+                           @Param("status") ReservationStatus status, @Param("now") Instant now);
+
+    /**
+     * Moves a reservation from RESERVED to EXPIRED if it expired before the given time.
+     *
+     * @return 1 if the reservation expired, 0 if it was no longer reserved.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE CardReservation r SET r.status = hu.bme.aut.core.model.ReservationStatus.EXPIRED "
+            + "WHERE r.reservationId = :reservationId AND r.status = hu.bme.aut.core.model.ReservationStatus.RESERVED "
+            + "AND r.expiresAt <= :now")
+    int expireReserved(@Param("reservationId") String reservationId, @Param("now") Instant now);
+
+    @Query("SELECT r.reservationId FROM CardReservation r WHERE r.status = hu.bme.aut.core.model.ReservationStatus.RESERVED "
+            + "AND r.expiresAt <= :now ORDER BY r.expiresAt")
+    List<String> findExpiredReservationIds(@Param("now") Instant now, Pageable pageable);
+}
\ No newline at end of file
@@ -2,6 +2,7 @@ package hu.bme.aut.core.repository;
 
 import hu.bme.aut.core.model.UserBankCard;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -17,4 +18,42 @@ public interface UserBankCardRepository extends JpaRepository<UserBankCard, Long
     Optional<UserBankCard> findByCardIdAndUserId(@Param("cardId") String cardId, @Param("userId") Long userId);
 
     Optional<UserBankCard> findByCardId(String cardId);
+
+    /**
+     * Reads the owner and the balance of a card in one query on the unique card ID, without loading the card.
+     *
+     * @param cardId The card ID.
+     * @return The owner and balance of the card, or empty if there is no such card.
+     */
+    @Query("SELECT c.user.userId AS userId, c.amount AS amount FROM UserBankCard c WHERE c.cardId = :cardId")
+    Optional<CardOwnerBalance> findOwnerBalanceByCardId(@Param("cardId") String cardId);
+
+    /**
+     * Deducts the amount from the card if it belongs to the user and its balance covers the amount,
+     * in one conditional update.
+     *
+     * @return 1 if the amount was deducted, 0 otherwise.
+     */
+    @Modifying
+    @Query("UPDATE UserBankCard c SET c.amount = c.amount - :amount "
+            + "WHERE c.cardId = :cardId AND c.user.userId = :userId AND c.amount >= :amount")
+    int debitIfSufficient(@Param("cardId") String cardId, @Param("userId") Long userId, @Param("amount") double amount);
+
+    /**
+     * Adds the amount back to the card in one update.
+     *
+     * @return 1 if the card exists, 0 otherwise.
+     */
+    @Modifying
+    @Query("UPDATE UserBankCard c SET c.amount = c.amount + :amount WHERE c.cardId = :cardId")
+    int credit(@Param("cardId") String cardId, @Param("amount") double amount);
+
+    /**
+     * The owner and the balance of a bank card.
+     */
+    interface CardOwnerBalance {
+        Long getUserId();
+
+        Double getAmount();
+    }
 }
\ No newline at end of file
@@ -2,8 +2,12 @@ package hu.bme.aut.core.repository;
 
 import hu.bme.aut.core.model.UserToken;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -12,4 +16,24 @@ import java.util.Optional;
 @Repository
 public interface UserTokenRepository extends JpaRepository<UserToken, Long> {
     Optional<UserToken> findByToken(String token);
+
+    long deleteByToken(String token);
+
+    /**
+     * Reads the owners of the given tokens in one query.
+     *
+     * @param tokens The tokens to look up.
+     * @return The owner of every stored token among the given ones.
+     */
+    @Query("SELECT t.token AS token, u.userId AS userId FROM UserToken t JOIN t.user u WHERE t.token IN :tokens")
+    List<TokenOwner> findOwnersByTokenIn(@Param("tokens") Collection<String> tokens);
+
+    /**
+     * A stored token and the ID of its user.
+     */
+    interface TokenOwner {
+        String getToken();
+
+        Long getUserId();
+    }
 }
\ No newline at end of file
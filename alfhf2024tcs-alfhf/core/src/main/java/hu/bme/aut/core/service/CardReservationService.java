@@ -0,0 +1,237 @@
+package hu.bme.aut.core.service;
+
+import hu.bme.aut.core.exception.CoreServiceException;
+import hu.bme.aut.core.model.CardReservation;
+import hu.bme.aut.core.model.ReservationStatus;
+import hu.bme.aut.core.repository.CardReservationRepository;
+import hu.bme.aut.core.repository.UserBankCardRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Service class for holding amounts on bank cards and charging or returning them later.
+ * The balance of a card is only changed by conditional updates, never by reading and writing it back,
+ * so concurrent reservations against the same card cannot overdraw it and need no lock beyond the single update.
+ * A reservation that is neither captured nor released in time expires, and its amount is returned to the card.
+ */
+@Slf4j
+@Service
+public class CardReservationService {
+
+    private static final int MAX_RESERVATION_ID_LENGTH = 64;
+
+    private final UserTokenValidationService userTokenValidationService;
+    private final UserBankCardRepository userBankCardRepository;
+    private final CardReservationRepository cardReservationRepository;
+    private final Duration reservationTtl;
+
+    public CardReservationService(UserTokenValidationService userTokenValidationService,
+                                  UserBankCardRepository userBankCardRepository,
+                                  CardReservationRepository cardReservationRepository,
+                                  @Value("${core.reservation.ttl:10m}") Duration reservationTtl) {
+        this.userTokenValidationService = userTokenValidationService;
+        this.userBankCardRepository = userBankCardRepository;
+        this.cardReservationRepository = cardReservationRepository;
+        this.reservationTtl = reservationTtl;
+    }
+
+    /**
+     * Holds the amount on the card of the user identified by the token.
+     * Making a reservation again with the same ID returns the existing reservation without holding the amount twice.
+     *
+     * @param token         The user authentication token used to identify the user.
+     * @param reservationId The ID of the reservation, chosen by the caller.
+     * @param cardId        The card to hold the amount on.
+     * @param amount        The amount to hold.
+     * @return The reservation.
+     * @throws CoreServiceException with code 10100 if the card does not belong to the user, 10101 if the card does not
+     *                              have sufficient funds, or 10102 if the ID is invalid or already used for another card.
+     */
+    @Transactional
+    public CardReservation reserve(String token, String reservationId, String cardId, double amount) {
+        Long userId = userTokenValidationService.getUserIdFromToken(token);
+        if (reservationId == null || reservationId.isBlank() || reservationId.length() > MAX_RESERVATION_ID_LENGTH || amount <= 0) {
+            throw new CoreServiceException("A foglalás azonosítója vagy összege érvénytelen.", "10102");
+        }
+
+        Optional<CardReservation> existing = cardReservationRepository.findById(reservationId);
+        if (existing.isPresent()) {
+            return replay(existing.get(), userId, cardId, amount);
+        }
+
+        if (userBankCardRepository.debitIfSufficient(cardId, userId, amount) == 0) {
+            Optional<UserBankCardRepository.CardOwnerBalance> card = userBankCardRepository.findOwnerBalanceByCardId(cardId);
+            if (card.isEmpty() || !userId.equals(card.get().getUserId())) {
+                log.error("Reservation failed, card ID: {} does not belong to user ID: {}", cardId, userId);
+                throw new CoreServiceException("Ez a bankkártya nem ehhez a felhasználóhoz tartozik.", "10100");
+            }
+            log.error("Reservation failed for card ID: {}. Required: {}, Available: {}", cardId, amount, card.get().getAmount());
+            throw new CoreServiceException("A felhasználónak nincs elegendő pénze hogy megvásárolja a jegyet!", "10101");
+        }
+
+        CardReservation reservation = CardReservation.builder()
+                .reservationId(reservationId)
+                .cardId(cardId)
+                .userId(userId)
+                .amount(amount)
+                .status(ReservationStatus.RESERVED)
+                .expiresAt(Instant.now().plus(reservationTtl))
+                .build();
+        try {
+            reservation = cardReservationRepository.saveAndFlush(reservation);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Reservation {} was made concurrently, rolling back this one", reservationId);
+            throw new CoreServiceException("A foglalás már folyamatban van.", "10102");
+        }
+
+        log.info("Reserved {} on card ID: {} for user ID: {} as {}", amount, cardId, userId, reservationId);
+        return reservation;
+    }
+
+    /**
+     * Charges a reserved amount. Capturing a captured reservation again has no further effect.
+     *
+     * @param token         The user authentication token used to identify the user.
+     * @param reservationId The ID of the reservation.
+     * @return The captured reservation.
+     * @throws CoreServiceException with code 10103 if the reservation does not exist, is not the user's,
+     *                              has been released or has expired.
+     */
+    @Transactional
+    public CardReservation capture(String token, String reservationId) {
+        Long userId = userTokenValidationService.getUserIdFromToken(token);
+        if (cardReservationRepository.transitionReserved(reservationId, userId, ReservationStatus.CAPTURED, Instant.now()) == 1) {
+            log.info("Captured reservation {}", reservationId);
+            return findReservation(reservationId);
+        }
+
+        CardReservation reservation = findUsersReservation(reservationId, userId);
+        if (reservation.getStatus() != ReservationStatus.CAPTURED) {
+            log.error("Reservation {} cannot be captured, it is {}", reservationId, reservation.getStatus());
+            throw new CoreServiceException("A foglalás lejárt vagy fel lett oldva.", "10103");
+        }
+        return reservation;
+    }
+
+    /**
+     * Returns a reserved amount to its card. Releasing a released or expired reservation again has no further effect.
+     *
+     * @param token         The user authentication token used to identify the user.
+     * @param reservationId The ID of the reservation.
+     * @return The released reservation.
+     * @throws CoreServiceException with code 10103 if the reservation does not exist or is not the user's,
+     *                              or with code 10104 if it has already been captured.
+     */
+    @Transactional
+    public CardReservation release(String token, String reservationId) {
+        return release(userTokenValidationService.getUserIdFromToken(token), reservationId);
+    }
+
+    /**
+     * Finds a reservation for an internal caller that has no token of its user,
+     * e.g. the CART module recovering a checkout whose worker was lost.
+     *
+     * @param reservationId The ID of the reservation.
+     * @return The reservation.
+     * @throws CoreServiceException with code 10103 if the reservation does not exist.
+     */
+    @Transactional(readOnly = true)
+    public CardReservation getReservation(String reservationId) {
+        return findReservation(reservationId);
+    }
+
+    /**
+     * Returns a reserved amount to its card on behalf of the owner of the reservation, for an internal caller
+     * that has no token of the user, e.g. the CART module cancelling an abandoned checkout.
+     *
+     * @param reservationId The ID of the reservation.
+     * @return The released reservation.
+     * @throws CoreServiceException with code 10103 if the reservation does not exist,
+     *                              or with code 10104 if it has already been captured.
+     */
+    @Transactional
+    public CardReservation releaseForOwner(String reservationId) {
+        return release(findReservation(reservationId).getUserId(), reservationId);
+    }
+
+    private CardReservation release(Long userId, String reservationId) {
+        if (cardReservationRepository.transitionReserved(reservationId, userId, ReservationStatus.RELEASED, Instant.now()) == 1) {
+            CardReservation reservation = findReservation(reservationId);
+            userBankCardRepository.credit(reservation.getCardId(), reservation.getAmount());
+            log.info("Released reservation {}, returned {} to card ID: {}", reservationId, reservation.getAmount(), reservation.getCardId());
+            return reservation;
+        }
+
+        CardReservation reservation = findUsersReservation(reservationId, userId);
+        if (reservation.getStatus() == ReservationStatus.RESERVED) {
+            // Expired but not swept yet: return the amount now instead of waiting for the sweeper
+            return expire(reservationId).orElseGet(() -> findReservation(reservationId));
+        }
+        if (reservation.getStatus() == ReservationStatus.CAPTURED) {
+            log.error("Reservation {} cannot be released, it has been captured", reservationId);
+            throw new CoreServiceException("A foglalás már terhelésre került.", "10104");
+        }
+        return reservation;
+    }
+
+    /**
+     * Finds the reservations that have expired while still reserved.
+     *
+     * @param limit The maximum number of reservations to return, oldest first.
+     * @return The IDs of the expired reservations.
+     */
+    @Transactional(readOnly = true)
+    public List<String> findExpiredReservationIds(int limit) {
+        return cardReservationRepository.findExpiredReservationIds(Instant.now(), PageRequest.of(0, limit));
+    }
+
+    /**
+     * Expires a reservation that was neither captured nor released in time, and returns its amount to the card.
+     *
+     * @param reservationId The ID of the reservation.
+     * @return The expired reservation, or empty if it was no longer reserved or has not expired yet.
+     */
+    @Transactional
+    public Optional<CardReservation> expire(String reservationId) {
+        if (cardReservationRepository.expireReserved(reservationId, Instant.now()) == 0) {
+            return Optional.empty();
+        }
+        CardReservation reservation = findReservation(reservationId);
+        userBankCardRepository.credit(reservation.getCardId(), reservation.getAmount());
+        log.info("Reservation {} expired, returned {} to card ID: {}", reservationId, reservation.getAmount(), reservation.getCardId());
+        return Optional.of(reservation);
+    }
+
+    /**
+     * Returns an existing reservation for a repeated reserve request, if the request matches it.
+     */
+    private CardReservation replay(CardReservation reservation, Long userId, String cardId, double amount) {
+        if (!reservation.getUserId().equals(userId) || !reservation.getCardId().equals(cardId)
+                || Double.compare(reservation.getAmount(), amount) != 0) {
+            log.error("Reservation ID {} is already used for another card or amount", reservation.getReservationId());
+            throw new CoreServiceException("A foglalás azonosítója már használatban van.", "10102");
+        }
+        log.info("Reservation {} already exists, it is {}", reservation.getReservationId(), reservation.getStatus());
+        return reservation;
+    }
+
+    private CardReservation findReservation(String reservationId) {
+        return cardReservationRepository.findById(reservationId)
+                .orElseThrow(() -> new CoreServiceException("A foglalás nem található.", "10103"));
+    }
+
+    private CardReservation findUsersReservation(String reservationId, Long userId) {
+        return cardReservationRepository.findById(reservationId)
+                .filter(reservation -> reservation.getUserId().equals(userId))
+                .orElseThrow(() -> new CoreServiceException("A foglalás nem található.", "10103"));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,44 @@
+package hu.bme.aut.core.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Periodically returns the amounts of reservations that were neither captured nor released before they expired.
+ * Every reservation is expired in its own transaction, so one failure does not hold back the others.
+ */
+@Slf4j
+@Component
+public class CardReservationSweeper {
+
+    private final CardReservationService cardReservationService;
+    private final int batchSize;
+
+    public CardReservationSweeper(CardReservationService cardReservationService,
+                                  @Value("${core.reservation.sweep-batch-size:100}") int batchSize) {
+        this.cardReservationService = cardReservationService;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${core.reservation.sweep-interval:30s}")
+    public void expireReservations() {
+        List<String> reservationIds = cardReservationService.findExpiredReservationIds(batchSize);
+        int expired = 0;
+        for (String reservationId : reservationIds) {
+            try {
+                if (cardReservationService.expire(reservationId).isPresent()) {
+                    expired++;
+                }
+            } catch (RuntimeException ex) {
+                log.error("Could not expire reservation {}: {}", reservationId, ex.getMessage());
+            }
+        }
+        if (!reservationIds.isEmpty()) {
+            log.info("Expired {} of {} overdue reservations", expired, reservationIds.size());
+        }
+    }
+}
\ No newline at end of file
@@ -3,10 +3,10 @@ package hu.bme.aut.core.service;
 import hu.bme.aut.core.exception.CoreServiceException;
 import hu.bme.aut.core.model.UserBankCard;
 import hu.bme.aut.core.repository.UserBankCardRepository;
-import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
@@ -45,6 +45,34 @@ public class UserBankCardValidationService {
         return true;
     }
 
+    /**
+     * Validates that the card belongs to the user identified by the given token and that it has sufficient balance
+     * to cover the specified price. The owner and the balance of the card are read with a single query.
+     *
+     * @param token  The user authentication token used to identify the user.
+     * @param cardId The card ID that needs to be validated against the user.
+     * @param price  The amount that needs to be checked against the card's balance.
+     * @return true if the card belongs to the user and has sufficient balance, otherwise throws CoreServiceException.
+     * @throws CoreServiceException if the token is expired or cannot be interpreted, if the card does not belong to the user,
+     *                              or if the card does not have sufficient funds.
+     */
+    @Transactional(readOnly = true)
+    public boolean validateCardAndBalance(String token, String cardId, double price) {
+        Long userId = userTokenValidationService.getUserIdFromToken(token);
+        Optional<UserBankCardRepository.CardOwnerBalance> card = userBankCardRepository.findOwnerBalanceByCardId(cardId);
+        if (card.isEmpty() || !userId.equals(card.get().getUserId())) {
+            log.error("Card validation failed for card ID: {} and user ID: {}", cardId, userId);
+            throw new CoreServiceException("Ez a bankkártya nem ehhez a felhasználóhoz tartozik.", "10100");
+        }
+        if (card.get().getAmount() == null || card.get().getAmount() < price) {
+            log.error("Balance check failed for card ID: {}. Required: {}, Available: {}", cardId, price, card.get().getAmount());
+            throw new CoreServiceException("A felhasználónak nincs elegendő pénze hogy megvásárolja a jegyet!", "10101");
+        }
+
+        log.info("Card validation and balance check successful for card ID: {} and user ID: {}", cardId, userId);
+        return true;
+    }
+
     /**
      * Checks if the card identified by cardId has sufficient balance to cover the specified price.
      *
@@ -1,72 +1,231 @@
 package hu.bme.aut.core.service;
 
+import hu.bme.aut.core.dto.TokenValidationResultDTO;
 import hu.bme.aut.core.exception.CoreServiceException;
 import hu.bme.aut.core.model.User;
 import hu.bme.aut.core.model.UserToken;
-import hu.bme.aut.core.repository.UserRepository;
 import hu.bme.aut.core.repository.UserTokenRepository;
+import hu.bme.aut.core.token.SignedToken;
+import hu.bme.aut.core.token.SignedTokenCodec;
+import hu.bme.aut.core.token.TokenRevocationList;
+import com.github.benmanes.caffeine.cache.Cache;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.StringTokenizer;
+import java.util.stream.Collectors;
 
 /**
  * Service to validate user tokens and retrieve user-related information.
+ * Tokens are issued in the signed format of {@link SignedTokenCodec}; a signed token is verified from its own claims
+ * and the in-memory {@link TokenRevocationList}, without any database access.
+ * Legacy tokens, which are only trustworthy after a lookup in the database, are still accepted; they are the only
+ * tokens stored in the database, signed tokens are never persisted. Validated legacy
+ * tokens are cached in process with the ID of their user, so validating a known token does not touch the database.
+ * A cached token is dropped when it is revoked through this service; a token removed from the database
+ * in any other way stays valid until its cache entry expires.
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class UserTokenValidationService {
-    private final UserRepository userRepository;
     private final UserTokenRepository userTokenRepository;
+    private final Cache<String, Long> validatedTokenCache;
+    private final SignedTokenCodec signedTokenCodec;
+    private final TokenRevocationList tokenRevocationList;
 
     /**
-     * Validates the provided Base64 encoded token and retrieves the user ID.
+     * Validates the provided token and retrieves the user ID.
+     * Runs without a transaction, so validating a signed or cached token does not take a database connection.
      *
-     * @param encodedToken Base64 encoded token.
+     * @param encodedToken Signed token, or legacy Base64 encoded token.
      * @return The user ID if the token is valid.
-     * @throws CoreServiceException if the token is invalid or expired, or if the token does not belong to any user.
+     * @throws CoreServiceException if the token is invalid, expired or revoked, or if the token does not belong to any user.
      */
-    @Transactional
     public Long getUserIdFromToken(String encodedToken) {
+        if (SignedTokenCodec.isSigned(encodedToken)) {
+            return verifySignedToken(encodedToken);
+        }
+
+        Long cachedUserId = validatedTokenCache.getIfPresent(encodedToken);
+        if (cachedUserId != null) {
+            return cachedUserId;
+        }
+        Long userId = decodeLegacyToken(encodedToken);
+        Optional<UserToken> tokenOpt = userTokenRepository.findByToken(encodedToken);
+        if (tokenOpt.isEmpty() || !tokenOpt.get().getUser().getUserId().equals(userId)) {
+            log.error("Token validation failed. Token does not match any user or is expired.");
+            throw new CoreServiceException("A felhasználói token lejárt vagy nem értelmezhető.", "10051");
+        }
+
+        validatedTokenCache.put(encodedToken, userId);
+        log.info("User token validated successfully for user ID: {}", userId);
+        return userId;
+    }
+
+    /**
+     * Validates many tokens at once. Signed and cached tokens are validated without any database access,
+     * and the remaining legacy tokens are looked up together with a single query.
+     * An invalid token does not fail the others; its error is returned in its result instead.
+     *
+     * @param encodedTokens Signed or legacy tokens; a token may occur more than once.
+     * @return The validation results in the order of the tokens.
+     */
+    public List<TokenValidationResultDTO> validateTokens(List<String> encodedTokens) {
+        Map<String, TokenValidationResultDTO> results = new HashMap<>();
+        Map<String, Long> legacyTokens = new HashMap<>();
+        for (String encodedToken : encodedTokens) {
+            if (results.containsKey(encodedToken) || legacyTokens.containsKey(encodedToken)) {
+                continue;
+            }
+            try {
+                if (SignedTokenCodec.isSigned(encodedToken)) {
+                    results.put(encodedToken, validResult(encodedToken, verifySignedToken(encodedToken)));
+                    continue;
+                }
+                Long cachedUserId = validatedTokenCache.getIfPresent(encodedToken);
+                if (cachedUserId != null) {
+                    results.put(encodedToken, validResult(encodedToken, cachedUserId));
+                } else {
+                    legacyTokens.put(encodedToken, decodeLegacyToken(encodedToken));
+                }
+            } catch (CoreServiceException e) {
+                results.put(encodedToken, rejectedResult(encodedToken, e));
+            }
+        }
+
+        if (!legacyTokens.isEmpty()) {
+            Map<String, Long> owners = userTokenRepository.findOwnersByTokenIn(legacyTokens.keySet()).stream()
+                    .collect(Collectors.toMap(UserTokenRepository.TokenOwner::getToken, UserTokenRepository.TokenOwner::getUserId));
+            legacyTokens.forEach((encodedToken, userId) -> {
+                if (userId.equals(owners.get(encodedToken))) {
+                    validatedTokenCache.put(encodedToken, userId);
+                    results.put(encodedToken, validResult(encodedToken, userId));
+                } else {
+                    results.put(encodedToken, rejectedResult(encodedToken,
+                            new CoreServiceException("A felhasználói token lejárt vagy nem értelmezhető.", "10051")));
+                }
+            });
+        }
+
+        log.info("Validated {} tokens in a batch, {} looked up in the database", encodedTokens.size(), legacyTokens.size());
+        return encodedTokens.stream()
+                .map(results::get)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Issues a new signed token for the user. Signed tokens are verified from their own claims,
+     * so nothing is stored; the user_token table only holds the legacy tokens.
+     *
+     * @param user The user the token is issued for.
+     * @return The signed token.
+     */
+    public String generateUserToken(User user) {
+        return signedTokenCodec.issue(user.getUserId());
+    }
+
+    /**
+     * Revokes the provided token, so it is no longer accepted. A signed token is put on the revocation list
+     * until it expires. Revoking an unknown, invalid or expired token has no further effect.
+     *
+     * @param encodedToken Signed token, or legacy Base64 encoded token.
+     */
+    @Transactional
+    public void revokeToken(String encodedToken) {
+        if (SignedTokenCodec.isSigned(encodedToken)) {
+            try {
+                tokenRevocationList.revoke(signedTokenCodec.verify(encodedToken));
+            } catch (CoreServiceException e) {
+                log.info("Signed token not revoked, it is no longer valid: {}", e.getMessage());
+            }
+        }
+        long deleted = userTokenRepository.deleteByToken(encodedToken);
+        invalidateCachedToken(encodedToken);
+        log.info("Revoked user token, {} stored token removed", deleted);
+    }
+
+    /**
+     * Verifies a signed token and checks that it has not been revoked.
+     *
+     * @param encodedToken Signed token.
+     * @return The ID of the user the token was issued for.
+     * @throws CoreServiceException if the token is invalid, expired or revoked.
+     */
+    private Long verifySignedToken(String encodedToken) {
+        SignedToken token = signedTokenCodec.verify(encodedToken);
+        if (tokenRevocationList.isRevoked(token.tokenId())) {
+            log.error("Token validation failed. Token has been revoked.");
+            throw new CoreServiceException("A felhasználói token lejárt vagy nem értelmezhető.", "10051");
+        }
+        return token.userId();
+    }
+
+    /**
+     * Reads the user ID claimed by a legacy token; the claim still has to be checked against the database.
+     *
+     * @param encodedToken Legacy Base64 encoded token.
+     * @return The user ID in the token.
+     * @throws CoreServiceException if the token cannot be interpreted.
+     */
+    private Long decodeLegacyToken(String encodedToken) {
+        if (encodedToken == null) {
+            throw new CoreServiceException("A felhasználói token nem szerepel.", "10050");
+        }
         try {
             String decodedToken = new String(Base64.getDecoder().decode(encodedToken));
             log.info("Decoded token: {}", decodedToken);
             StringTokenizer tokenizer = new StringTokenizer(decodedToken, "&");
             tokenizer.nextToken();
-            Long userId = Long.parseLong(tokenizer.nextToken());
-            Optional<UserToken> tokenOpt = userTokenRepository.findByToken(encodedToken);
-            if (tokenOpt.isEmpty() || !tokenOpt.get().getUser().getUserId().equals(userId)) {
-                log.error("Token validation failed. Token does not match any user or is expired.");
-                throw new CoreServiceException("A felhasználói token lejárt vagy nem értelmezhető.", "10051");
-            }
-
-            log.info("User token validated successfully for user ID: {}", userId);
-            return userId;
+            return Long.parseLong(tokenizer.nextToken());
         } catch (IllegalArgumentException | IllegalStateException | NoSuchElementException e) {
             log.error("Invalid token provided: {}", encodedToken);
             throw new CoreServiceException("A felhasználói token nem szerepel.", "10050");
         }
     }
 
-    @Transactional
-    public void generateUserToken(User user) {
-        String firstSegment = user.getEmail();
-        String secondSegment = user.getUserId().toString();
-        String token = Base64.getEncoder().encodeToString((firstSegment + '&' + secondSegment).getBytes());
-
-        UserToken userToken = UserToken.builder()
-                .token(token)
-                .user(user)
+    private static TokenValidationResultDTO validResult(String encodedToken, Long userId) {
+        return TokenValidationResultDTO.builder()
+                .token(encodedToken)
+                .success(true)
+                .userId(userId)
+                .build();
+    }
+
+    private static TokenValidationResultDTO rejectedResult(String encodedToken, CoreServiceException e) {
+        return TokenValidationResultDTO.builder()
+                .token(encodedToken)
+                .success(false)
+                .errorCode(e.getErrorCode())
+                .errorMessage(e.getMessage())
                 .build();
-        userToken = userTokenRepository.save(userToken);
+    }
 
-        user.addUserToken(userToken);
-        userRepository.save(user);
+    /**
+     * Drops the cached validation of a token right away and again once the current transaction has committed,
+     * so a validation running concurrently with the transaction cannot cache the token's old state.
+     *
+     * @param encodedToken Base64 encoded token.
+     */
+    private void invalidateCachedToken(String encodedToken) {
+        validatedTokenCache.invalidate(encodedToken);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    validatedTokenCache.invalidate(encodedToken);
+                }
+            });
+        }
     }
 }
\ No newline at end of file
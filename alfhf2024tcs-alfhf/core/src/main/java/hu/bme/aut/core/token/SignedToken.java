@@ -0,0 +1,13 @@
+package hu.bme.aut.core.token;
+
+import java.time.Instant;
+
+/**
+ * The verified claims of a signed user token.
+ *
+ * @param userId the ID of the user the token was issued for
+ * @param tokenId the random ID of the token, used to revoke it
+ * @param expiresAt the time the token expires at
+ */
+public record SignedToken(Long userId, String tokenId, Instant expiresAt) {
+}
\ No newline at end of file
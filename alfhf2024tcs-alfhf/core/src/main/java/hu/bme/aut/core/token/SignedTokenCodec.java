@@ -0,0 +1,124 @@
+package hu.bme.aut.core.token;
+
+import hu.bme.aut.core.exception.CoreServiceException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Issues and verifies signed user tokens, which carry their claims and can be verified without any lookup.
+ * A token has the form {@code st1.<userId>.<expiresAt>.<tokenId>.<signature>}, where the expiry is in epoch seconds,
+ * the token ID is random and the signature is the URL-safe Base64 HMAC-SHA256 of everything before it.
+ */
+@Component
+public class SignedTokenCodec {
+
+    private static final String PREFIX = "st1.";
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MIN_SECRET_LENGTH = 32;
+    private static final int TOKEN_ID_LENGTH = 16;
+
+    private final SecretKeySpec key;
+    private final Duration ttl;
+    private final Clock clock;
+    private final SecureRandom random = new SecureRandom();
+
+    @Autowired
+    public SignedTokenCodec(@Value("${core.token.signing-secret}") String secret,
+                            @Value("${core.token.ttl:30d}") Duration ttl) {
+        this(secret, ttl, Clock.systemUTC());
+    }
+
+    public SignedTokenCodec(String secret, Duration ttl, Clock clock) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalArgumentException("Token signing secret is not set, configure core.token.signing-secret");
+        }
+        byte[] secretBytes = secret.getBytes(StandardCharsets.UTF_8);
+        if (secretBytes.length < MIN_SECRET_LENGTH) {
+            throw new IllegalArgumentException("Token signing secret must be at least " + MIN_SECRET_LENGTH + " bytes long");
+        }
+        this.key = new SecretKeySpec(secretBytes, ALGORITHM);
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    /**
+     * Tells whether the token has the signed format, as opposed to a legacy token stored in the database.
+     *
+     * @param token the token to check
+     * @return true if the token should be verified by this codec
+     */
+    public static boolean isSigned(String token) {
+        return token != null && token.startsWith(PREFIX);
+    }
+
+    /**
+     * Issues a new signed token for the user, valid for the configured time-to-live.
+     *
+     * @param userId the ID of the user
+     * @return the signed token
+     */
+    public String issue(Long userId) {
+        byte[] tokenId = new byte[TOKEN_ID_LENGTH];
+        random.nextBytes(tokenId);
+        long expiresAt = clock.instant().plus(ttl).getEpochSecond();
+        String payload = PREFIX + userId + '.' + expiresAt + '.' + Base64.getUrlEncoder().withoutPadding().encodeToString(tokenId);
+        return payload + '.' + sign(payload);
+    }
+
+    /**
+     * Verifies the signature and the expiry of a signed token. Revocation is not checked here.
+     *
+     * @param token the signed token
+     * @return the claims of the token
+     * @throws CoreServiceException with code 10050 if the token is malformed or its signature does not match,
+     *                              or with code 10051 if the token has expired.
+     */
+    public SignedToken verify(String token) {
+        int signatureStart = isSigned(token) ? token.lastIndexOf('.') : -1;
+        if (signatureStart < PREFIX.length()) {
+            throw new CoreServiceException("A felhasználói token nem szerepel.", "10050");
+        }
+        String payload = token.substring(0, signatureStart);
+        byte[] signature = token.substring(signatureStart + 1).getBytes(StandardCharsets.US_ASCII);
+        String[] claims = payload.substring(PREFIX.length()).split("\\.");
+        if (claims.length != 3 || !MessageDigest.isEqual(sign(payload).getBytes(StandardCharsets.US_ASCII), signature)) {
+            throw new CoreServiceException("A felhasználói token nem szerepel.", "10050");
+        }
+
+        Long userId;
+        Instant expiresAt;
+        try {
+            userId = Long.parseLong(claims[0]);
+            expiresAt = Instant.ofEpochSecond(Long.parseLong(claims[1]));
+        } catch (NumberFormatException e) {
+            throw new CoreServiceException("A felhasználói token nem szerepel.", "10050");
+        }
+        if (!clock.instant().isBefore(expiresAt)) {
+            throw new CoreServiceException("A felhasználói token lejárt vagy nem értelmezhető.", "10051");
+        }
+        return new SignedToken(userId, claims[2], expiresAt);
+    }
+
+    private String sign(String payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            byte[] signature = mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Token signing is not available", e);
+        }
+    }
+}
\ No newline at end of file
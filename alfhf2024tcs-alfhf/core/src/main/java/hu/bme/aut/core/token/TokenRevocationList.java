@@ -0,0 +1,72 @@
+package hu.bme.aut.core.token;
+
+import hu.bme.aut.core.model.RevokedToken;
+import hu.bme.aut.core.repository.RevokedTokenRepository;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory list of the signed tokens revoked before their expiry, checked on every validation without any I/O.
+ * Revocations are stored in the database as well and reloaded periodically, so they survive restarts and reach
+ * every instance of the CORE module within one refresh interval. Tokens are listed only until they expire,
+ * which keeps the list as small as the number of live revoked tokens.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TokenRevocationList {
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final Map<String, Instant> revoked = new ConcurrentHashMap<>();
+
+    /**
+     * Tells whether the token has been revoked.
+     *
+     * @param tokenId the ID of the signed token
+     * @return true if the token must not be accepted
+     */
+    public boolean isRevoked(String tokenId) {
+        return revoked.containsKey(tokenId);
+    }
+
+    /**
+     * Revokes a signed token on this instance right away and stores the revocation for the other instances.
+     *
+     * @param token the verified claims of the token
+     */
+    @Transactional
+    public void revoke(SignedToken token) {
+        revoked.put(token.tokenId(), token.expiresAt());
+        revokedTokenRepository.save(RevokedToken.builder()
+                .tokenId(token.tokenId())
+                .expiresAt(token.expiresAt())
+                .build());
+        log.info("Revoked signed token of user ID {} until {}", token.userId(), token.expiresAt());
+    }
+
+    /**
+     * Removes the expired revocations and reloads the live ones from the database.
+     * Runs on startup and then periodically.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${core.token.revocation-refresh:30s}")
+    @Transactional
+    public void refresh() {
+        Instant now = Instant.now();
+        int purged = revokedTokenRepository.deleteExpired(now);
+        revokedTokenRepository.findByExpiresAtAfter(now)
+                .forEach(token -> revoked.put(token.getTokenId(), token.getExpiresAt()));
+        revoked.values().removeIf(expiresAt -> !now.isBefore(expiresAt));
+        log.debug("Refreshed token revocation list: {} revoked, {} expired entries purged", revoked.size(), purged);
+    }
+
+    public int size() {
+        return revoked.size();
+    }
+}
\ No newline at end of file
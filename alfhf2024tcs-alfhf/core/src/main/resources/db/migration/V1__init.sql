@@ -0,0 +1,35 @@
+-- Users, their authentication tokens and bank cards
+CREATE TABLE users (
+    user_id BIGINT NOT NULL AUTO_INCREMENT,
+    name    VARCHAR(255),
+    email   VARCHAR(255) NOT NULL,
+    PRIMARY KEY (user_id),
+    CONSTRAINT uk_users_email UNIQUE (email)
+) ENGINE = InnoDB;
+
+CREATE TABLE user_token (
+    user_token_id BIGINT NOT NULL AUTO_INCREMENT,
+    token         VARCHAR(255),
+    user_id       BIGINT NOT NULL,
+    PRIMARY KEY (user_token_id),
+    -- Token lookup on every authenticated request
+    CONSTRAINT uk_user_token_token UNIQUE (token),
+    CONSTRAINT fk_user_token_user FOREIGN KEY (user_id) REFERENCES users (user_id)
+) ENGINE = InnoDB;
+
+CREATE TABLE user_bank_card (
+    user_bank_card_id BIGINT NOT NULL AUTO_INCREMENT,
+    card_id           VARCHAR(255) NOT NULL,
+    card_number       VARCHAR(255),
+    cvc               VARCHAR(255),
+    name              VARCHAR(255),
+    amount            DOUBLE,
+    currency          VARCHAR(255),
+    user_id           BIGINT NOT NULL,
+    PRIMARY KEY (user_bank_card_id),
+    CONSTRAINT uk_user_bank_card_card UNIQUE (card_id),
+    CONSTRAINT fk_user_bank_card_user FOREIGN KEY (user_id) REFERENCES users (user_id)
+) ENGINE = InnoDB;
+
+-- Card ownership check by card and user
+CREATE INDEX idx_user_bank_card_card_user ON user_bank_card (card_id, user_id);
@@ -0,0 +1,8 @@
+-- Signed tokens revoked before their expiry, kept only until they would have expired
+CREATE TABLE revoked_token (
+    token_id   VARCHAR(32) NOT NULL,
+    expires_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (token_id)
+) ENGINE = InnoDB;
+
+CREATE INDEX idx_revoked_token_expires_at ON revoked_token (expires_at);
@@ -0,0 +1,13 @@
+-- Amounts held on bank cards until they are captured, released or expire
+CREATE TABLE card_reservation (
+    reservation_id VARCHAR(64)  NOT NULL,
+    card_id        VARCHAR(255) NOT NULL,
+    user_id        BIGINT       NOT NULL,
+    amount         DOUBLE       NOT NULL,
+    status         VARCHAR(16)  NOT NULL,
+    expires_at     DATETIME(6)  NOT NULL,
+    PRIMARY KEY (reservation_id)
+) ENGINE = InnoDB;
+
+-- Sweep of expired reservations
+CREATE INDEX idx_card_reservation_status_expires_at ON card_reservation (status, expires_at);
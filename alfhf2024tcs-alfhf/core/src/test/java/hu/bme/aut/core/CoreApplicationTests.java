@@ -3,7 +3,7 @@ package hu.bme.aut.core;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "core.token.signing-secret=test-signing-secret-of-at-least-32-bytes")
 class CoreApplicationTests {
 
     @Test
@@ -0,0 +1,179 @@
+package hu.bme.aut.core.servicetest;
+
+import hu.bme.aut.core.exception.CoreServiceException;
+import hu.bme.aut.core.model.CardReservation;
+import hu.bme.aut.core.model.ReservationStatus;
+import hu.bme.aut.core.repository.CardReservationRepository;
+import hu.bme.aut.core.repository.UserBankCardRepository;
+import hu.bme.aut.core.service.CardReservationService;
+import hu.bme.aut.core.service.UserTokenValidationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CardReservationServiceTest {
+
+    @Mock
+    private UserTokenValidationService userTokenValidationService;
+
+    @Mock
+    private UserBankCardRepository userBankCardRepository;
+
+    @Mock
+    private CardReservationRepository cardReservationRepository;
+
+    private CardReservationService cardReservationService;
+
+    @BeforeEach
+    void setUp() {
+        cardReservationService = new CardReservationService(userTokenValidationService, userBankCardRepository,
+                cardReservationRepository, Duration.ofMinutes(10));
+        lenient().when(userTokenValidationService.getUserIdFromToken("token")).thenReturn(1L);
+    }
+
+    @Test
+    void reserve_WithSufficientBalance_ShouldDebitCard() {
+        // Arrange
+        when(cardReservationRepository.findById("order-1")).thenReturn(Optional.empty());
+        when(userBankCardRepository.debitIfSufficient("C0001", 1L, 500.0)).thenReturn(1);
+        when(cardReservationRepository.saveAndFlush(any(CardReservation.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        CardReservation result = cardReservationService.reserve("token", "order-1", "C0001", 500.0);
+
+        // Assert
+        assertEquals(ReservationStatus.RESERVED, result.getStatus());
+        assertEquals(500.0, result.getAmount());
+        assertTrue(result.getExpiresAt().isAfter(Instant.now()));
+        verify(userBankCardRepository, times(1)).debitIfSufficient("C0001", 1L, 500.0);
+    }
+
+    @Test
+    void reserve_WithInsufficientBalance_ShouldThrowException() {
+        // Arrange
+        when(cardReservationRepository.findById("order-1")).thenReturn(Optional.empty());
+        when(userBankCardRepository.debitIfSufficient("C0001", 1L, 1500.0)).thenReturn(0);
+        when(userBankCardRepository.findOwnerBalanceByCardId("C0001")).thenReturn(Optional.of(ownerBalance(1L, 1000.0)));
+
+        // Act & Assert
+        CoreServiceException exception = assertThrows(CoreServiceException.class,
+                () -> cardReservationService.reserve("token", "order-1", "C0001", 1500.0));
+        assertEquals("10101", exception.getErrorCode());
+        verify(cardReservationRepository, never()).saveAndFlush(any(CardReservation.class));
+    }
+
+    @Test
+    void reserve_WithOtherUsersCard_ShouldThrowException() {
+        // Arrange
+        when(cardReservationRepository.findById("order-1")).thenReturn(Optional.empty());
+        when(userBankCardRepository.debitIfSufficient("C0002", 1L, 500.0)).thenReturn(0);
+        when(userBankCardRepository.findOwnerBalanceByCardId("C0002")).thenReturn(Optional.of(ownerBalance(2L, 2000.0)));
+
+        // Act & Assert
+        CoreServiceException exception = assertThrows(CoreServiceException.class,
+                () -> cardReservationService.reserve("token", "order-1", "C0002", 500.0));
+        assertEquals("10100", exception.getErrorCode());
+    }
+
+    @Test
+    void reserve_Retried_ShouldNotDebitTwice() {
+        // Arrange
+        when(cardReservationRepository.findById("order-1")).thenReturn(Optional.of(reservation(ReservationStatus.RESERVED)));
+
+        // Act
+        CardReservation result = cardReservationService.reserve("token", "order-1", "C0001", 500.0);
+
+        // Assert
+        assertEquals(ReservationStatus.RESERVED, result.getStatus());
+        verify(userBankCardRepository, never()).debitIfSufficient(anyString(), anyLong(), anyDouble());
+    }
+
+    @Test
+    void release_Reserved_ShouldCreditCard() {
+        // Arrange
+        when(cardReservationRepository.transitionReserved(eq("order-1"), eq(1L), eq(ReservationStatus.RELEASED), any(Instant.class))).thenReturn(1);
+        when(cardReservationRepository.findById("order-1")).thenReturn(Optional.of(reservation(ReservationStatus.RELEASED)));
+
+        // Act
+        CardReservation result = cardReservationService.release("token", "order-1");
+
+        // Assert
+        assertEquals(ReservationStatus.RELEASED, result.getStatus());
+        verify(userBankCardRepository, times(1)).credit("C0001", 500.0);
+    }
+
+    @Test
+    void release_Captured_ShouldThrowException() {
+        // Arrange
+        when(cardReservationRepository.transitionReserved(eq("order-1"), eq(1L), eq(ReservationStatus.RELEASED), any(Instant.class))).thenReturn(0);
+        when(cardReservationRepository.findById("order-1")).thenReturn(Optional.of(reservation(ReservationStatus.CAPTURED)));
+
+        // Act & Assert
+        CoreServiceException exception = assertThrows(CoreServiceException.class,
+                () -> cardReservationService.release("token", "order-1"));
+        assertEquals("10104", exception.getErrorCode());
+        verify(userBankCardRepository, never()).credit(anyString(), anyDouble());
+    }
+
+    @Test
+    void releaseForOwner_Reserved_ShouldCreditCardWithoutToken() {
+        // Arrange
+        when(cardReservationRepository.findById("order-1")).thenReturn(Optional.of(reservation(ReservationStatus.RESERVED)));
+        when(cardReservationRepository.transitionReserved(eq("order-1"), eq(1L), eq(ReservationStatus.RELEASED), any(Instant.class))).thenReturn(1);
+
+        // Act
+        cardReservationService.releaseForOwner("order-1");
+
+        // Assert
+        verify(userBankCardRepository, times(1)).credit("C0001", 500.0);
+        verifyNoInteractions(userTokenValidationService);
+    }
+
+    @Test
+    void capture_Expired_ShouldThrowException() {
+        // Arrange
+        when(cardReservationRepository.transitionReserved(eq("order-1"), eq(1L), eq(ReservationStatus.CAPTURED), any(Instant.class))).thenReturn(0);
+        when(cardReservationRepository.findById("order-1")).thenReturn(Optional.of(reservation(ReservationStatus.EXPIRED)));
+
+        // Act & Assert
+        CoreServiceException exception = assertThrows(CoreServiceException.class,
+                () -> cardReservationService.capture("token", "order-1"));
+        assertEquals("10103", exception.getErrorCode());
+    }
+
+    private static CardReservation reservation(ReservationStatus status) {
+        return CardReservation.builder()
+                .reservationId("order-1")
+                .cardId("C0001")
+                .userId(1L)
+                .amount(500.0)
+                .status(status)
+                .expiresAt(Instant.now().plus(Duration.ofMinutes(10)))
+                .build();
+    }
+
+    private static UserBankCardRepository.CardOwnerBalance ownerBalance(Long userId, Double amount) {
+        return new UserBankCardRepository.CardOwnerBalance() {
+            @Override
+            public Long getUserId() {
+                return userId;
+            }
+
+            @Override
+            public Double getAmount() {
+                return amount;
+            }
+        };
+    }
+}
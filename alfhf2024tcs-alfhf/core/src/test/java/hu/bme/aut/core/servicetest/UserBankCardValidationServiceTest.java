@@ -72,34 +72,34 @@ class UserBankCardValidationServiceTest {
     void checkCardBalance_WithSufficientBalance_ShouldReturnTrue() {
         // Arrange
         String cardId = "1";
-        int price = 500;
+        Double price = 500.0;
         UserBankCard userBankCard = UserBankCard.builder().userBankCardId(1L).amount(1000.0).build();
 
-        when(userBankCardRepository.findById(Long.valueOf(cardId))).thenReturn(Optional.of(userBankCard));
+        when(userBankCardRepository.findByCardId(cardId)).thenReturn(Optional.of(userBankCard));
 
         // Act
         boolean result = userBankCardValidationService.checkCardBalance(cardId, price);
 
         // Assert
         assertTrue(result);
-        verify(userBankCardRepository).findById(Long.valueOf(cardId));
+        verify(userBankCardRepository).findByCardId(cardId);
     }
 
     @Test
     void checkCardBalance_WithInsufficientBalance_ShouldThrowException() {
         // Arrange
         String cardId = "1";
-        int price = 1500;
+        Double price = 1500.0;
         UserBankCard userBankCard = UserBankCard.builder().userBankCardId(1L).amount(1000.0).build();
 
-        when(userBankCardRepository.findById(Long.valueOf(cardId))).thenReturn(Optional.of(userBankCard));
+        when(userBankCardRepository.findByCardId(cardId)).thenReturn(Optional.of(userBankCard));
 
         // Act & Assert
         CoreServiceException exception = assertThrows(CoreServiceException.class, () -> userBankCardValidationService.checkCardBalance(cardId, price));
         assertEquals("A felhasználónak nincs elegendő pénze hogy megvásárolja a jegyet!", exception.getMessage());
         assertEquals("10101", exception.getErrorCode());
 
-        verify(userBankCardRepository).findById(Long.valueOf(cardId));
+        verify(userBankCardRepository).findByCardId(cardId);
     }
 
     @Test
@@ -107,13 +107,67 @@ class UserBankCardValidationServiceTest {
         // Arrange
         String cardId = "-1";
 
-        when(userBankCardRepository.findById(Long.valueOf(cardId))).thenReturn(Optional.empty());
+        when(userBankCardRepository.findByCardId(cardId)).thenReturn(Optional.empty());
 
         // Act & Assert
-        CoreServiceException exception = assertThrows(CoreServiceException.class, () -> userBankCardValidationService.checkCardBalance(cardId, 500));
+        CoreServiceException exception = assertThrows(CoreServiceException.class, () -> userBankCardValidationService.checkCardBalance(cardId, 500.0));
         assertEquals("A felhasználónak nincs elegendő pénze hogy megvásárolja a jegyet!", exception.getMessage());
         assertEquals("10101", exception.getErrorCode());
 
-        verify(userBankCardRepository).findById(Long.valueOf(cardId));
+        verify(userBankCardRepository).findByCardId(cardId);
+    }
+
+    @Test
+    void validateCardAndBalance_WithOwnCardAndSufficientBalance_ShouldReturnTrue() {
+        // Arrange
+        when(userTokenValidationService.getUserIdFromToken("valid_token")).thenReturn(1L);
+        when(userBankCardRepository.findOwnerBalanceByCardId("C0001")).thenReturn(Optional.of(ownerBalance(1L, 1000.0)));
+
+        // Act
+        boolean result = userBankCardValidationService.validateCardAndBalance("valid_token", "C0001", 500.0);
+
+        // Assert
+        assertTrue(result);
+        verify(userBankCardRepository, times(1)).findOwnerBalanceByCardId("C0001");
+        verifyNoMoreInteractions(userBankCardRepository);
+    }
+
+    @Test
+    void validateCardAndBalance_WithOtherUsersCard_ShouldThrowException() {
+        // Arrange
+        when(userTokenValidationService.getUserIdFromToken("valid_token")).thenReturn(1L);
+        when(userBankCardRepository.findOwnerBalanceByCardId("C0002")).thenReturn(Optional.of(ownerBalance(2L, 1000.0)));
+
+        // Act & Assert
+        CoreServiceException exception = assertThrows(CoreServiceException.class,
+                () -> userBankCardValidationService.validateCardAndBalance("valid_token", "C0002", 500.0));
+        assertEquals("10100", exception.getErrorCode());
+    }
+
+    @Test
+    void validateCardAndBalance_WithInsufficientBalance_ShouldThrowException() {
+        // Arrange
+        when(userTokenValidationService.getUserIdFromToken("valid_token")).thenReturn(1L);
+        when(userBankCardRepository.findOwnerBalanceByCardId("C0001")).thenReturn(Optional.of(ownerBalance(1L, 1000.0)));
+
+        // Act & Assert
+        CoreServiceException exception = assertThrows(CoreServiceException.class,
+                () -> userBankCardValidationService.validateCardAndBalance("valid_token", "C0001", 1500.0));
+        assertEquals("A felhasználónak nincs elegendő pénze hogy megvásárolja a jegyet!", exception.getMessage());
+        assertEquals("10101", exception.getErrorCode());
+    }
+
+    private UserBankCardRepository.CardOwnerBalance ownerBalance(Long userId, Double amount) {
+        return new UserBankCardRepository.CardOwnerBalance() {
+            @Override
+            public Long getUserId() {
+                return userId;
+            }
+
+            @Override
+            public Double getAmount() {
+                return amount;
+            }
+        };
     }
 }
@@ -1,20 +1,30 @@
 package hu.bme.aut.core.servicetest;
 
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import hu.bme.aut.core.dto.TokenValidationResultDTO;
 import hu.bme.aut.core.exception.CoreServiceException;
 import hu.bme.aut.core.model.User;
 import hu.bme.aut.core.model.UserToken;
 import hu.bme.aut.core.repository.UserTokenRepository;
 import hu.bme.aut.core.service.UserTokenValidationService;
+import hu.bme.aut.core.token.SignedToken;
+import hu.bme.aut.core.token.SignedTokenCodec;
+import hu.bme.aut.core.token.TokenRevocationList;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Duration;
 import java.util.Base64;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -25,6 +35,15 @@ class UserTokenValidationServiceTest {
     @Mock
     private UserTokenRepository userTokenRepository;
 
+    @Spy
+    private Cache<String, Long> validatedTokenCache = Caffeine.newBuilder().maximumSize(10).recordStats().build();
+
+    @Spy
+    private SignedTokenCodec signedTokenCodec = new SignedTokenCodec("test-signing-secret-of-at-least-32-bytes", Duration.ofDays(1));
+
+    @Mock
+    private TokenRevocationList tokenRevocationList;
+
     @InjectMocks
     private UserTokenValidationService userTokenValidationService;
 
@@ -104,4 +123,123 @@ class UserTokenValidationServiceTest {
         assertEquals("A felhasználói token lejárt vagy nem értelmezhető.", exception.getMessage());
         verify(userTokenRepository, times(1)).findByToken(validEncodedToken);
     }
+
+    @Test
+    void testGetUserIdFromToken_CachedAfterFirstValidation() {
+        // Arrange
+        when(userTokenRepository.findByToken(validEncodedToken)).thenReturn(Optional.of(userToken));
+
+        // Act
+        userTokenValidationService.getUserIdFromToken(validEncodedToken);
+        Long result = userTokenValidationService.getUserIdFromToken(validEncodedToken);
+
+        // Assert
+        assertEquals(userId, result);
+        verify(userTokenRepository, times(1)).findByToken(validEncodedToken);
+        assertEquals(1, validatedTokenCache.stats().hitCount());
+    }
+
+    @Test
+    void testRevokeToken_InvalidatesCachedToken() {
+        // Arrange
+        validatedTokenCache.put(validEncodedToken, userId);
+        when(userTokenRepository.deleteByToken(validEncodedToken)).thenReturn(1L);
+        when(userTokenRepository.findByToken(validEncodedToken)).thenReturn(Optional.empty());
+
+        // Act
+        userTokenValidationService.revokeToken(validEncodedToken);
+
+        // Assert
+        assertThrows(CoreServiceException.class, () -> userTokenValidationService.getUserIdFromToken(validEncodedToken));
+        verify(userTokenRepository, times(1)).deleteByToken(validEncodedToken);
+    }
+
+    @Test
+    void testGetUserIdFromToken_SignedTokenWithoutDatabase() {
+        // Arrange
+        String signedToken = signedTokenCodec.issue(userId);
+
+        // Act
+        Long result = userTokenValidationService.getUserIdFromToken(signedToken);
+
+        // Assert
+        assertEquals(userId, result);
+        verifyNoInteractions(userTokenRepository);
+    }
+
+    @Test
+    void testGetUserIdFromToken_RevokedSignedToken() {
+        // Arrange
+        String signedToken = signedTokenCodec.issue(userId);
+        when(tokenRevocationList.isRevoked(anyString())).thenReturn(true);
+
+        // Act & Assert
+        CoreServiceException exception = assertThrows(CoreServiceException.class, () -> {
+            userTokenValidationService.getUserIdFromToken(signedToken);
+        });
+
+        assertEquals("10051", exception.getErrorCode());
+        verifyNoInteractions(userTokenRepository);
+    }
+
+    @Test
+    void testGenerateUserToken_IssuesSignedTokenWithoutStoringIt() {
+        // Arrange
+        User user = new User();
+        user.setUserId(userId);
+
+        // Act
+        String token = userTokenValidationService.generateUserToken(user);
+
+        // Assert
+        assertTrue(SignedTokenCodec.isSigned(token));
+        assertEquals(userId, userTokenValidationService.getUserIdFromToken(token));
+        verifyNoInteractions(userTokenRepository);
+    }
+
+    @Test
+    void testRevokeToken_SignedTokenListedAsRevoked() {
+        // Arrange
+        String signedToken = signedTokenCodec.issue(userId);
+
+        // Act
+        userTokenValidationService.revokeToken(signedToken);
+
+        // Assert
+        verify(tokenRevocationList, times(1)).revoke(any(SignedToken.class));
+        verify(userTokenRepository, times(1)).deleteByToken(signedToken);
+    }
+
+    @Test
+    void testValidateTokens_LooksUpLegacyTokensInOneQuery() {
+        // Arrange
+        String signedToken = signedTokenCodec.issue(2L);
+        String unknownToken = Base64.getEncoder().encodeToString("other&3".getBytes());
+        UserTokenRepository.TokenOwner owner = new UserTokenRepository.TokenOwner() {
+            @Override
+            public String getToken() {
+                return validEncodedToken;
+            }
+
+            @Override
+            public Long getUserId() {
+                return userId;
+            }
+        };
+        when(userTokenRepository.findOwnersByTokenIn(anyCollection())).thenReturn(List.of(owner));
+
+        // Act
+        List<TokenValidationResultDTO> results = userTokenValidationService.validateTokens(
+                List.of(validEncodedToken, signedToken, invalidEncodedToken, unknownToken, validEncodedToken));
+
+        // Assert
+        assertEquals(5, results.size());
+        assertEquals(userId, results.get(0).getUserId());
+        assertEquals(2L, results.get(1).getUserId());
+        assertEquals("10050", results.get(2).getErrorCode());
+        assertEquals("10051", results.get(3).getErrorCode());
+        assertEquals(userId, results.get(4).getUserId());
+        verify(userTokenRepository, times(1)).findOwnersByTokenIn(Set.of(validEncodedToken, unknownToken));
+        verify(userTokenRepository, never()).findByToken(anyString());
+    }
 }
@@ -0,0 +1,83 @@
+package hu.bme.aut.core.tokentest;
+
+import hu.bme.aut.core.exception.CoreServiceException;
+import hu.bme.aut.core.token.SignedToken;
+import hu.bme.aut.core.token.SignedTokenCodec;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SignedTokenCodecTest {
+
+    private static final String SECRET = "test-signing-secret-of-at-least-32-bytes";
+    private static final Instant NOW = Instant.parse("2024-01-01T00:00:00Z");
+
+    private final SignedTokenCodec codec = new SignedTokenCodec(SECRET, Duration.ofHours(1), Clock.fixed(NOW, ZoneOffset.UTC));
+
+    @Test
+    void testVerify_IssuedToken() {
+        // Arrange
+        String token = codec.issue(42L);
+
+        // Act
+        SignedToken result = codec.verify(token);
+
+        // Assert
+        assertTrue(SignedTokenCodec.isSigned(token));
+        assertEquals(42L, result.userId());
+        assertEquals(NOW.plus(Duration.ofHours(1)), result.expiresAt());
+        assertNotNull(result.tokenId());
+    }
+
+    @Test
+    void testVerify_TamperedUserId() {
+        // Arrange
+        String token = codec.issue(42L).replaceFirst("^st1\\.42\\.", "st1.43.");
+
+        // Act & Assert
+        CoreServiceException exception = assertThrows(CoreServiceException.class, () -> codec.verify(token));
+        assertEquals("10050", exception.getErrorCode());
+    }
+
+    @Test
+    void testVerify_SignedWithOtherSecret() {
+        // Arrange
+        SignedTokenCodec otherCodec = new SignedTokenCodec("another-signing-secret-of-32-bytes-min", Duration.ofHours(1));
+        String token = otherCodec.issue(42L);
+
+        // Act & Assert
+        CoreServiceException exception = assertThrows(CoreServiceException.class, () -> codec.verify(token));
+        assertEquals("10050", exception.getErrorCode());
+    }
+
+    @Test
+    void testVerify_ExpiredToken() {
+        // Arrange
+        SignedTokenCodec laterCodec = new SignedTokenCodec(SECRET, Duration.ofHours(1), Clock.fixed(NOW.plus(Duration.ofHours(2)), ZoneOffset.UTC));
+        String token = codec.issue(42L);
+
+        // Act & Assert
+        CoreServiceException exception = assertThrows(CoreServiceException.class, () -> laterCodec.verify(token));
+        assertEquals("10051", exception.getErrorCode());
+    }
+
+    @Test
+    void testVerify_MalformedToken() {
+        // Act & Assert
+        assertThrows(CoreServiceException.class, () -> codec.verify("st1."));
+        assertThrows(CoreServiceException.class, () -> codec.verify("st1.42.abc"));
+    }
+
+    @Test
+    void testConstructor_MissingOrShortSecret() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> new SignedTokenCodec(null, Duration.ofHours(1)));
+        assertThrows(IllegalArgumentException.class, () -> new SignedTokenCodec(" ", Duration.ofHours(1)));
+        assertThrows(IllegalArgumentException.class, () -> new SignedTokenCodec("too-short-secret", Duration.ofHours(1)));
+    }
+}
@@ -0,0 +1,64 @@
+package hu.bme.aut.warehouse.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.util.List;
+
+/**
+ * Client to notify the CART module about product changes.
+ * Every CART instance keeps its own product cache, so a notification is sent to each configured instance.
+ * An instance that is not configured or cannot be reached serves the old details until its cache entry expires.
+ */
+@Slf4j
+@Component
+public class CartClient {
+
+    public static final String INTERNAL_SECRET_HEADER = "X-Internal-Secret";
+
+    private final RestTemplate restTemplate;
+
+    @Value("${cart.service.urls}")
+    private List<String> cartServiceUrls;
+
+    @Value("${cart.service.internal-secret:}")
+    private String internalSecret;
+
+    @Autowired
+    public CartClient(RestTemplate restTemplate) {
+        this.restTemplate = restTemplate;
+    }
+
+    /**
+     * Asks every CART instance to drop its cached copy of a product.
+     * A failed notification is only logged, the cached copy then expires on its own.
+     *
+     * @param productId the ID of the changed product
+     */
+    public void invalidateProduct(Long productId) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(INTERNAL_SECRET_HEADER, internalSecret);
+        HttpEntity<Void> requestEntity = new HttpEntity<>(headers);
+        for (String cartServiceUrl : cartServiceUrls) {
+            URI uri = UriComponentsBuilder.fromHttpUrl(cartServiceUrl)
+                    .pathSegment("cache", "products", productId.toString())
+                    .build()
+                    .toUri();
+            try {
+                restTemplate.exchange(uri, HttpMethod.DELETE, requestEntity, Void.class);
+                log.info("Cart cache of {} invalidated for product {}", cartServiceUrl, productId);
+            } catch (RestClientException e) {
+                log.warn("Could not invalidate cart cache of {} for product {}: {}", cartServiceUrl, productId, e.getMessage());
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -62,6 +62,12 @@ public class ProductController {
             return ResponseEntity.notFound().build();
         }
     }
+    @GetMapping("/products/batch")
+    public ResponseEntity<List<ProductDTO>> getProductsByIds(@RequestParam("ids") List<Long> ids) {
+        List<ProductDTO> products = productService.getProductsByIds(ids);
+        log.info("Getting {} products by {} IDs", products.size(), ids.size());
+        return ResponseEntity.ok(products);
+    }
     @GetMapping("/products/{id}")
     public ResponseEntity<ProductDTO> getProductById(@PathVariable Long id) {
         ProductDTO product = productService.getProductById(id);
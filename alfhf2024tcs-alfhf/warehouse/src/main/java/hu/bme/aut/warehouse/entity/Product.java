@@ -11,7 +11,8 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
-@Table(uniqueConstraints = @UniqueConstraint(name = "name_unique", columnNames = "name"))
+@Table(uniqueConstraints = @UniqueConstraint(name = "name_unique", columnNames = "name"),
+        indexes = @Index(name = "idx_product_category", columnList = "category_id"))
 public class Product {
     @Id
     @SequenceGenerator(name = "product_sequence", sequenceName = "product_sequence", allocationSize = 1)
@@ -23,9 +23,10 @@ public class DataInitializer implements CommandLineRunner {
 
     @Override
     public void run(String... args) throws Exception {
-        log.info("Start from a clean slate");
-        productRepository.deleteAll();
-        categoryRepository.deleteAll();
+        if (productRepository.count() > 0) {
+            log.info("Products already present, skipping data initialization");
+            return;
+        }
 
         log.info("Initializing categories");
         Category category1 = new Category();
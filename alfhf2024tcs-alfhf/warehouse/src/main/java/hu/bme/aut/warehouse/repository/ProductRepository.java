@@ -5,8 +5,10 @@ import jakarta.transaction.Transactional;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,8 +17,17 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     List<Product> findByCategoryName(String categoryName);
     List<Product> findByCategoryId(Long id);
     Optional<Product> findById(Long Id);
+    Optional<Product> findByName(String name);
     List<Product> findByNameStartingWith(String prefix);
     List<Product> findByNameContaining(String name);
+
+    /**
+     * Loads every product with the given IDs together with its category in a single query,
+     * so that callers resolving many products at once do not trigger one lazy load per row.
+     */
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE p.id IN :ids")
+    List<Product> findAllWithCategoryByIdIn(@Param("ids") Collection<Long> ids);
+
     @Modifying
     @Transactional
     @Query(
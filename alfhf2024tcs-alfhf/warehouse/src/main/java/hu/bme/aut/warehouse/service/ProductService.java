@@ -1,5 +1,6 @@
 package hu.bme.aut.warehouse.service;
 
+import hu.bme.aut.warehouse.client.CartClient;
 import hu.bme.aut.warehouse.dto.ProductDTO;
 import hu.bme.aut.warehouse.entity.Product;
 import hu.bme.aut.warehouse.repository.ProductRepository;
@@ -8,6 +9,7 @@ import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -15,10 +17,12 @@ import java.util.stream.Collectors;
 @Service
 public class ProductService {
     private final ProductRepository productRepository;
+    private final CartClient cartClient;
 
     @Autowired
-    public ProductService(ProductRepository productRepository) {
+    public ProductService(ProductRepository productRepository, CartClient cartClient) {
         this.productRepository = productRepository;
+        this.cartClient = cartClient;
     }
 
     @Transactional
@@ -61,6 +65,14 @@ public class ProductService {
         return  convertToDTO(product);
 
 
+    }
+    @Transactional
+    public List<ProductDTO> getProductsByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<Product> products = productRepository.findAllWithCategoryByIdIn(ids);
+        return products.stream().map(this::convertToDTO).collect(Collectors.toList());
     }
     public List<ProductDTO> getProductsByPrefix(String prefix) {
         List<Product> products = productRepository.findByNameStartingWith(prefix);
@@ -73,7 +85,12 @@ public class ProductService {
         return products.stream().map(this::convertToDTO).collect(Collectors.toList());
     }
     public int updateProductPriceByName(Double price,String name){
-        return productRepository.updateProductPriceByName(price,name);
+        int updatedRows = productRepository.updateProductPriceByName(price,name);
+        if (updatedRows > 0) {
+            productRepository.findByName(name)
+                    .ifPresent(product -> cartClient.invalidateProduct(product.getId()));
+        }
+        return updatedRows;
     }
 
 }
\ No newline at end of file
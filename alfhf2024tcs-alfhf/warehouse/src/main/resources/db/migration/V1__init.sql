@@ -0,0 +1,27 @@
+-- Product categories and products
+CREATE TABLE category (
+    id   BIGINT NOT NULL AUTO_INCREMENT,
+    name VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT name_unique UNIQUE (name)
+) ENGINE = InnoDB;
+
+-- Backing table of the product ID sequence, MySQL has no native sequences
+CREATE TABLE product_sequence (
+    next_val BIGINT
+) ENGINE = InnoDB;
+
+INSERT INTO product_sequence VALUES (1);
+
+CREATE TABLE product (
+    id          BIGINT NOT NULL,
+    name        VARCHAR(255) NOT NULL,
+    price       DOUBLE,
+    category_id BIGINT,
+    PRIMARY KEY (id),
+    CONSTRAINT name_unique UNIQUE (name),
+    CONSTRAINT fk_product_category FOREIGN KEY (category_id) REFERENCES category (id)
+) ENGINE = InnoDB;
+
+-- Products of a category
+CREATE INDEX idx_product_category ON product (category_id);
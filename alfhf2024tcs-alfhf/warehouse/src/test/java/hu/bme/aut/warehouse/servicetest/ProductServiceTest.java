@@ -1,10 +1,12 @@
 package hu.bme.aut.warehouse.servicetest;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
+import hu.bme.aut.warehouse.client.CartClient;
 import hu.bme.aut.warehouse.dto.ProductDTO;
 import hu.bme.aut.warehouse.entity.Product;
 import hu.bme.aut.warehouse.entity.Category;
@@ -24,6 +26,9 @@ public class ProductServiceTest {
     @Mock
     private ProductRepository productRepository;
 
+    @Mock
+    private CartClient cartClient;
+
     @InjectMocks
     private ProductService productService;
 
@@ -65,6 +70,28 @@ public class ProductServiceTest {
         assertThat(foundProduct.getName()).isEqualTo("Product1");
     }
 
+    @Test
+    public void testGetProductsByIds() {
+        Product product1 = new Product(1L, "Product1", 10.0, new Category(1L, "Category1"));
+        Product product2 = new Product(2L, "Product2", 20.0, new Category(1L, "Category1"));
+        when(productRepository.findAllWithCategoryByIdIn(anyCollection())).thenReturn(Arrays.asList(product1, product2));
+
+        List<ProductDTO> products = productService.getProductsByIds(List.of(1L, 2L));
+
+        assertThat(products).hasSize(2);
+        assertThat(products.get(0).getProductId()).isEqualTo(1L);
+        assertThat(products.get(1).getCategory()).isEqualTo("Category1");
+        verify(productRepository, times(1)).findAllWithCategoryByIdIn(List.of(1L, 2L));
+    }
+
+    @Test
+    public void testGetProductsByIds_EmptyIds() {
+        List<ProductDTO> products = productService.getProductsByIds(List.of());
+
+        assertThat(products).isEmpty();
+        verify(productRepository, never()).findAllWithCategoryByIdIn(anyCollection());
+    }
+
     @Test
     public void testGetProductsByPrefix() {
         Product product = new Product(1L, "Product1", 10.0, new Category(1L, "Category1"));
@@ -91,11 +118,24 @@ public class ProductServiceTest {
 
     @Test
     public void testUpdateProductPriceByName() {
+        Product product = new Product(1L, "Product1", 15.0, new Category(1L, "Category1"));
         when(productRepository.updateProductPriceByName(anyDouble(), anyString())).thenReturn(1);
+        when(productRepository.findByName("Product1")).thenReturn(Optional.of(product));
 
         int updatedCount = productService.updateProductPriceByName(15.0, "Product1");
 
         assertThat(updatedCount).isEqualTo(1);
         verify(productRepository, times(1)).updateProductPriceByName(15.0, "Product1");
+        verify(cartClient, times(1)).invalidateProduct(1L);
+    }
+
+    @Test
+    public void testUpdateProductPriceByName_NotFound() {
+        when(productRepository.updateProductPriceByName(anyDouble(), anyString())).thenReturn(0);
+
+        int updatedCount = productService.updateProductPriceByName(15.0, "Unknown");
+
+        assertThat(updatedCount).isEqualTo(0);
+        verify(cartClient, never()).invalidateProduct(anyLong());
     }
 }